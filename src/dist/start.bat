@@ -0,0 +1,13 @@
+@echo off
+rem Starts SpotifyBigPicture with an AppCDS archive, which shortens the startup considerably (see start.sh).
+rem Delete SpotifyBigPicture.jsa after moving this folder. Additional JVM options can be passed with JAVA_OPTS.
+
+set APP_DIR=%~dp0
+set APP_CLASSPATH=%APP_DIR%SpotifyBigPicture-app.jar;%APP_DIR%lib\*
+set ARCHIVE=%APP_DIR%SpotifyBigPicture.jsa
+
+if not exist "%ARCHIVE%" (
+  java -Xshare:dump -XX:SharedClassListFile="%APP_DIR%classes.lst" -XX:SharedArchiveFile="%ARCHIVE%" -cp "%APP_CLASSPATH%" > nul
+)
+
+java -Xshare:auto -XX:SharedArchiveFile="%ARCHIVE%" %JAVA_OPTS% -cp "%APP_CLASSPATH%" spotify.SpotifyBigPicture %*
@@ -0,0 +1,20 @@
+#!/bin/sh
+# Starts SpotifyBigPicture with an AppCDS archive, which shortens the startup considerably.
+# The archive is created from the recorded class list on the first start, or explicitly with
+# --create-cds-archive (e.g. when building a Docker image). Java 11 only accepts the archive for the
+# exact classpath it has been created with, so delete SpotifyBigPicture.jsa after moving this folder.
+# Additional JVM options can be passed with JAVA_OPTS.
+
+APP_DIR="$(cd "$(dirname "$0")" && pwd)"
+APP_CLASSPATH="$APP_DIR/SpotifyBigPicture-app.jar:$APP_DIR/lib/*"
+ARCHIVE="$APP_DIR/SpotifyBigPicture.jsa"
+
+if [ "$1" = "--create-cds-archive" ] || [ ! -f "$ARCHIVE" ]; then
+  java -Xshare:dump -XX:SharedClassListFile="$APP_DIR/classes.lst" -XX:SharedArchiveFile="$ARCHIVE" -cp "$APP_CLASSPATH" > /dev/null \
+    || echo "Failed to create the AppCDS archive, starting without it"
+fi
+if [ "$1" = "--create-cds-archive" ]; then
+  exit 0
+fi
+
+exec java -Xshare:auto -XX:SharedArchiveFile="$ARCHIVE" $JAVA_OPTS -cp "$APP_CLASSPATH" spotify.SpotifyBigPicture "$@"
@@ -0,0 +1,163 @@
+package spotify.playback.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import se.michaelthelin.spotify.enums.AlbumType;
+import se.michaelthelin.spotify.enums.CurrentlyPlayingType;
+import se.michaelthelin.spotify.enums.ModelObjectType;
+import se.michaelthelin.spotify.model_objects.IPlaylistItem;
+import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlayingContext;
+import se.michaelthelin.spotify.model_objects.miscellaneous.Device;
+import se.michaelthelin.spotify.model_objects.special.PlaybackQueue;
+import se.michaelthelin.spotify.model_objects.specification.Album;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.ArtistSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Context;
+import se.michaelthelin.spotify.model_objects.specification.Image;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+import se.michaelthelin.spotify.model_objects.specification.TrackSimplified;
+import spotify.playback.data.dto.sub.PlaybackContext;
+import spotify.playback.data.dto.sub.TrackElement;
+import spotify.playback.data.help.TrackTable;
+import spotify.playback.data.visual.AlbumMetadataCache;
+
+/**
+ * Canned Spotify responses for an album of the given size, playing the first track with the rest
+ * of the album in the queue. Built the same way the Spotify API library deserializes them, so
+ * nothing in here requires a connection to Spotify.
+ * <p>
+ * Just like Spotify does when repeat is off, the queue continues with the start of the album
+ * once the end of it has been reached. It contains as many tracks as the album, which is more
+ * than Spotify ever returns (usually 20), to make the queue handling measurable at every size.
+ */
+class PlaybackFixtures {
+  static final String ALBUM_ID = "1A2GTWGtFfWp7KSQTwWOyo";
+  static final String ARTWORK_URL = "https://i.scdn.co/image/ab67616d0000b2731234567890abcdef12345678";
+
+  private static final String ARTIST_THUMBNAIL_URL = "https://i.scdn.co/image/ab6761610000f1781234567890abcdef12345678";
+
+  private final Album album;
+  private final List<TrackSimplified> albumTracks;
+  private final List<Track> tracks;
+
+  PlaybackFixtures(int trackCount) {
+    ArtistSimplified artist = new ArtistSimplified.Builder()
+      .setId("0k17h0D3J5VfsdmQ1iZtE9")
+      .setName("Some Artist")
+      .build();
+    Image image = new Image.Builder()
+      .setUrl(ARTWORK_URL)
+      .setWidth(640)
+      .setHeight(640)
+      .build();
+
+    this.albumTracks = new ArrayList<>();
+    for (int i = 1; i <= trackCount; i++) {
+      albumTracks.add(new TrackSimplified.Builder()
+        .setId(trackId(i))
+        .setName("Track Number " + i + " (Remastered 2011)")
+        .setArtists(artist, featuredArtist(i))
+        .setTrackNumber(i)
+        .setDiscNumber(i > trackCount / 2 ? 2 : 1)
+        .setDurationMs(180_000 + i * 1_000)
+        .setType(ModelObjectType.TRACK)
+        .build());
+    }
+
+    this.album = new Album.Builder()
+      .setId(ALBUM_ID)
+      .setUri("spotify:album:" + ALBUM_ID)
+      .setName("Some Very Long Album")
+      .setReleaseDate("1999-01-01")
+      .setAlbumType(AlbumType.ALBUM)
+      .setArtists(artist)
+      .setImages(image)
+      .setTracks(new Paging.Builder<TrackSimplified>()
+        .setItems(albumTracks.toArray(TrackSimplified[]::new))
+        .setTotal(trackCount)
+        .build())
+      .build();
+
+    AlbumSimplified albumSimplified = new AlbumSimplified.Builder()
+      .setId(ALBUM_ID)
+      .setUri("spotify:album:" + ALBUM_ID)
+      .setName(album.getName())
+      .setReleaseDate(album.getReleaseDate())
+      .setAlbumType(AlbumType.ALBUM)
+      .setArtists(artist)
+      .setImages(image)
+      .build();
+
+    this.tracks = albumTracks.stream()
+      .map(trackSimplified -> new Track.Builder()
+        .setId(trackSimplified.getId())
+        .setUri("spotify:track:" + trackSimplified.getId())
+        .setName(trackSimplified.getName())
+        .setArtists(trackSimplified.getArtists())
+        .setAlbum(albumSimplified)
+        .setTrackNumber(trackSimplified.getTrackNumber())
+        .setDiscNumber(trackSimplified.getDiscNumber())
+        .setDurationMs(trackSimplified.getDurationMs())
+        .setType(ModelObjectType.TRACK)
+        .build())
+      .collect(Collectors.toList());
+  }
+
+  /**
+   * @return the album metadata as it would've been loaded by the ContextProvider, to be put into the cache up front
+   */
+  AlbumMetadataCache.AlbumMetadata albumMetadata() {
+    TrackTable listTracks = TrackTable.of(albumTracks.stream()
+      .map(trackSimplified -> TrackElement.fromTrackSimplified(trackSimplified, album))
+      .collect(Collectors.toList()));
+    String contextName = album.getArtists()[0].getName() + " \u2022 " + album.getName();
+    return new AlbumMetadataCache.AlbumMetadata(contextName, PlaybackContext.Context.ContextType.ALBUM, listTracks, ARTIST_THUMBNAIL_URL);
+  }
+
+  CurrentlyPlayingContext currentlyPlayingContext() {
+    return new CurrentlyPlayingContext.Builder()
+      .setContext(new Context.Builder()
+        .setType(ModelObjectType.ALBUM)
+        .setUri(album.getUri())
+        .setHref("https://api.spotify.com/v1/albums/" + ALBUM_ID)
+        .build())
+      .setDevice(new Device.Builder()
+        .setId("5fbb3ba6aa454b5534c4ba43a8c7e8e45a63ad0e")
+        .setName("Living Room")
+        .setVolume_percent(50)
+        .build())
+      .setItem(tracks.get(0))
+      .setCurrentlyPlayingType(CurrentlyPlayingType.TRACK)
+      .setProgress_ms(42_000)
+      .setTimestamp(System.currentTimeMillis())
+      .setIs_playing(true)
+      .setShuffle_state(false)
+      .setRepeat_state("off")
+      .build();
+  }
+
+  PlaybackQueue playbackQueue() {
+    List<IPlaylistItem> queue = new ArrayList<>();
+    for (int i = 1; i <= tracks.size(); i++) {
+      queue.add(tracks.get(i % tracks.size()));
+    }
+    return new PlaybackQueue.Builder()
+      .setCurrentlyPlaying(tracks.get(0))
+      .setQueue(queue)
+      .build();
+  }
+
+  private static String trackId(int trackNumber) {
+    return String.format("4uLU6hMCjMI75M1A2t%04d", trackNumber);
+  }
+
+  private static ArtistSimplified featuredArtist(int trackNumber) {
+    return new ArtistSimplified.Builder()
+      .setId(String.format("3WrFJ7ztbogyGnTHbH%04d", trackNumber))
+      .setName("Featured Artist " + trackNumber)
+      .build();
+  }
+}
@@ -0,0 +1,148 @@
+package spotify.playback.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlayingContext;
+import se.michaelthelin.spotify.model_objects.special.PlaybackQueue;
+import spotify.playback.data.dto.PlaybackInfo;
+import spotify.playback.data.dto.sub.TrackData;
+import spotify.playback.data.dto.sub.TrackElement;
+import spotify.playback.data.help.CustomVolumeSettingsProvider;
+import spotify.playback.data.help.LowMemoryMode;
+import spotify.playback.data.help.OutboundCallExecutors;
+import spotify.playback.data.visual.AlbumMetadataCache;
+import spotify.playback.data.visual.ContextProvider;
+import spotify.playback.data.visual.SavedTracksIndex;
+import spotify.playback.data.visual.artwork.ArtworkUrlCache;
+import spotify.playback.data.visual.artwork.service.DictionaryArtworkUrlProvider;
+import spotify.playback.data.visual.artwork.service.LastFmArtworkUrlProvider;
+import spotify.playback.data.visual.artwork.service.SpotifyArtworkUrlProvider;
+import spotify.playback.data.visual.color.FixedColorProviderService;
+import spotify.playback.metrics.PlaybackMetrics;
+
+/**
+ * Measures the hot path of every poll that isn't waiting for Spotify: building the playback info out of
+ * the current playback and the queue, hashing it to find out whether anything has changed, and serializing
+ * it for the interface. Runs for albums of different sizes, where 2000 tracks exceeds QUEUE_FALLBACK_THRESHOLD
+ * and therefore only has the queue sent.
+ * <p>
+ * The assembler is wired with its actual collaborators in a small application context. The album metadata
+ * is put into the cache up front and the colors are fixed (see {@link FixedColorProviderService}), so the
+ * benchmark never leaves the JVM. Just like during the actual polling, each build is based on the previous one.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlaybackInfoBuildBenchmark {
+
+  @Param({"1", "50", "200", "2000"})
+  private int trackCount;
+
+  private AnnotationConfigApplicationContext applicationContext;
+  private PlaybackInfoAssembler playbackInfoAssembler;
+  private ObjectMapper jsonMapper;
+
+  private CurrentlyPlayingContext currentlyPlayingContext;
+  private PlaybackQueue playbackQueue;
+  private List<TrackElement> listTracks;
+  private List<TrackElement> queue;
+
+  private PlaybackInfo playbackInfo;
+  private PlaybackInfo playbackInfoWithoutSnapshots;
+
+  @Setup
+  public void setup() {
+    applicationContext = new AnnotationConfigApplicationContext();
+    applicationContext.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+    applicationContext.registerBean(SpotifyApi.class, () -> SpotifyApi.builder().build());
+    applicationContext.register(PlaybackMetrics.class, OutboundCallExecutors.class, LowMemoryMode.class, AlbumMetadataCache.class, SavedTracksIndex.class, ContextProvider.class,
+      DictionaryArtworkUrlProvider.class, SpotifyArtworkUrlProvider.class, LastFmArtworkUrlProvider.class, ArtworkUrlCache.class,
+      FixedColorProviderService.class, CustomVolumeSettingsProvider.class, OptimisticPlaybackState.class, PlaybackInfoAssembler.class);
+    applicationContext.refresh();
+
+    PlaybackFixtures fixtures = new PlaybackFixtures(trackCount);
+    AlbumMetadataCache.AlbumMetadata albumMetadata = fixtures.albumMetadata();
+    applicationContext.getBean(AlbumMetadataCache.class).getAlbum(PlaybackFixtures.ALBUM_ID, albumId -> albumMetadata);
+
+    playbackInfoAssembler = applicationContext.getBean(PlaybackInfoAssembler.class);
+    jsonMapper = new ObjectMapper();
+    currentlyPlayingContext = fixtures.currentlyPlayingContext();
+    playbackQueue = fixtures.playbackQueue();
+    listTracks = albumMetadata.getListTracks();
+    queue = playbackQueue.getQueue().stream()
+      .map(TrackElement::fromPlaylistItem)
+      .collect(Collectors.toList());
+
+    playbackInfo = buildInfoTrack();
+
+    // Same info, but with plain lists whose hash code isn't cached, as it was before SnapshotList
+    PlaybackInfo info = buildInfoTrack();
+    TrackData trackData = info.getTrackData();
+    playbackInfoWithoutSnapshots = info.withTrackData(trackData.withTrackLists(new ArrayList<>(trackData.getListTracks()), new ArrayList<>(trackData.getQueue())));
+  }
+
+  @TearDown
+  public void tearDown() {
+    applicationContext.close();
+  }
+
+  @Benchmark
+  public PlaybackInfo buildInfoTrack() {
+    PlaybackInfo info = playbackInfoAssembler.buildInfoTrack(playbackQueue, currentlyPlayingContext);
+    playbackInfoAssembler.setPrevious(info);
+    return info;
+  }
+
+  @Benchmark
+  public int hashCodeSnapshotLists() {
+    return playbackInfo.hashCode();
+  }
+
+  @Benchmark
+  public int hashCodePlainLists() {
+    return playbackInfoWithoutSnapshots.hashCode();
+  }
+
+  @Benchmark
+  public List<TrackElement> fromPlaylistItem() {
+    return playbackQueue.getQueue().stream()
+      .map(TrackElement::fromPlaylistItem)
+      .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public List<TrackElement> cutOffRepeatedQueue() {
+    return PlaybackInfoAssembler.cutOffRepeatedQueue(queue, listTracks, currentlyPlayingContext.getItem().getId());
+  }
+
+  @Benchmark
+  public byte[] serializeJson() throws IOException {
+    return jsonMapper.writeValueAsBytes(playbackInfo);
+  }
+}
@@ -0,0 +1,94 @@
+package spotify.playback.data.help;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import spotify.playback.data.dto.sub.TrackElement;
+
+/**
+ * Compares a {@link TrackTable} against a {@link SnapshotList} of track elements for the operations done on
+ * the context track list: finding the current track, summing up the durations of a window of the list and
+ * serializing one (a fresh window every time, so the cached JSON doesn't come into play).
+ * Run with <code>-prof gc</code> to see the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrackTableBenchmark {
+  private static final int WINDOW_SIZE = 100;
+
+  @Param({"200", "5000"})
+  private int trackCount;
+
+  private ObjectMapper jsonMapper;
+  private SnapshotList<TrackElement> snapshotList;
+  private TrackTable trackTable;
+  private String lastTrackId;
+
+  @Setup
+  public void setup() {
+    jsonMapper = new ObjectMapper();
+    List<TrackElement> tracks = new ArrayList<>();
+    for (int i = 1; i <= trackCount; i++) {
+      tracks.add(new TrackElement("4uLU6hMCjMI75M1A2tKUQ" + i, i, 1, List.of("Some Artist " + (i % 50)), "Track Number " + i,
+        "Some Album " + (i % 200), "1999-01-01", "", 180_000 + i));
+    }
+    snapshotList = SnapshotList.of(tracks);
+    trackTable = TrackTable.of(tracks);
+    lastTrackId = tracks.get(trackCount - 1).getId();
+  }
+
+  @Benchmark
+  public int indexOfSnapshotList() {
+    for (int i = 0; i < snapshotList.size(); i++) {
+      if (lastTrackId.equals(snapshotList.get(i).getId())) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  @Benchmark
+  public int indexOfTrackTable() {
+    return trackTable.indexOfId(lastTrackId);
+  }
+
+  @Benchmark
+  public long windowTotalTimeSnapshotList() {
+    return snapshotList.subList(trackCount - WINDOW_SIZE, trackCount).stream().mapToLong(TrackElement::getTimeTotal).sum();
+  }
+
+  @Benchmark
+  public long windowTotalTimeTrackTable() {
+    return trackTable.window(trackCount - 1, WINDOW_SIZE).getTotalTime();
+  }
+
+  @Benchmark
+  public String serializeWindowSnapshotList() throws IOException {
+    return jsonMapper.writeValueAsString(SnapshotList.of(snapshotList.subList(trackCount - WINDOW_SIZE, trackCount)));
+  }
+
+  @Benchmark
+  public String serializeWindowTrackTable() throws IOException {
+    return jsonMapper.writeValueAsString(trackTable.window(trackCount - 1, WINDOW_SIZE));
+  }
+}
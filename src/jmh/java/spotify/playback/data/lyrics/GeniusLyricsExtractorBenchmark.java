@@ -0,0 +1,142 @@
+package spotify.playback.data.lyrics;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Elements;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the streaming lyrics extraction against the previous approach of parsing the
+ * whole Genius page into a Jsoup document.
+ * <p>
+ * By default, a synthetic page modelled after the structure of a real Genius page is used.
+ * To run against actual pages, save them as .html files into a directory and pass it with
+ * <code>-PjmhArgs="GeniusLyricsExtractor -jvmArgs -Dgenius.samples=/path/to/pages"</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GeniusLyricsExtractorBenchmark {
+  private static final String SAMPLES_PROPERTY = "genius.samples";
+
+  private List<String> pages;
+
+  @Setup
+  public void setup() throws IOException {
+    String samplesDirectory = System.getProperty(SAMPLES_PROPERTY);
+    if (samplesDirectory != null) {
+      try (Stream<Path> files = Files.list(Path.of(samplesDirectory))) {
+        pages = new ArrayList<>();
+        for (Path file : files.filter(f -> f.toString().endsWith(".html")).collect(Collectors.toList())) {
+          pages.add(Files.readString(file, StandardCharsets.UTF_8));
+        }
+      }
+    } else {
+      pages = List.of(createSyntheticPage());
+    }
+  }
+
+  @Benchmark
+  public void streamingExtraction(Blackhole blackhole) throws IOException {
+    for (String page : pages) {
+      blackhole.consume(GeniusLyricsExtractor.extractLyrics(new StringReader(page)));
+    }
+  }
+
+  @Benchmark
+  public void jsoupDocumentParse(Blackhole blackhole) {
+    for (String page : pages) {
+      blackhole.consume(extractWithJsoupDocument(page));
+    }
+  }
+
+  /**
+   * The lyrics extraction as it was done before the streaming extractor existed.
+   */
+  private static String extractWithJsoupDocument(String html) {
+    Document document = Jsoup.parse(html);
+    Elements lyricsElements = document.select("div[class^=Lyrics__Container]");
+
+    StringJoiner lyricsBlocks = new StringJoiner("\n");
+    for (Element element : lyricsElements) {
+      StringBuilder lyricsBuilder = new StringBuilder();
+      recursivelyGetDeepestLyricsNodeText(element, lyricsBuilder);
+      lyricsBlocks.add(lyricsBuilder);
+    }
+    return lyricsBlocks.toString();
+  }
+
+  private static void recursivelyGetDeepestLyricsNodeText(Node node, StringBuilder stringBuilder) {
+    if (node instanceof TextNode) {
+      stringBuilder.append(((TextNode) node).text());
+    } else if (node instanceof Element) {
+      Element element = (Element) node;
+      if ("br".equals(element.tagName())) {
+        stringBuilder.append("\n");
+      } else {
+        for (Node childNode : element.childNodes()) {
+          recursivelyGetDeepestLyricsNodeText(childNode, stringBuilder);
+        }
+      }
+    }
+  }
+
+  private static String createSyntheticPage() {
+    StringBuilder page = new StringBuilder("<!DOCTYPE html><html><head><title>Artist - Song Lyrics | Genius Lyrics</title>");
+    for (int i = 0; i < 150; i++) {
+      page.append("<meta property=\"og:meta-").append(i).append("\" content=\"Some meta content for the song page\"/>");
+      page.append("<link rel=\"preload\" href=\"https://assets.genius.com/chunk-").append(i).append(".js\" as=\"script\"/>");
+    }
+    page.append("<script>window.__CONFIG__ = {").append("\"flag\":true,".repeat(2_000)).append("\"end\":true};</script>");
+    page.append("</head><body><div class=\"Header\">").append("<a href=\"/charts\">Charts</a>".repeat(200)).append("</div>");
+
+    page.append("<div id=\"lyrics-root\" class=\"Lyrics__Root-sc-1ynbvzw-0\">");
+    for (int block = 0; block < 4; block++) {
+      page.append("<div data-lyrics-container=\"true\" class=\"Lyrics__Container-sc-1ynbvzw-1 kUgSbL\">[Verse ").append(block + 1).append("]<br/>");
+      for (int line = 0; line < 16; line++) {
+        page.append("<a href=\"/123").append(line).append("\" class=\"ReferentFragmentdesktop__ClickTarget\"><span class=\"ReferentFragmentdesktop__Highlight\">")
+          .append("This is line number ").append(line).append(" &amp; it&#x27;s got some words</span></a><br/>");
+      }
+      page.append("</div>");
+      page.append("<div class=\"RightSidebar__Container\"><div class=\"DfpAd__Container\">").append("<div class=\"ad\"></div>".repeat(20)).append("</div></div>");
+    }
+    page.append("<div class=\"LyricsFooter__Container\">About this song</div></div>");
+
+    page.append("<div class=\"SongComments\">");
+    for (int i = 0; i < 2_000; i++) {
+      page.append("<div class=\"Comment\"><span>Some comment number ").append(i).append("</span></div>");
+    }
+    page.append("</div>");
+    page.append("<script>window.__PRELOADED_STATE__ = JSON.parse('").append("{\\\"lyricsData\\\":\\\"\\\\u003cp\\\\u003e\\\"},".repeat(10_000)).append("');</script>");
+    page.append("</body></html>");
+    return page.toString();
+  }
+}
@@ -0,0 +1,91 @@
+package spotify.playback.data.lyrics;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the precompiled, single-pass {@link LyricsNormalizer} against the previous
+ * regex-based normalization, over a corpus of real artist and song names.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LyricsNormalizerBenchmark {
+  private static final String CORPUS_FILE = "/lyrics/song-titles.txt";
+  private static final String SPLIT_CHAR = " -> ";
+  private static final String COMMENT_CHAR = "//";
+
+  private List<String[]> corpus;
+  private LyricsNormalizer lyricsNormalizer;
+
+  @Setup
+  public void setup() throws IOException {
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(Objects.requireNonNull(getClass().getResourceAsStream(CORPUS_FILE)), StandardCharsets.UTF_8))) {
+      corpus = reader.lines()
+        .filter(line -> !line.startsWith(COMMENT_CHAR) && !line.isBlank())
+        .map(line -> line.split(SPLIT_CHAR))
+        .collect(Collectors.toList());
+    }
+    lyricsNormalizer = new LyricsNormalizer();
+  }
+
+  @Benchmark
+  public void lyricsNormalizer(Blackhole blackhole) {
+    for (String[] entry : corpus) {
+      blackhole.consume(lyricsNormalizer.createCacheKey(entry[0], entry[1]));
+    }
+  }
+
+  @Benchmark
+  public void regexNormalization(Blackhole blackhole) {
+    for (String[] entry : corpus) {
+      blackhole.consume(normalizeString(preprocessString(entry[0])) + "|" + normalizeString(preprocessString(entry[1])));
+    }
+  }
+
+  // The normalization as it was done before LyricsNormalizer existed
+
+  private static String preprocessString(String input) {
+    input = input.replaceAll("[#@_]", "");
+    String outsideBrackets = input.replaceAll("\\(.*?\\)", "").trim();
+    if (outsideBrackets.isEmpty() || outsideBrackets.matches("[^\\p{L}\\p{N}]+")) {
+      Pattern pattern = Pattern.compile("\\((.*?)\\)");
+      Matcher matcher = pattern.matcher(input);
+      if (matcher.find()) {
+        return matcher.group(1).trim();
+      }
+    }
+    input = input.replaceAll("\\(.*?\\)", "").trim();
+    if (input.contains("(") && !input.contains(")")) {
+      input = input.substring(0, input.indexOf('(')).trim();
+    }
+    return input;
+  }
+
+  private static String normalizeString(String input) {
+    return input.toLowerCase().replaceAll("[^a-zA-Z0-9\\s]", "").trim();
+  }
+}
@@ -0,0 +1,21 @@
+package spotify.playback.data.visual.color;
+
+import de.selbi.colorfetch.data.ColorFetchResult;
+import spotify.playback.data.help.LowMemoryMode;
+import spotify.playback.data.help.OutboundCallExecutors;
+import spotify.playback.metrics.PlaybackMetrics;
+
+/**
+ * Always returns the fallback colors, since the actual color fetching downloads the image and would
+ * dominate any benchmark of the playback info.
+ */
+public class FixedColorProviderService extends ColorProviderService {
+  FixedColorProviderService(OutboundCallExecutors outboundCallExecutors, PlaybackMetrics playbackMetrics, LowMemoryMode lowMemoryMode) {
+    super(outboundCallExecutors, playbackMetrics, lowMemoryMode);
+  }
+
+  @Override
+  public ColorFetchResult getDominantColorFromImageUrl(String artworkUrl, long maxWaitMs) {
+    return ColorFetchResult.FALLBACK;
+  }
+}
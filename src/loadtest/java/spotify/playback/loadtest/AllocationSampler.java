@@ -0,0 +1,69 @@
+package spotify.playback.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the bytes allocated by the threads of the app, i.e. every thread except the ones of the load
+ * harness and the Spotify simulator running in the same JVM. The allocation counter of a thread is lost
+ * once the thread ends, so all threads are sampled once per second and only the deltas are added up.
+ */
+class AllocationSampler implements AutoCloseable {
+  private static final long SAMPLE_INTERVAL_MS = 1000;
+
+  private final com.sun.management.ThreadMXBean threadMXBean;
+  private final ScheduledExecutorService sampler;
+  private final Map<Long, Long> lastAllocatedBytesPerThread;
+  private long allocatedBytes;
+
+  AllocationSampler() {
+    this.threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    this.lastAllocatedBytesPerThread = new HashMap<>();
+    this.sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, LoadTestHarness.THREAD_NAME_PREFIX + "allocation-sampler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    sample(false);
+    sampler.scheduleAtFixedRate(() -> sample(true), SAMPLE_INTERVAL_MS, SAMPLE_INTERVAL_MS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @return the bytes allocated by the app since the creation of this sampler
+   */
+  synchronized long getAllocatedBytes() {
+    sample(true);
+    return allocatedBytes;
+  }
+
+  private synchronized void sample(boolean countDeltas) {
+    long[] threadIds = threadMXBean.getAllThreadIds();
+    ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(threadIds);
+    long[] allocated = threadMXBean.getThreadAllocatedBytes(threadIds);
+    for (int i = 0; i < threadIds.length; i++) {
+      if (threadInfos[i] == null || allocated[i] < 0 || !isAppThread(threadInfos[i].getThreadName())) {
+        continue;
+      }
+      Long last = lastAllocatedBytesPerThread.put(threadIds[i], allocated[i]);
+      if (countDeltas) {
+        allocatedBytes += allocated[i] - (last != null ? last : 0);
+      }
+    }
+  }
+
+  private static boolean isAppThread(String threadName) {
+    return !threadName.startsWith(LoadTestHarness.THREAD_NAME_PREFIX)
+      && !threadName.startsWith("spotify-api-simulator")
+      && !threadName.startsWith("HttpClient-");
+  }
+
+  @Override
+  public void close() {
+    sampler.shutdownNow();
+  }
+}
@@ -0,0 +1,83 @@
+package spotify.playback.loadtest;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.support.GenericApplicationContext;
+
+import se.michaelthelin.spotify.SpotifyApi;
+import spotify.SpotifyBigPicture;
+import spotify.api.SpotifyDependenciesSettings;
+import spotify.config.SpotifyApiConfig;
+import spotify.playback.data.PlaybackInfoProvider;
+import spotify.playback.loadtest.simulator.SpotifyApiSimulator;
+import spotify.spring.SpringPortConfig;
+
+/**
+ * The app as it is started by {@link SpotifyBigPicture}, except that it talks to a {@link SpotifyApiSimulator}
+ * instead of Spotify. Only the components of the app itself are scanned, plus the configuration classes of
+ * spotify-dependencies that the app injects directly. The login flow of spotify-dependencies is left out, as
+ * it would require a browser, and the simulator accepts any access token anyway.
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration
+@ComponentScan("spotify.playback")
+@Import({SpringPortConfig.class, SpotifyApiConfig.class})
+public class LoadTestApplication {
+
+  @Bean
+  SpotifyDependenciesSettings spotifyDependenciesSettings() {
+    return new SpotifyBigPicture.SpotifyBigPictureSettings();
+  }
+
+  /**
+   * Start the app on a random port, already logged in to the given simulator.
+   *
+   * @param simulator the simulator (must be started already)
+   * @param additionalProperties additional properties (<code>name=value</code>), e.g. to enable the low-memory mode
+   * @return the running application
+   */
+  public static RunningApp start(SpotifyApiSimulator simulator, String... additionalProperties) {
+    ConfigurableApplicationContext applicationContext = new SpringApplicationBuilder(LoadTestApplication.class)
+      .headless(true)
+      .initializers(context -> ((GenericApplicationContext) context).registerBean(SpotifyApi.class, simulator::createSpotifyApi,
+        beanDefinition -> beanDefinition.setPrimary(true)))
+      .properties(
+        "server.port=0",
+        "spring.main.banner-mode=off",
+        "colorfetch.url=" + simulator.getColorFetchUrl(),
+        "management.endpoints.web.exposure.include=health,prometheus")
+      .properties(additionalProperties)
+      .run();
+
+    // Normally triggered by the login of spotify-dependencies
+    applicationContext.getBean(PlaybackInfoProvider.class).ready();
+
+    int port = ((WebServerApplicationContext) applicationContext).getWebServer().getPort();
+    return new RunningApp(applicationContext, port);
+  }
+
+  public static class RunningApp implements AutoCloseable {
+    private final ConfigurableApplicationContext applicationContext;
+    private final int port;
+
+    private RunningApp(ConfigurableApplicationContext applicationContext, int port) {
+      this.applicationContext = applicationContext;
+      this.port = port;
+    }
+
+    public String getBaseUrl() {
+      return "http://localhost:" + port;
+    }
+
+    @Override
+    public void close() {
+      applicationContext.close();
+    }
+  }
+}
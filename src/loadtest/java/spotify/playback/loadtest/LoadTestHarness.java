@@ -0,0 +1,367 @@
+package spotify.playback.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.selbi.colorfetch.data.ColorFetchResult;
+import spotify.playback.loadtest.simulator.FaultInjection;
+import spotify.playback.loadtest.simulator.SimulatedCatalog;
+import spotify.playback.loadtest.simulator.SimulatedPlayer;
+import spotify.playback.loadtest.simulator.SpotifyApiSimulator;
+
+/**
+ * Runs the app against a {@link SpotifyApiSimulator} and simulates a growing number of displays polling
+ * /playback-info, next to a settings page and a remote control. Every phase starts with a warm-up that isn't
+ * measured and reports the client-side latency, the upstream calls per client request (amplification),
+ * the allocation rate of the app, the payload size and the heap of the app that is still in use after a full GC
+ * at the end of the phase (the steady-state footprint). The heap is read from the app's own metrics at
+ * /actuator/prometheus, minus what the harness and the simulator occupied before the app was started,
+ * as they share the JVM.<br/>
+ * <br/>
+ * Arguments (all optional, as <code>--name=value</code>):
+ * <ul>
+ *   <li><code>displays</code>: comma-separated display counts, one phase each (default: 1,5,10,25,50)</li>
+ *   <li><code>warmup</code>/<code>duration</code>: seconds per phase (default: 10/30)</li>
+ *   <li><code>interval</code>: polling interval of each display in ms (default: 2000, like the web app)</li>
+ *   <li><code>latency</code>/<code>jitter</code>: simulated Spotify latency in ms (default: 80/40)</li>
+ *   <li><code>rate-limit</code>: probability of a 429 per Spotify call (default: 0)</li>
+ *   <li><code>desync</code>: probability of a stale playback state per Spotify call (default: 0)</li>
+ *   <li><code>low-memory</code>: start the app in low-memory mode (default: false)</li>
+ *   <li><code>report</code>: CSV file the results are appended to, to track them over time</li>
+ * </ul>
+ */
+public class LoadTestHarness {
+  static final String THREAD_NAME_PREFIX = "loadtest-";
+
+  private static final String CSV_HEADER = "displays,requests,requests_per_s,p50_ms,p99_ms,max_ms,errors,upstream_calls,amplification,rate_limited,alloc_mb_per_s,alloc_kb_per_request,avg_payload_bytes,heap_after_gc_mb";
+
+  private static final long SETTINGS_INTERVAL_MS = 10_000;
+  private static final long CONTROL_INTERVAL_MS = 5_000;
+  private static final long NEXT_TRACK_INTERVAL_MS = 20_000;
+  private static final long CONTEXT_SWITCH_INTERVAL_MS = 90_000;
+
+  private final Map<String, String> options;
+  private final ObjectMapper objectMapper;
+  private final HttpClient httpClient;
+  private long harnessHeapBytes;
+
+  private LoadTestHarness(Map<String, String> options) {
+    this.options = options;
+    this.objectMapper = new ObjectMapper();
+    this.httpClient = HttpClient.newBuilder()
+      .connectTimeout(Duration.ofSeconds(5))
+      .build();
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+      }
+      options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+    }
+    new LoadTestHarness(options).run();
+    System.exit(0);
+  }
+
+  private void run() throws Exception {
+    List<Integer> displayCounts = List.of(option("displays", "1,5,10,25,50").split(",")).stream()
+      .map(String::trim)
+      .map(Integer::parseInt)
+      .collect(Collectors.toList());
+    long warmupMs = TimeUnit.SECONDS.toMillis(Long.parseLong(option("warmup", "10")));
+    long durationMs = TimeUnit.SECONDS.toMillis(Long.parseLong(option("duration", "30")));
+    long intervalMs = Long.parseLong(option("interval", "2000"));
+
+    SimulatedCatalog catalog = SimulatedCatalog.generate(10, 12, 3, 300);
+    SimulatedPlayer player = new SimulatedPlayer(catalog);
+    scriptTimeline(player, catalog, displayCounts.size() * (warmupMs + durationMs));
+    FaultInjection faultInjection = new FaultInjection()
+      .setLatency(Long.parseLong(option("latency", "80")), Long.parseLong(option("jitter", "40")))
+      .setRateLimitProbability(Double.parseDouble(option("rate-limit", "0")))
+      .setDesyncProbability(Double.parseDouble(option("desync", "0")));
+
+    List<PhaseResult> results = new ArrayList<>();
+    try (SpotifyApiSimulator simulator = new SpotifyApiSimulator(catalog, player, faultInjection).start()) {
+      simulator.setColorFetchResponse(objectMapper.writeValueAsString(ColorFetchResult.FALLBACK));
+      System.gc();
+      harnessHeapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+      try (LoadTestApplication.RunningApp app = LoadTestApplication.start(simulator, "low_memory_mode=" + option("low-memory", "false"))) {
+        sendSettingsList(app.getBaseUrl());
+        for (int displayCount : displayCounts) {
+          PhaseResult result = runPhase(app.getBaseUrl(), simulator, displayCount, intervalMs, warmupMs, durationMs);
+          System.out.println(result.toTableRow());
+          results.add(result);
+        }
+      }
+    }
+
+    System.out.println();
+    System.out.println(PhaseResult.TABLE_HEADER);
+    results.forEach(result -> System.out.println(result.toTableRow()));
+    if (options.containsKey("report")) {
+      appendCsv(Path.of(options.get("report")), results);
+    }
+  }
+
+  private String option(String name, String defaultValue) {
+    return options.getOrDefault(name, defaultValue);
+  }
+
+  /**
+   * Skip to the next track every 20 seconds and switch between the album and a long playlist every
+   * 90 seconds, so the displays see both small updates and full context changes.
+   */
+  private static void scriptTimeline(SimulatedPlayer player, SimulatedCatalog catalog, long totalMs) {
+    String albumId = catalog.getAlbumIds().get(0);
+    String playlistId = catalog.getPlaylistIds().get(0);
+    player.play(SimulatedPlayer.ContextType.ALBUM, albumId, 0);
+    for (long offsetMs = NEXT_TRACK_INTERVAL_MS; offsetMs < totalMs; offsetMs += NEXT_TRACK_INTERVAL_MS) {
+      if (offsetMs % CONTEXT_SWITCH_INTERVAL_MS < NEXT_TRACK_INTERVAL_MS) {
+        boolean toPlaylist = (offsetMs / CONTEXT_SWITCH_INTERVAL_MS) % 2 == 1;
+        player.at(offsetMs, p -> p.play(toPlaylist ? SimulatedPlayer.ContextType.PLAYLIST : SimulatedPlayer.ContextType.ALBUM,
+          toPlaylist ? playlistId : albumId, 0));
+      } else {
+        player.at(offsetMs, SimulatedPlayer::next);
+      }
+    }
+  }
+
+  private PhaseResult runPhase(String baseUrl, SpotifyApiSimulator simulator, int displayCount, long intervalMs, long warmupMs, long durationMs) throws InterruptedException {
+    RequestStats displayStats = new RequestStats();
+    RequestStats otherStats = new RequestStats();
+    AtomicInteger threadCounter = new AtomicInteger();
+    ScheduledExecutorService clients = Executors.newScheduledThreadPool(displayCount + 2, runnable -> {
+      Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + "client-" + threadCounter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    try {
+      for (int i = 0; i < displayCount; i++) {
+        Display display = new Display(baseUrl, "display-" + i, displayStats);
+        long initialDelayMs = intervalMs * i / displayCount;
+        clients.scheduleWithFixedDelay(display::poll, initialDelayMs, intervalMs, TimeUnit.MILLISECONDS);
+      }
+      AtomicInteger settingsRound = new AtomicInteger();
+      clients.scheduleWithFixedDelay(() -> browseSettings(baseUrl, settingsRound.getAndIncrement(), otherStats),
+        SETTINGS_INTERVAL_MS / 2, SETTINGS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+      AtomicInteger controlRound = new AtomicInteger();
+      clients.scheduleWithFixedDelay(() -> control(baseUrl, controlRound.getAndIncrement(), otherStats),
+        CONTROL_INTERVAL_MS, CONTROL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+      Thread.sleep(warmupMs);
+
+      simulator.resetCallCounts();
+      displayStats.enable();
+      otherStats.enable();
+      try (AllocationSampler allocationSampler = new AllocationSampler()) {
+        long start = System.nanoTime();
+        Thread.sleep(durationMs);
+        displayStats.disable();
+        otherStats.disable();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        long allocatedBytes = allocationSampler.getAllocatedBytes();
+        return new PhaseResult(displayCount, displayStats, otherStats.getCount(), elapsedSeconds,
+          simulator.getTotalCallCount(), simulator.getRateLimitedCallCount(), allocatedBytes, measureAppHeapAfterGc(baseUrl));
+      }
+    } finally {
+      clients.shutdownNow();
+      clients.awaitTermination(10, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * @return the heap in use by the app after a full GC, as reported by its <code>jvm_memory_used_bytes</code>
+   *         gauges (summed over the heap pools), without the heap the harness occupied before the app was started
+   */
+  private long measureAppHeapAfterGc(String baseUrl) {
+    System.gc();
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/prometheus")).GET().build();
+    try {
+      HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException("Couldn't read the metrics of the app: HTTP " + response.statusCode());
+      }
+      double heapUsedBytes = response.body()
+        .filter(line -> line.startsWith("jvm_memory_used_bytes{") && line.contains("area=\"heap\""))
+        .mapToDouble(line -> Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1)))
+        .sum();
+      return Math.max(0, (long) heapUsedBytes - harnessHeapBytes);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return -1;
+    }
+  }
+
+  /**
+   * A single display, polling like the web app does: with the version ID of the playback info it currently
+   * displays, so unchanged info doesn't have to be transferred again.
+   */
+  private class Display {
+    private final String baseUrl;
+    private final String clientId;
+    private final RequestStats stats;
+    private int versionId;
+
+    Display(String baseUrl, String clientId, RequestStats stats) {
+      this.baseUrl = baseUrl;
+      this.clientId = clientId;
+      this.stats = stats;
+    }
+
+    void poll() {
+      HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/playback-info?v=" + versionId + "&c=" + clientId))
+        .header("Accept", "application/json")
+        .GET()
+        .build();
+      long start = System.nanoTime();
+      try {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        long latency = System.nanoTime() - start;
+        boolean error = response.statusCode() != 200;
+        stats.record(latency, response.body().length, error);
+        if (!error) {
+          JsonNode versionIdNode = objectMapper.readTree(response.body()).get("versionId");
+          if (versionIdNode != null) {
+            versionId = versionIdNode.asInt();
+          }
+        }
+      } catch (IOException e) {
+        stats.record(System.nanoTime() - start, 0, true);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void browseSettings(String baseUrl, int round, RequestStats stats) {
+    send(HttpRequest.newBuilder(URI.create(baseUrl + "/settings/list")).GET(), stats);
+    String settingId = round % 2 == 0 ? "show-queue" : "show-clock";
+    send(HttpRequest.newBuilder(URI.create(baseUrl + "/settings/toggle/" + settingId)).POST(HttpRequest.BodyPublishers.noBody()), stats);
+  }
+
+  private void control(String baseUrl, int round, RequestStats stats) {
+    String path = round % 2 == 0
+      ? "/modify-playback/VOLUME?param=" + (40 + round % 20)
+      : "/modify-playback/NEXT";
+    send(HttpRequest.newBuilder(URI.create(baseUrl + path)).POST(HttpRequest.BodyPublishers.noBody()), stats);
+  }
+
+  private void send(HttpRequest.Builder requestBuilder, RequestStats stats) {
+    long start = System.nanoTime();
+    try {
+      HttpResponse<byte[]> response = httpClient.send(requestBuilder.build(), HttpResponse.BodyHandlers.ofByteArray());
+      stats.record(System.nanoTime() - start, response.body().length, response.statusCode() >= 400);
+    } catch (IOException e) {
+      stats.record(System.nanoTime() - start, 0, true);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * The settings are normally sent by the backend of Spotify Big Picture, the settings page refuses to work without them.
+   */
+  private void sendSettingsList(String baseUrl) throws IOException, InterruptedException {
+    String settings = "["
+      + "{\"id\":\"show-queue\",\"name\":\"Queue\",\"category\":\"General\",\"description\":\"\",\"state\":true},"
+      + "{\"id\":\"show-clock\",\"name\":\"Clock\",\"category\":\"General\",\"description\":\"\",\"state\":false}"
+      + "]";
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/settings/list"))
+      .header("Content-Type", "application/json")
+      .POST(HttpRequest.BodyPublishers.ofString(settings))
+      .build();
+    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() != 200) {
+      throw new IllegalStateException("Couldn't send the settings list: HTTP " + response.statusCode());
+    }
+  }
+
+  private static void appendCsv(Path reportFile, List<PhaseResult> results) {
+    try {
+      List<String> lines = new ArrayList<>();
+      if (!Files.exists(reportFile)) {
+        lines.add(CSV_HEADER);
+      }
+      results.forEach(result -> lines.add(result.toCsvRow()));
+      Files.write(reportFile, lines, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static class PhaseResult {
+    static final String TABLE_HEADER = String.format(Locale.ROOT, "%8s %9s %8s %8s %8s %8s %7s %9s %7s %6s %9s %8s %9s %8s",
+      "displays", "requests", "req/s", "p50 ms", "p99 ms", "max ms", "errors", "upstream", "ampl.", "429s", "alloc/s", "KB/req", "payload", "heap");
+
+    private final int displays;
+    private final int requests;
+    private final double requestsPerSecond;
+    private final double p50Ms;
+    private final double p99Ms;
+    private final double maxMs;
+    private final int errors;
+    private final long upstreamCalls;
+    private final double amplification;
+    private final long rateLimited;
+    private final double allocMbPerSecond;
+    private final double allocKbPerRequest;
+    private final long avgPayloadBytes;
+    private final double heapAfterGcMb;
+
+    PhaseResult(int displays, RequestStats displayStats, int otherRequests, double elapsedSeconds, long upstreamCalls, long rateLimited, long allocatedBytes, long heapAfterGcBytes) {
+      this.displays = displays;
+      this.requests = displayStats.getCount();
+      this.requestsPerSecond = requests / elapsedSeconds;
+      this.p50Ms = displayStats.getLatencyPercentileMs(50);
+      this.p99Ms = displayStats.getLatencyPercentileMs(99);
+      this.maxMs = displayStats.getLatencyPercentileMs(100);
+      this.errors = displayStats.getErrors();
+      this.upstreamCalls = upstreamCalls;
+      int allRequests = requests + otherRequests;
+      this.amplification = allRequests > 0 ? (double) upstreamCalls / allRequests : 0;
+      this.rateLimited = rateLimited;
+      this.allocMbPerSecond = allocatedBytes / elapsedSeconds / (1024 * 1024);
+      this.allocKbPerRequest = allRequests > 0 ? allocatedBytes / 1024.0 / allRequests : 0;
+      this.avgPayloadBytes = requests > 0 ? displayStats.getPayloadBytes() / requests : 0;
+      this.heapAfterGcMb = heapAfterGcBytes / (1024.0 * 1024);
+    }
+
+    String toTableRow() {
+      return String.format(Locale.ROOT, "%8d %9d %8.1f %8.1f %8.1f %8.1f %7d %9d %7.3f %6d %7.1fMB %8.1f %7dB %6.1fMB",
+        displays, requests, requestsPerSecond, p50Ms, p99Ms, maxMs, errors, upstreamCalls, amplification, rateLimited, allocMbPerSecond, allocKbPerRequest, avgPayloadBytes, heapAfterGcMb);
+    }
+
+    String toCsvRow() {
+      return String.format(Locale.ROOT, "%d,%d,%.2f,%.2f,%.2f,%.2f,%d,%d,%.4f,%d,%.2f,%.2f,%d,%.2f",
+        displays, requests, requestsPerSecond, p50Ms, p99Ms, maxMs, errors, upstreamCalls, amplification, rateLimited, allocMbPerSecond, allocKbPerRequest, avgPayloadBytes, heapAfterGcMb);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package spotify.playback.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects the latencies and payload sizes of the requests of a single load phase. Only requests that
+ * are recorded while the stats are enabled count, so that the warm-up can be excluded.
+ */
+class RequestStats {
+  private long[] latenciesNanos;
+  private int count;
+  private long payloadBytes;
+  private int errors;
+  private volatile boolean enabled;
+
+  RequestStats() {
+    this.latenciesNanos = new long[1024];
+  }
+
+  void enable() {
+    this.enabled = true;
+  }
+
+  void disable() {
+    this.enabled = false;
+  }
+
+  synchronized void record(long latencyNanos, int payloadBytes, boolean error) {
+    if (!enabled) {
+      return;
+    }
+    if (count == latenciesNanos.length) {
+      latenciesNanos = Arrays.copyOf(latenciesNanos, count * 2);
+    }
+    latenciesNanos[count++] = latencyNanos;
+    this.payloadBytes += payloadBytes;
+    if (error) {
+      errors++;
+    }
+  }
+
+  synchronized int getCount() {
+    return count;
+  }
+
+  synchronized long getPayloadBytes() {
+    return payloadBytes;
+  }
+
+  synchronized int getErrors() {
+    return errors;
+  }
+
+  /**
+   * @param percentile the percentile, between 0 and 100
+   * @return the latency in milliseconds (nearest-rank), 0 if nothing has been recorded
+   */
+  synchronized double getLatencyPercentileMs(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    long[] sorted = Arrays.copyOf(latenciesNanos, count);
+    Arrays.sort(sorted);
+    int rank = (int) Math.ceil(percentile / 100.0 * count);
+    return sorted[Math.max(0, Math.min(count, rank) - 1)] / 1_000_000.0;
+  }
+}
@@ -0,0 +1,118 @@
+package spotify.playback.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Compares the startup of the app with and without an AppCDS archive. The archive is created from the
+ * class list of a training run (see the cdsClassList task), for the classpath of this JVM, and each
+ * variant is then started several times in a fresh JVM running the {@link StartupProbe}. The runs of both
+ * variants are interleaved, so that anything else going on on the machine affects both the same way.<br/>
+ * <br/>
+ * Arguments (as <code>--name=value</code>):
+ * <ul>
+ *   <li><code>class-list</code>: the class list of the training run (required)</li>
+ *   <li><code>archive</code>: where to create the archive (required)</li>
+ *   <li><code>runs</code>: the number of starts per variant (default: 5)</li>
+ * </ul>
+ */
+public class StartupComparison {
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+      }
+      options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+    }
+    String classList = required(options, "class-list");
+    String archive = required(options, "archive");
+    int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+
+    Files.deleteIfExists(Path.of(archive));
+    runJava(List.of("-Xshare:dump", "-XX:SharedClassListFile=" + classList, "-XX:SharedArchiveFile=" + archive), false);
+
+    List<long[]> withoutCds = new ArrayList<>();
+    List<long[]> withCds = new ArrayList<>();
+    for (int i = 0; i < runs; i++) {
+      withoutCds.add(runProbe(List.of("-Xshare:off")));
+      // -Xshare:on fails instead of silently falling back should the archive not be usable
+      withCds.add(runProbe(List.of("-Xshare:on", "-XX:SharedArchiveFile=" + archive)));
+    }
+
+    System.out.println();
+    System.out.println(String.format(Locale.ROOT, "%-12s %14s %16s %12s", "variant", "process ms", "first frame ms", "RSS MB"));
+    printMedians("without CDS", withoutCds);
+    printMedians("with CDS", withCds);
+  }
+
+  private static String required(Map<String, String> options, String name) {
+    String value = options.get(name);
+    if (value == null) {
+      throw new IllegalArgumentException("Missing --" + name + "=...");
+    }
+    return value;
+  }
+
+  /**
+   * @return the wall time until the first frame as seen from outside (including the JVM startup),
+   *         the JVM uptime at the first frame and the resident set size in KB
+   */
+  private static long[] runProbe(List<String> jvmOptions) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    String result = runJava(jvmOptions, true);
+    long wallMs = (System.nanoTime() - start) / 1_000_000;
+    String[] values = result.substring(StartupProbe.RESULT_PREFIX.length()).trim().split(" ");
+    long[] measurement = {wallMs, Long.parseLong(values[0]), Long.parseLong(values[1])};
+    System.out.println(String.join(" ", jvmOptions) + ": " + measurement[0] + " ms process, " + measurement[1] + " ms first frame, " + measurement[2] + " KB RSS");
+    return measurement;
+  }
+
+  private static String runJava(List<String> jvmOptions, boolean probe) throws IOException, InterruptedException {
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(jvmOptions);
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(StartupProbe.class.getName());
+
+    Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+    String result = null;
+    List<String> output = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        output.add(line);
+        if (line.startsWith(StartupProbe.RESULT_PREFIX) && result == null) {
+          result = line;
+        }
+      }
+    }
+    int exitCode = process.waitFor();
+    if (exitCode != 0 || (probe && result == null)) {
+      output.forEach(System.err::println);
+      throw new IllegalStateException("java " + String.join(" ", jvmOptions) + " failed with exit code " + exitCode);
+    }
+    return result;
+  }
+
+  private static void printMedians(String variant, List<long[]> measurements) {
+    System.out.println(String.format(Locale.ROOT, "%-12s %14d %16d %12.1f", variant,
+      median(measurements, 0), median(measurements, 1), median(measurements, 2) / 1024.0));
+  }
+
+  private static long median(List<long[]> measurements, int index) {
+    long[] values = measurements.stream().mapToLong(measurement -> measurement[index]).sorted().toArray();
+    return values[values.length / 2];
+  }
+}
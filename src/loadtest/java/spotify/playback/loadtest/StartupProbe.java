@@ -0,0 +1,85 @@
+package spotify.playback.loadtest;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.selbi.colorfetch.data.ColorFetchResult;
+import spotify.playback.loadtest.simulator.FaultInjection;
+import spotify.playback.loadtest.simulator.SimulatedCatalog;
+import spotify.playback.loadtest.simulator.SimulatedPlayer;
+import spotify.playback.loadtest.simulator.SpotifyApiSimulator;
+
+/**
+ * Starts the app against a {@link SpotifyApiSimulator}, waits for the first frame (the first complete
+ * playback info) and prints the JVM uptime at that point and the resident set size, then exits.
+ * Meant to be run in a fresh JVM by {@link StartupComparison}.
+ */
+public class StartupProbe {
+  static final String RESULT_PREFIX = "STARTUP-PROBE ";
+
+  private static final int MAX_POLLS = 100;
+  private static final long POLL_INTERVAL_MS = 100;
+
+  public static void main(String[] args) throws Exception {
+    SimulatedCatalog catalog = SimulatedCatalog.generate(10, 12, 3, 300);
+    SimulatedPlayer player = new SimulatedPlayer(catalog);
+    player.play(SimulatedPlayer.ContextType.ALBUM, catalog.getAlbumIds().get(0), 0);
+
+    try (SpotifyApiSimulator simulator = new SpotifyApiSimulator(catalog, player, new FaultInjection()).start()) {
+      ObjectMapper objectMapper = new ObjectMapper();
+      simulator.setColorFetchResponse(objectMapper.writeValueAsString(ColorFetchResult.FALLBACK));
+      try (LoadTestApplication.RunningApp app = LoadTestApplication.start(simulator)) {
+        waitForFirstFrame(app.getBaseUrl(), objectMapper);
+        long uptimeMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        System.out.println(RESULT_PREFIX + uptimeMs + " " + readResidentSetSizeKb());
+      }
+    }
+    System.exit(0);
+  }
+
+  private static void waitForFirstFrame(String baseUrl, ObjectMapper objectMapper) throws IOException, InterruptedException {
+    HttpClient httpClient = HttpClient.newHttpClient();
+    HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/playback-info?v=0&c=startup-probe"))
+      .header("Accept", "application/json")
+      .GET()
+      .build();
+    for (int i = 0; i < MAX_POLLS; i++) {
+      HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() == 200) {
+        JsonNode type = objectMapper.readTree(response.body()).get("type");
+        if (type != null && !"EMPTY".equals(type.asText())) {
+          return;
+        }
+      }
+      Thread.sleep(POLL_INTERVAL_MS);
+    }
+    throw new IllegalStateException("No playback info after " + MAX_POLLS + " polls");
+  }
+
+  /**
+   * @return the resident set size of this process in KB, -1 if it's unknown (only available on Linux)
+   */
+  private static long readResidentSetSizeKb() {
+    try {
+      List<String> lines = Files.readAllLines(Path.of("/proc/self/status"));
+      for (String line : lines) {
+        if (line.startsWith("VmRSS:")) {
+          return Long.parseLong(line.replaceAll("\\D", ""));
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      // Not on Linux
+    }
+    return -1;
+  }
+}
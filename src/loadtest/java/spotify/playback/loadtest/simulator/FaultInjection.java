@@ -0,0 +1,96 @@
+package spotify.playback.loadtest.simulator;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The misbehavior of the {@link SpotifyApiSimulator}, which can be changed at any time during a load test:
+ * <ul>
+ *   <li>Latency: every response is delayed by the base latency plus a random jitter</li>
+ *   <li>Rate limiting: requests are rejected with 429 (Too Many Requests), either randomly or for the next few calls</li>
+ *   <li>Desync: the queue endpoint reports the previous track as currently playing, as the actual API
+ *   occasionally does right after a track change</li>
+ * </ul>
+ * Everything is disabled by default.
+ */
+public class FaultInjection {
+  private volatile long latencyMs;
+  private volatile long latencyJitterMs;
+  private volatile double rateLimitProbability;
+  private volatile int retryAfterSeconds;
+  private volatile double desyncProbability;
+  private final AtomicInteger forcedRateLimits;
+
+  public FaultInjection() {
+    this.retryAfterSeconds = 1;
+    this.forcedRateLimits = new AtomicInteger();
+  }
+
+  /**
+   * @param latencyMs the delay of every response
+   * @param latencyJitterMs the maximum random delay added on top of that
+   * @return this, for chaining
+   */
+  public FaultInjection setLatency(long latencyMs, long latencyJitterMs) {
+    this.latencyMs = latencyMs;
+    this.latencyJitterMs = latencyJitterMs;
+    return this;
+  }
+
+  /**
+   * @param rateLimitProbability the probability of any request being rejected with 429, between 0 and 1
+   * @return this, for chaining
+   */
+  public FaultInjection setRateLimitProbability(double rateLimitProbability) {
+    this.rateLimitProbability = rateLimitProbability;
+    return this;
+  }
+
+  /**
+   * @param retryAfterSeconds the value of the Retry-After header of rejected requests
+   * @return this, for chaining
+   */
+  public FaultInjection setRetryAfterSeconds(int retryAfterSeconds) {
+    this.retryAfterSeconds = retryAfterSeconds;
+    return this;
+  }
+
+  /**
+   * @param desyncProbability the probability of the queue being out of sync with the current playback, between 0 and 1
+   * @return this, for chaining
+   */
+  public FaultInjection setDesyncProbability(double desyncProbability) {
+    this.desyncProbability = desyncProbability;
+    return this;
+  }
+
+  /**
+   * Reject the next requests with 429, regardless of the probability. Useful for scripting a burst of
+   * rate limiting at a specific point of a timeline.
+   *
+   * @param count the number of requests to reject
+   */
+  public void rateLimitNextCalls(int count) {
+    forcedRateLimits.addAndGet(count);
+  }
+
+  long nextLatencyMs() {
+    long jitter = latencyJitterMs > 0 ? ThreadLocalRandom.current().nextLong(latencyJitterMs + 1) : 0;
+    return latencyMs + jitter;
+  }
+
+  boolean shouldRateLimit() {
+    if (forcedRateLimits.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+      return true;
+    }
+    return rateLimitProbability > 0 && ThreadLocalRandom.current().nextDouble() < rateLimitProbability;
+  }
+
+  int getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  boolean shouldDesync() {
+    return desyncProbability > 0 && ThreadLocalRandom.current().nextDouble() < desyncProbability;
+  }
+}
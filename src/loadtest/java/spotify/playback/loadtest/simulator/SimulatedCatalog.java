@@ -0,0 +1,267 @@
+package spotify.playback.loadtest.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The (entirely made up) music library served by the {@link SpotifyApiSimulator}. Everything is generated
+ * deterministically from the given sizes, so two catalogs of the same size have the same IDs and content.
+ */
+public class SimulatedCatalog {
+  private static final String ID_ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+  private static final int ID_LENGTH = 22;
+
+  private final Map<String, Album> albums;
+  private final Map<String, Artist> artists;
+  private final Map<String, Playlist> playlists;
+  private final Map<String, Show> shows;
+  private final List<Track> savedTracks;
+
+  private SimulatedCatalog() {
+    this.albums = new LinkedHashMap<>();
+    this.artists = new LinkedHashMap<>();
+    this.playlists = new LinkedHashMap<>();
+    this.shows = new LinkedHashMap<>();
+    this.savedTracks = new ArrayList<>();
+  }
+
+  /**
+   * Generate a catalog. Every album is by its own artist, playlists cycle through the tracks of all albums.
+   * The saved tracks contain every track once and there's always a single podcast.
+   *
+   * @param albumCount the number of albums
+   * @param tracksPerAlbum the number of tracks of each album (the second half of them is on disc 2)
+   * @param playlistCount the number of playlists
+   * @param playlistLength the number of tracks of each playlist
+   * @return the catalog
+   */
+  public static SimulatedCatalog generate(int albumCount, int tracksPerAlbum, int playlistCount, int playlistLength) {
+    SimulatedCatalog catalog = new SimulatedCatalog();
+    List<Track> allTracks = new ArrayList<>();
+    for (int a = 1; a <= albumCount; a++) {
+      Artist artist = new Artist(createId('R', a), "Simulated Artist " + a);
+      catalog.artists.put(artist.getId(), artist);
+
+      List<Track> tracks = new ArrayList<>();
+      Album album = new Album(createId('A', a), "Simulated Album " + a, artist, String.format("%04d-01-01", 1970 + a % 50), tracks);
+      for (int t = 1; t <= tracksPerAlbum; t++) {
+        int discNumber = t > tracksPerAlbum / 2 && tracksPerAlbum > 1 ? 2 : 1;
+        int durationMs = 120_000 + (a * 7_919 + t * 104_729) % 180_000;
+        tracks.add(new Track(createId('T', a * 10_000 + t), "Simulated Track " + a + "-" + t, durationMs, t, discNumber, album));
+      }
+      catalog.albums.put(album.getId(), album);
+      allTracks.addAll(tracks);
+    }
+
+    for (int p = 1; p <= playlistCount && !allTracks.isEmpty(); p++) {
+      List<Track> tracks = new ArrayList<>();
+      for (int i = 0; i < playlistLength; i++) {
+        tracks.add(allTracks.get((p * 31 + i) % allTracks.size()));
+      }
+      Playlist playlist = new Playlist(createId('P', p), "Simulated Playlist " + p, tracks);
+      catalog.playlists.put(playlist.getId(), playlist);
+    }
+
+    Show show = new Show(createId('S', 1), "Simulated Podcast", "Simulated Publisher", 100);
+    catalog.shows.put(show.getId(), show);
+
+    catalog.savedTracks.addAll(allTracks);
+    return catalog;
+  }
+
+  private static String createId(char type, int number) {
+    StringBuilder id = new StringBuilder();
+    long n = number;
+    while (n > 0) {
+      id.append(ID_ALPHABET.charAt((int) (n % ID_ALPHABET.length())));
+      n /= ID_ALPHABET.length();
+    }
+    String padding = "0".repeat(ID_LENGTH - 1 - id.length());
+    return type + padding + id.reverse();
+  }
+
+  public List<String> getAlbumIds() {
+    return List.copyOf(albums.keySet());
+  }
+
+  public List<String> getPlaylistIds() {
+    return List.copyOf(playlists.keySet());
+  }
+
+  public List<String> getArtistIds() {
+    return List.copyOf(artists.keySet());
+  }
+
+  public Album getAlbum(String id) {
+    return albums.get(id);
+  }
+
+  public Artist getArtist(String id) {
+    return artists.get(id);
+  }
+
+  public Playlist getPlaylist(String id) {
+    return playlists.get(id);
+  }
+
+  public Show getShow(String id) {
+    return shows.get(id);
+  }
+
+  public List<Track> getSavedTracks() {
+    return Collections.unmodifiableList(savedTracks);
+  }
+
+  public static class Artist {
+    private final String id;
+    private final String name;
+
+    Artist(String id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+  }
+
+  public static class Album {
+    private final String id;
+    private final String name;
+    private final Artist artist;
+    private final String releaseDate;
+    private final List<Track> tracks;
+
+    Album(String id, String name, Artist artist, String releaseDate, List<Track> tracks) {
+      this.id = id;
+      this.name = name;
+      this.artist = artist;
+      this.releaseDate = releaseDate;
+      this.tracks = tracks;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Artist getArtist() {
+      return artist;
+    }
+
+    public String getReleaseDate() {
+      return releaseDate;
+    }
+
+    public List<Track> getTracks() {
+      return Collections.unmodifiableList(tracks);
+    }
+  }
+
+  public static class Track {
+    private final String id;
+    private final String name;
+    private final int durationMs;
+    private final int trackNumber;
+    private final int discNumber;
+    private final Album album;
+
+    Track(String id, String name, int durationMs, int trackNumber, int discNumber, Album album) {
+      this.id = id;
+      this.name = name;
+      this.durationMs = durationMs;
+      this.trackNumber = trackNumber;
+      this.discNumber = discNumber;
+      this.album = album;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getDurationMs() {
+      return durationMs;
+    }
+
+    public int getTrackNumber() {
+      return trackNumber;
+    }
+
+    public int getDiscNumber() {
+      return discNumber;
+    }
+
+    public Album getAlbum() {
+      return album;
+    }
+  }
+
+  public static class Playlist {
+    private final String id;
+    private final String name;
+    private final List<Track> tracks;
+
+    Playlist(String id, String name, List<Track> tracks) {
+      this.id = id;
+      this.name = name;
+      this.tracks = tracks;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public List<Track> getTracks() {
+      return Collections.unmodifiableList(tracks);
+    }
+  }
+
+  public static class Show {
+    private final String id;
+    private final String name;
+    private final String publisher;
+    private final int episodeCount;
+
+    Show(String id, String name, String publisher, int episodeCount) {
+      this.id = id;
+      this.name = name;
+      this.publisher = publisher;
+      this.episodeCount = episodeCount;
+    }
+
+    public String getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getPublisher() {
+      return publisher;
+    }
+
+    public int getEpisodeCount() {
+      return episodeCount;
+    }
+  }
+}
@@ -0,0 +1,391 @@
+package spotify.playback.loadtest.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The playback state of the simulated Spotify account. Time passes just like it would on an actual
+ * device: the progress advances while playing and the next track starts once the current one has ended.
+ * <p>
+ * On top of that, a timeline of scripted actions can be set up with {@link #at(long, Consumer)}, e.g. to
+ * skip a track or to switch to another context after a certain amount of time. The time is taken from the
+ * given clock, so that a timeline can also be run faster than in real time.
+ */
+public class SimulatedPlayer {
+  /**
+   * The number of upcoming tracks returned by the queue endpoint, same as Spotify does
+   */
+  static final int QUEUE_LENGTH = 20;
+
+  private final SimulatedCatalog catalog;
+  private final LongSupplier clock;
+  private final long startTime;
+  private final PriorityQueue<ScheduledAction> timeline;
+  private final Random shuffleRandom;
+  private int scheduledActionCount;
+  private boolean advancing;
+
+  private ContextType contextType;
+  private String contextId;
+  private List<SimulatedCatalog.Track> contextTracks;
+  private List<Integer> order;
+  private int position;
+  private int previousTrackIndex;
+  private long progressMs;
+  private long progressTime;
+  private boolean playing;
+  private boolean shuffle;
+  private String repeat;
+  private int volume;
+  private final String deviceName;
+
+  public SimulatedPlayer(SimulatedCatalog catalog) {
+    this(catalog, System::currentTimeMillis);
+  }
+
+  public SimulatedPlayer(SimulatedCatalog catalog, LongSupplier clock) {
+    this.catalog = catalog;
+    this.clock = clock;
+    this.startTime = clock.getAsLong();
+    this.timeline = new PriorityQueue<>();
+    this.shuffleRandom = new Random(42);
+    this.contextTracks = List.of();
+    this.order = List.of();
+    this.progressTime = startTime;
+    this.repeat = "off";
+    this.volume = 50;
+    this.deviceName = "Simulated Device";
+  }
+
+  public enum ContextType {
+    ALBUM, PLAYLIST, ARTIST, SAVED_TRACKS
+  }
+
+  /**
+   * Schedule an action relative to the creation of this player. Actions that are due are executed in
+   * order, at the exact point of time they were scheduled for (the progress of the track is advanced
+   * up to that point first), no matter how much later the player is actually queried.
+   *
+   * @param offsetMs the time after the creation of this player
+   * @param action the action
+   * @return this player, for chaining
+   */
+  public synchronized SimulatedPlayer at(long offsetMs, Consumer<SimulatedPlayer> action) {
+    timeline.add(new ScheduledAction(startTime + offsetMs, scheduledActionCount++, action));
+    return this;
+  }
+
+  /**
+   * Start playing the given context.
+   *
+   * @param type the context type (the tracks of an artist context are the ones of the first album of that artist)
+   * @param id the ID of the album, playlist or artist, ignored for the saved tracks
+   * @param trackIndex the index of the track to start with
+   */
+  public synchronized void play(ContextType type, String id, int trackIndex) {
+    List<SimulatedCatalog.Track> tracks = tracksOfContext(type, id);
+    if (tracks.isEmpty()) {
+      throw new IllegalArgumentException("Unknown or empty context: " + type + " " + id);
+    }
+    advance();
+    this.contextType = type;
+    this.contextId = id;
+    this.contextTracks = tracks;
+    this.order = IntStream.range(0, tracks.size()).boxed().collect(Collectors.toList());
+    this.position = Math.floorMod(trackIndex, tracks.size());
+    this.previousTrackIndex = order.get(position);
+    if (shuffle) {
+      shuffleOrder();
+    }
+    this.progressMs = 0;
+    this.playing = true;
+  }
+
+  public synchronized void resume() {
+    advance();
+    playing = contextType != null;
+  }
+
+  public synchronized void pause() {
+    advance();
+    playing = false;
+  }
+
+  public synchronized void next() {
+    advance();
+    skip(1);
+  }
+
+  /**
+   * Same as on Spotify, this restarts the current track unless it's only just started.
+   */
+  public synchronized void previous() {
+    advance();
+    if (progressMs > 3000) {
+      progressMs = 0;
+    } else {
+      skip(-1);
+    }
+  }
+
+  public synchronized void seek(long positionMs) {
+    advance();
+    progressMs = Math.max(0, positionMs);
+  }
+
+  public synchronized void setShuffle(boolean shuffle) {
+    advance();
+    if (shuffle != this.shuffle) {
+      this.shuffle = shuffle;
+      if (shuffle) {
+        shuffleOrder();
+      } else if (!order.isEmpty()) {
+        int currentIndex = order.get(position);
+        order = IntStream.range(0, contextTracks.size()).boxed().collect(Collectors.toList());
+        position = currentIndex;
+      }
+    }
+  }
+
+  /**
+   * @param repeat one of "off", "context" or "track"
+   */
+  public synchronized void setRepeat(String repeat) {
+    advance();
+    if (!List.of("off", "context", "track").contains(repeat)) {
+      throw new IllegalArgumentException("Invalid repeat state: " + repeat);
+    }
+    this.repeat = repeat;
+  }
+
+  public synchronized void setVolume(int volume) {
+    advance();
+    this.volume = Math.max(0, Math.min(100, volume));
+  }
+
+  /**
+   * Get the current state, after executing every scheduled action that is due.
+   *
+   * @return the state, null if nothing has been played yet
+   */
+  public synchronized State getState() {
+    advance();
+    if (contextType == null) {
+      return null;
+    }
+    List<SimulatedCatalog.Track> queue = new ArrayList<>();
+    for (int i = 1; i <= QUEUE_LENGTH; i++) {
+      // Just like Spotify, the queue continues with the start of the context even with repeat off
+      queue.add(contextTracks.get(order.get((position + i) % order.size())));
+    }
+    return new State(contextType, contextId, currentTrack(), contextTracks.get(previousTrackIndex), progressMs,
+      progressTime, playing, shuffle, repeat, volume, deviceName, queue);
+  }
+
+  private void advance() {
+    if (advancing) {
+      // Called by a scheduled action, which must be applied at its own point of time rather than now
+      return;
+    }
+    advancing = true;
+    try {
+      advanceUntil(clock.getAsLong());
+    } finally {
+      advancing = false;
+    }
+  }
+
+  private void advanceUntil(long now) {
+    while (true) {
+      long nextActionTime = timeline.isEmpty() ? Long.MAX_VALUE : timeline.peek().time;
+      long trackEndTime = playing ? progressTime + (currentTrack().getDurationMs() - progressMs) : Long.MAX_VALUE;
+      long nextEventTime = Math.min(nextActionTime, trackEndTime);
+      if (nextEventTime > now) {
+        break;
+      }
+      moveTo(nextEventTime);
+      if (trackEndTime <= nextActionTime) {
+        finishTrack();
+      } else {
+        timeline.poll().action.accept(this);
+      }
+    }
+    moveTo(now);
+  }
+
+  private void moveTo(long time) {
+    if (playing && time > progressTime) {
+      progressMs += time - progressTime;
+    }
+    progressTime = Math.max(progressTime, time);
+  }
+
+  private void finishTrack() {
+    if (repeat.equals("track")) {
+      progressMs = 0;
+    } else if (position + 1 < order.size() || repeat.equals("context")) {
+      skip(1);
+    } else {
+      // End of the context
+      progressMs = 0;
+      playing = false;
+    }
+  }
+
+  private void skip(int offset) {
+    if (!order.isEmpty()) {
+      previousTrackIndex = order.get(position);
+      position = Math.floorMod(position + offset, order.size());
+      progressMs = 0;
+    }
+  }
+
+  private void shuffleOrder() {
+    if (!order.isEmpty()) {
+      int currentIndex = order.get(position);
+      List<Integer> shuffled = new ArrayList<>(order);
+      shuffled.remove(Integer.valueOf(currentIndex));
+      Collections.shuffle(shuffled, shuffleRandom);
+      shuffled.add(0, currentIndex);
+      order = shuffled;
+      position = 0;
+    }
+  }
+
+  private SimulatedCatalog.Track currentTrack() {
+    return contextTracks.get(order.get(position));
+  }
+
+  private List<SimulatedCatalog.Track> tracksOfContext(ContextType type, String id) {
+    switch (type) {
+      case ALBUM:
+        SimulatedCatalog.Album album = catalog.getAlbum(id);
+        return album != null ? album.getTracks() : List.of();
+      case PLAYLIST:
+        SimulatedCatalog.Playlist playlist = catalog.getPlaylist(id);
+        return playlist != null ? playlist.getTracks() : List.of();
+      case ARTIST:
+        return catalog.getAlbumIds().stream()
+          .map(catalog::getAlbum)
+          .filter(a -> a.getArtist().getId().equals(id))
+          .findFirst()
+          .map(SimulatedCatalog.Album::getTracks)
+          .orElse(List.of());
+      case SAVED_TRACKS:
+        return catalog.getSavedTracks();
+      default:
+        throw new IllegalArgumentException("Unknown context type: " + type);
+    }
+  }
+
+  private static class ScheduledAction implements Comparable<ScheduledAction> {
+    private final long time;
+    private final int sequence;
+    private final Consumer<SimulatedPlayer> action;
+
+    private ScheduledAction(long time, int sequence, Consumer<SimulatedPlayer> action) {
+      this.time = time;
+      this.sequence = sequence;
+      this.action = action;
+    }
+
+    @Override
+    public int compareTo(ScheduledAction other) {
+      int byTime = Long.compare(time, other.time);
+      return byTime != 0 ? byTime : Integer.compare(sequence, other.sequence);
+    }
+  }
+
+  /**
+   * An immutable snapshot of the player
+   */
+  public static class State {
+    private final ContextType contextType;
+    private final String contextId;
+    private final SimulatedCatalog.Track track;
+    private final SimulatedCatalog.Track previousTrack;
+    private final long progressMs;
+    private final long timestamp;
+    private final boolean playing;
+    private final boolean shuffle;
+    private final String repeat;
+    private final int volume;
+    private final String deviceName;
+    private final List<SimulatedCatalog.Track> queue;
+
+    private State(ContextType contextType, String contextId, SimulatedCatalog.Track track, SimulatedCatalog.Track previousTrack,
+        long progressMs, long timestamp, boolean playing, boolean shuffle, String repeat, int volume, String deviceName,
+        List<SimulatedCatalog.Track> queue) {
+      this.contextType = contextType;
+      this.contextId = contextId;
+      this.track = track;
+      this.previousTrack = previousTrack;
+      this.progressMs = progressMs;
+      this.timestamp = timestamp;
+      this.playing = playing;
+      this.shuffle = shuffle;
+      this.repeat = repeat;
+      this.volume = volume;
+      this.deviceName = deviceName;
+      this.queue = List.copyOf(queue);
+    }
+
+    public ContextType getContextType() {
+      return contextType;
+    }
+
+    public String getContextId() {
+      return contextId;
+    }
+
+    public SimulatedCatalog.Track getTrack() {
+      return track;
+    }
+
+    /**
+     * @return the track that was played before the current one (the current one itself if there wasn't any)
+     */
+    public SimulatedCatalog.Track getPreviousTrack() {
+      return previousTrack;
+    }
+
+    public long getProgressMs() {
+      return progressMs;
+    }
+
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public boolean isPlaying() {
+      return playing;
+    }
+
+    public boolean isShuffle() {
+      return shuffle;
+    }
+
+    public String getRepeat() {
+      return repeat;
+    }
+
+    public int getVolume() {
+      return volume;
+    }
+
+    public String getDeviceName() {
+      return deviceName;
+    }
+
+    public List<SimulatedCatalog.Track> getQueue() {
+      return queue;
+    }
+  }
+}
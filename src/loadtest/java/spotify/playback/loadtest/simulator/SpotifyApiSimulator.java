@@ -0,0 +1,385 @@
+package spotify.playback.loadtest.simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import se.michaelthelin.spotify.SpotifyApi;
+
+/**
+ * An in-process stand-in for the endpoints of the Spotify Web API that are used by this app, served on a
+ * random local port. A {@link SpotifyApi} pointed at it (see {@link #createSpotifyApi()}) behaves just like
+ * one connected to the actual API, so the entire poll pipeline can be load-tested without a Spotify account:
+ * <ul>
+ *   <li>current playback, queue and the player commands are backed by a {@link SimulatedPlayer}</li>
+ *   <li>albums, playlists, artists, shows and saved tracks are served from a {@link SimulatedCatalog}</li>
+ *   <li>latency, rate limiting and desyncs are injected as configured in the {@link FaultInjection}</li>
+ * </ul>
+ * It also serves a fixed response in place of the external color fetch service (at <code>/colorfetch</code>,
+ * to be set as <code>colorfetch.url</code>), since that one is called for every new artwork as well.
+ * Every call is counted per endpoint, to be able to tell how many upstream calls the app makes.
+ */
+public class SpotifyApiSimulator implements AutoCloseable {
+  public static final String ACCESS_TOKEN = "simulated-access-token";
+
+  private static final String JSON_CONTENT_TYPE = "application/json; charset=utf-8";
+
+  private final SimulatedCatalog catalog;
+  private final SimulatedPlayer player;
+  private final FaultInjection faultInjection;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final List<Route> routes;
+  private final Map<String, LongAdder> callCounts;
+  private final LongAdder rateLimitedCalls;
+  private volatile JsonObject colorFetchResponse;
+
+  public SpotifyApiSimulator(SimulatedCatalog catalog, SimulatedPlayer player, FaultInjection faultInjection) throws IOException {
+    this.catalog = catalog;
+    this.player = player;
+    this.faultInjection = faultInjection;
+    this.callCounts = new ConcurrentHashMap<>();
+    this.rateLimitedCalls = new LongAdder();
+    this.colorFetchResponse = new JsonObject();
+
+    this.routes = new ArrayList<>();
+    get("current-playback", "/v1/me/player", this::currentPlayback);
+    get("queue", "/v1/me/player/queue", this::queue);
+    get("profile", "/v1/me", (params, query, body) -> json(SpotifyJson.user()));
+    get("saved-tracks", "/v1/me/tracks", (params, query, body) ->
+      json(SpotifyJson.savedTracks(catalog.getSavedTracks(), offset(query), limit(query, 20, 50))));
+    get("album", "/v1/albums/([^/]+)", (params, query, body) -> {
+      SimulatedCatalog.Album album = catalog.getAlbum(params.get(0));
+      return album != null ? json(SpotifyJson.album(album, 50)) : notFound();
+    });
+    get("album-tracks", "/v1/albums/([^/]+)/tracks", (params, query, body) -> {
+      SimulatedCatalog.Album album = catalog.getAlbum(params.get(0));
+      return album != null ? json(SpotifyJson.albumTracks(album, offset(query), limit(query, 20, 50))) : notFound();
+    });
+    get("playlist", "/v1/playlists/([^/]+)", (params, query, body) -> {
+      SimulatedCatalog.Playlist playlist = catalog.getPlaylist(params.get(0));
+      return playlist != null ? json(SpotifyJson.playlist(playlist, 100)) : notFound();
+    });
+    get("playlist-items", "/v1/playlists/([^/]+)/tracks", (params, query, body) -> {
+      SimulatedCatalog.Playlist playlist = catalog.getPlaylist(params.get(0));
+      return playlist != null ? json(SpotifyJson.playlistTracks(playlist, offset(query), limit(query, 100, 100))) : notFound();
+    });
+    get("artist", "/v1/artists/([^/]+)", (params, query, body) -> {
+      SimulatedCatalog.Artist artist = catalog.getArtist(params.get(0));
+      return artist != null ? json(SpotifyJson.artist(artist)) : notFound();
+    });
+    get("show", "/v1/shows/([^/]+)", (params, query, body) -> {
+      SimulatedCatalog.Show show = catalog.getShow(params.get(0));
+      return show != null ? json(SpotifyJson.show(show)) : notFound();
+    });
+    get("colorfetch", "/colorfetch", (params, query, body) -> json(colorFetchResponse));
+    command("PUT", "play", "/v1/me/player/play", this::play);
+    command("PUT", "pause", "/v1/me/player/pause", (params, query, body) -> player.pause());
+    command("POST", "next", "/v1/me/player/next", (params, query, body) -> player.next());
+    command("POST", "previous", "/v1/me/player/previous", (params, query, body) -> player.previous());
+    command("PUT", "seek", "/v1/me/player/seek", (params, query, body) -> player.seek(Long.parseLong(query.get("position_ms"))));
+    command("PUT", "shuffle", "/v1/me/player/shuffle", (params, query, body) -> player.setShuffle(Boolean.parseBoolean(query.get("state"))));
+    command("PUT", "repeat", "/v1/me/player/repeat", (params, query, body) -> player.setRepeat(query.get("state")));
+    command("PUT", "volume", "/v1/me/player/volume", (params, query, body) -> player.setVolume(Integer.parseInt(query.get("volume_percent"))));
+
+    this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    this.executor = Executors.newCachedThreadPool(runnable -> {
+      Thread thread = new Thread(runnable, "spotify-api-simulator");
+      thread.setDaemon(true);
+      return thread;
+    });
+    server.setExecutor(executor);
+    server.createContext("/v1/", this::handle);
+    server.createContext("/colorfetch", this::handle);
+  }
+
+  public SpotifyApiSimulator start() {
+    server.start();
+    return this;
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /**
+   * @return a new API client that sends all of its requests to this simulator, already authorized
+   */
+  public SpotifyApi createSpotifyApi() {
+    return SpotifyApi.builder()
+      .setScheme("http")
+      .setHost(server.getAddress().getHostString())
+      .setPort(getPort())
+      .setAccessToken(ACCESS_TOKEN)
+      .build();
+  }
+
+  /**
+   * @return the URL to set as <code>colorfetch.url</code>
+   */
+  public String getColorFetchUrl() {
+    return "http://" + server.getAddress().getHostString() + ":" + getPort() + "/colorfetch";
+  }
+
+  /**
+   * @param colorFetchResponse the JSON to return for every color fetch request
+   */
+  public void setColorFetchResponse(String colorFetchResponse) {
+    this.colorFetchResponse = JsonParser.parseString(colorFetchResponse).getAsJsonObject();
+  }
+
+  public SimulatedCatalog getCatalog() {
+    return catalog;
+  }
+
+  public SimulatedPlayer getPlayer() {
+    return player;
+  }
+
+  public FaultInjection getFaultInjection() {
+    return faultInjection;
+  }
+
+  /**
+   * @return the number of calls per endpoint since the start (or the last reset), including rate-limited ones
+   */
+  public Map<String, Long> getCallCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    callCounts.forEach((endpoint, count) -> counts.put(endpoint, count.sum()));
+    return counts;
+  }
+
+  public long getTotalCallCount() {
+    return callCounts.values().stream().mapToLong(LongAdder::sum).sum();
+  }
+
+  public long getRateLimitedCallCount() {
+    return rateLimitedCalls.sum();
+  }
+
+  public void resetCallCounts() {
+    callCounts.clear();
+    rateLimitedCalls.reset();
+  }
+
+  ///////////////////
+
+  private Response currentPlayback(List<String> params, Map<String, String> query, JsonObject body) {
+    SimulatedPlayer.State state = player.getState();
+    return state != null ? json(SpotifyJson.currentPlayback(state)) : new Response(204, null);
+  }
+
+  private Response queue(List<String> params, Map<String, String> query, JsonObject body) {
+    SimulatedPlayer.State state = player.getState();
+    if (state == null) {
+      return json(SpotifyJson.queue(null, List.of()));
+    }
+    if (faultInjection.shouldDesync()) {
+      // Stale queue from before the last track change
+      List<SimulatedCatalog.Track> staleQueue = new ArrayList<>();
+      staleQueue.add(state.getTrack());
+      staleQueue.addAll(state.getQueue().subList(0, state.getQueue().size() - 1));
+      return json(SpotifyJson.queue(state.getPreviousTrack(), staleQueue));
+    }
+    return json(SpotifyJson.queue(state.getTrack(), state.getQueue()));
+  }
+
+  private void play(List<String> params, Map<String, String> query, JsonObject body) {
+    if (body == null || !body.has("context_uri")) {
+      player.resume();
+      return;
+    }
+    String[] contextUri = body.get("context_uri").getAsString().split(":");
+    int position = 0;
+    if (body.has("offset") && body.getAsJsonObject("offset").has("position")) {
+      position = body.getAsJsonObject("offset").get("position").getAsInt();
+    }
+    switch (contextUri[1]) {
+      case "album":
+        player.play(SimulatedPlayer.ContextType.ALBUM, contextUri[2], position);
+        break;
+      case "playlist":
+        player.play(SimulatedPlayer.ContextType.PLAYLIST, contextUri[2], position);
+        break;
+      case "artist":
+        player.play(SimulatedPlayer.ContextType.ARTIST, contextUri[2], position);
+        break;
+      default:
+        player.play(SimulatedPlayer.ContextType.SAVED_TRACKS, null, position);
+        break;
+    }
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      String path = exchange.getRequestURI().getPath();
+      for (Route route : routes) {
+        Matcher matcher = route.pattern.matcher(path);
+        if (route.method.equals(exchange.getRequestMethod()) && matcher.matches()) {
+          callCounts.computeIfAbsent(route.name, name -> new LongAdder()).increment();
+          sleep(faultInjection.nextLatencyMs());
+          if (faultInjection.shouldRateLimit()) {
+            rateLimitedCalls.increment();
+            exchange.getResponseHeaders().set("Retry-After", String.valueOf(faultInjection.getRetryAfterSeconds()));
+            send(exchange, new Response(429, SpotifyJson.error(429, "API rate limit exceeded")));
+            return;
+          }
+
+          List<String> params = new ArrayList<>();
+          for (int i = 1; i <= matcher.groupCount(); i++) {
+            params.add(matcher.group(i));
+          }
+          Response response;
+          try {
+            response = route.handler.handle(params, parseQuery(exchange.getRequestURI().getRawQuery()), parseBody(exchange.getRequestBody()));
+          } catch (IllegalArgumentException | IllegalStateException | NullPointerException | IndexOutOfBoundsException | JsonParseException e) {
+            response = new Response(400, SpotifyJson.error(400, String.valueOf(e.getMessage())));
+          }
+          send(exchange, response);
+          return;
+        }
+      }
+      send(exchange, notFound());
+    } finally {
+      exchange.close();
+    }
+  }
+
+  private void get(String name, String pathRegex, RouteHandler handler) {
+    routes.add(new Route("GET", name, Pattern.compile(pathRegex), handler));
+  }
+
+  private void command(String method, String name, String pathRegex, CommandHandler handler) {
+    routes.add(new Route(method, name, Pattern.compile(pathRegex), (params, query, body) -> {
+      if (player.getState() == null && !name.equals("play")) {
+        return new Response(404, SpotifyJson.error(404, "Player command failed: No active device found"));
+      }
+      handler.handle(params, query, body);
+      return new Response(204, null);
+    }));
+  }
+
+  private static Response json(JsonObject json) {
+    return new Response(200, json);
+  }
+
+  private static Response notFound() {
+    return new Response(404, SpotifyJson.error(404, "Non existing id"));
+  }
+
+  private static int offset(Map<String, String> query) {
+    return Integer.parseInt(query.getOrDefault("offset", "0"));
+  }
+
+  private static int limit(Map<String, String> query, int defaultLimit, int maxLimit) {
+    return Math.min(maxLimit, Integer.parseInt(query.getOrDefault("limit", String.valueOf(defaultLimit))));
+  }
+
+  private static Map<String, String> parseQuery(String rawQuery) {
+    Map<String, String> query = new HashMap<>();
+    if (rawQuery != null) {
+      for (String parameter : rawQuery.split("&")) {
+        String[] keyValue = parameter.split("=", 2);
+        String value = keyValue.length > 1 ? URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8) : "";
+        query.put(URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8), value);
+      }
+    }
+    return query;
+  }
+
+  private static JsonObject parseBody(InputStream requestBody) throws IOException {
+    String body = new String(requestBody.readAllBytes(), StandardCharsets.UTF_8);
+    if (body.isBlank()) {
+      return null;
+    }
+    JsonElement json = JsonParser.parseString(body);
+    return json.isJsonObject() ? json.getAsJsonObject() : null;
+  }
+
+  private static void send(HttpExchange exchange, Response response) throws IOException {
+    if (response.body == null) {
+      exchange.sendResponseHeaders(response.status, -1);
+      return;
+    }
+    byte[] bytes = response.body.toString().getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", JSON_CONTENT_TYPE);
+    exchange.sendResponseHeaders(response.status, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  private static void sleep(long ms) {
+    if (ms > 0) {
+      try {
+        TimeUnit.MILLISECONDS.sleep(ms);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @FunctionalInterface
+  private interface RouteHandler {
+    Response handle(List<String> params, Map<String, String> query, JsonObject body);
+  }
+
+  @FunctionalInterface
+  private interface CommandHandler {
+    void handle(List<String> params, Map<String, String> query, JsonObject body);
+  }
+
+  private static class Route {
+    private final String method;
+    private final String name;
+    private final Pattern pattern;
+    private final RouteHandler handler;
+
+    private Route(String method, String name, Pattern pattern, RouteHandler handler) {
+      this.method = method;
+      this.name = name;
+      this.pattern = pattern;
+      this.handler = handler;
+    }
+  }
+
+  private static class Response {
+    private final int status;
+    private final JsonObject body;
+
+    private Response(int status, JsonObject body) {
+      this.status = status;
+      this.body = body;
+    }
+  }
+}
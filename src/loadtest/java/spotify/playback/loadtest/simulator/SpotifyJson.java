@@ -0,0 +1,276 @@
+package spotify.playback.loadtest.simulator;
+
+import java.util.List;
+import java.util.function.Function;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+/**
+ * Renders the simulated catalog in the same JSON format as the Spotify Web API, restricted to the fields
+ * that are actually read by spotify-web-api-java and this app.
+ */
+final class SpotifyJson {
+  private static final String API_URL = "https://api.spotify.com/v1/";
+  private static final String IMAGE_URL = "https://i.scdn.co/image/";
+  private static final String ADDED_AT = "2023-01-01T00:00:00Z";
+
+  private SpotifyJson() {}
+
+  static JsonObject currentPlayback(SimulatedPlayer.State state) {
+    JsonObject device = new JsonObject();
+    device.addProperty("id", "5fbb3ba6aa454b5534c4ba43a8c7e8e45a63ad0e");
+    device.addProperty("is_active", true);
+    device.addProperty("is_private_session", false);
+    device.addProperty("is_restricted", false);
+    device.addProperty("name", state.getDeviceName());
+    device.addProperty("type", "Computer");
+    device.addProperty("volume_percent", state.getVolume());
+
+    JsonObject json = new JsonObject();
+    json.add("device", device);
+    json.addProperty("shuffle_state", state.isShuffle());
+    json.addProperty("repeat_state", state.getRepeat());
+    json.addProperty("timestamp", state.getTimestamp());
+    json.add("context", context(state));
+    json.addProperty("progress_ms", state.getProgressMs());
+    json.add("item", track(state.getTrack()));
+    json.addProperty("currently_playing_type", "track");
+    json.addProperty("is_playing", state.isPlaying());
+    return json;
+  }
+
+  static JsonObject queue(SimulatedCatalog.Track currentlyPlaying, List<SimulatedCatalog.Track> queue) {
+    JsonObject json = new JsonObject();
+    json.add("currently_playing", currentlyPlaying != null ? track(currentlyPlaying) : JsonNull.INSTANCE);
+    json.add("queue", array(queue, SpotifyJson::track));
+    return json;
+  }
+
+  static JsonObject album(SimulatedCatalog.Album album, int limit) {
+    JsonObject json = albumSimplified(album);
+    json.add("tracks", paging("albums/" + album.getId() + "/tracks", album.getTracks(), 0, limit, SpotifyJson::trackSimplified));
+    json.add("genres", new JsonArray());
+    json.addProperty("label", "Simulated Records");
+    json.addProperty("popularity", 50);
+    return json;
+  }
+
+  static JsonObject albumTracks(SimulatedCatalog.Album album, int offset, int limit) {
+    return paging("albums/" + album.getId() + "/tracks", album.getTracks(), offset, limit, SpotifyJson::trackSimplified);
+  }
+
+  static JsonObject playlist(SimulatedCatalog.Playlist playlist, int limit) {
+    JsonObject owner = user();
+    JsonObject json = new JsonObject();
+    json.addProperty("id", playlist.getId());
+    json.addProperty("name", playlist.getName());
+    json.addProperty("description", "");
+    json.addProperty("collaborative", false);
+    json.addProperty("public", true);
+    json.addProperty("snapshot_id", "MSw" + playlist.getId());
+    json.addProperty("type", "playlist");
+    json.addProperty("uri", "spotify:playlist:" + playlist.getId());
+    json.addProperty("href", API_URL + "playlists/" + playlist.getId());
+    json.add("owner", owner);
+    json.add("images", images(playlist.getId()));
+    json.add("tracks", playlistTracks(playlist, 0, limit));
+    return json;
+  }
+
+  static JsonObject playlistTracks(SimulatedCatalog.Playlist playlist, int offset, int limit) {
+    return paging("playlists/" + playlist.getId() + "/tracks", playlist.getTracks(), offset, limit, SpotifyJson::savedTrack);
+  }
+
+  static JsonObject savedTracks(List<SimulatedCatalog.Track> tracks, int offset, int limit) {
+    return paging("me/tracks", tracks, offset, limit, SpotifyJson::savedTrack);
+  }
+
+  static JsonObject artist(SimulatedCatalog.Artist artist) {
+    JsonObject followers = new JsonObject();
+    followers.add("href", JsonNull.INSTANCE);
+    followers.addProperty("total", 123_456);
+
+    JsonObject json = artistSimplified(artist);
+    json.add("followers", followers);
+    json.add("genres", new JsonArray());
+    json.add("images", images(artist.getId()));
+    json.addProperty("popularity", 50);
+    return json;
+  }
+
+  static JsonObject show(SimulatedCatalog.Show show) {
+    JsonObject episodes = new JsonObject();
+    episodes.addProperty("href", API_URL + "shows/" + show.getId() + "/episodes");
+    episodes.add("items", new JsonArray());
+    episodes.addProperty("limit", 50);
+    episodes.add("next", JsonNull.INSTANCE);
+    episodes.addProperty("offset", 0);
+    episodes.add("previous", JsonNull.INSTANCE);
+    episodes.addProperty("total", show.getEpisodeCount());
+
+    JsonObject json = new JsonObject();
+    json.addProperty("id", show.getId());
+    json.addProperty("name", show.getName());
+    json.addProperty("publisher", show.getPublisher());
+    json.addProperty("description", "");
+    json.addProperty("explicit", false);
+    json.addProperty("media_type", "audio");
+    json.addProperty("total_episodes", show.getEpisodeCount());
+    json.addProperty("type", "show");
+    json.addProperty("uri", "spotify:show:" + show.getId());
+    json.addProperty("href", API_URL + "shows/" + show.getId());
+    json.add("images", images(show.getId()));
+    json.add("episodes", episodes);
+    return json;
+  }
+
+  static JsonObject user() {
+    JsonObject json = new JsonObject();
+    json.addProperty("id", "simulated-user");
+    json.addProperty("display_name", "Simulated User");
+    json.addProperty("type", "user");
+    json.addProperty("uri", "spotify:user:simulated-user");
+    json.addProperty("href", API_URL + "users/simulated-user");
+    json.add("images", new JsonArray());
+    return json;
+  }
+
+  static JsonObject error(int status, String message) {
+    JsonObject error = new JsonObject();
+    error.addProperty("status", status);
+    error.addProperty("message", message);
+    JsonObject json = new JsonObject();
+    json.add("error", error);
+    return json;
+  }
+
+  private static JsonObject context(SimulatedPlayer.State state) {
+    JsonObject json = new JsonObject();
+    switch (state.getContextType()) {
+      case ALBUM:
+        json.addProperty("type", "album");
+        json.addProperty("href", API_URL + "albums/" + state.getContextId());
+        json.addProperty("uri", "spotify:album:" + state.getContextId());
+        break;
+      case PLAYLIST:
+        json.addProperty("type", "playlist");
+        json.addProperty("href", API_URL + "playlists/" + state.getContextId());
+        json.addProperty("uri", "spotify:playlist:" + state.getContextId());
+        break;
+      case ARTIST:
+        json.addProperty("type", "artist");
+        json.addProperty("href", API_URL + "artists/" + state.getContextId());
+        json.addProperty("uri", "spotify:artist:" + state.getContextId());
+        break;
+      case SAVED_TRACKS:
+        json.addProperty("type", "collection");
+        json.addProperty("href", API_URL + "me/tracks");
+        json.addProperty("uri", "spotify:user:simulated-user:collection");
+        break;
+    }
+    return json;
+  }
+
+  private static JsonObject track(SimulatedCatalog.Track track) {
+    JsonObject json = trackSimplified(track);
+    json.add("album", albumSimplified(track.getAlbum()));
+    json.addProperty("popularity", 50);
+    return json;
+  }
+
+  private static JsonObject trackSimplified(SimulatedCatalog.Track track) {
+    JsonObject json = new JsonObject();
+    json.addProperty("id", track.getId());
+    json.addProperty("name", track.getName());
+    json.addProperty("duration_ms", track.getDurationMs());
+    json.addProperty("track_number", track.getTrackNumber());
+    json.addProperty("disc_number", track.getDiscNumber());
+    json.addProperty("explicit", false);
+    json.addProperty("is_local", false);
+    json.addProperty("type", "track");
+    json.addProperty("uri", "spotify:track:" + track.getId());
+    json.addProperty("href", API_URL + "tracks/" + track.getId());
+    json.add("artists", array(List.of(track.getAlbum().getArtist()), SpotifyJson::artistSimplified));
+    return json;
+  }
+
+  private static JsonObject savedTrack(SimulatedCatalog.Track track) {
+    JsonObject json = new JsonObject();
+    json.addProperty("added_at", ADDED_AT);
+    json.addProperty("is_local", false);
+    json.add("track", track(track));
+    return json;
+  }
+
+  private static JsonObject albumSimplified(SimulatedCatalog.Album album) {
+    JsonObject json = new JsonObject();
+    json.addProperty("id", album.getId());
+    json.addProperty("name", album.getName());
+    json.addProperty("album_type", "album");
+    json.addProperty("release_date", album.getReleaseDate());
+    json.addProperty("release_date_precision", "day");
+    json.addProperty("total_tracks", album.getTracks().size());
+    json.addProperty("type", "album");
+    json.addProperty("uri", "spotify:album:" + album.getId());
+    json.addProperty("href", API_URL + "albums/" + album.getId());
+    json.add("artists", array(List.of(album.getArtist()), SpotifyJson::artistSimplified));
+    json.add("images", images(album.getId()));
+    return json;
+  }
+
+  private static JsonObject artistSimplified(SimulatedCatalog.Artist artist) {
+    JsonObject json = new JsonObject();
+    json.addProperty("id", artist.getId());
+    json.addProperty("name", artist.getName());
+    json.addProperty("type", "artist");
+    json.addProperty("uri", "spotify:artist:" + artist.getId());
+    json.addProperty("href", API_URL + "artists/" + artist.getId());
+    return json;
+  }
+
+  private static JsonArray images(String id) {
+    JsonArray images = new JsonArray();
+    for (int size : new int[] {640, 300, 64}) {
+      JsonObject image = new JsonObject();
+      image.addProperty("url", IMAGE_URL + id + size);
+      image.addProperty("width", size);
+      image.addProperty("height", size);
+      images.add(image);
+    }
+    return images;
+  }
+
+  private static <T> JsonObject paging(String path, List<T> items, int offset, int limit, Function<T, JsonElement> mapper) {
+    int from = Math.min(offset, items.size());
+    int to = Math.min(from + limit, items.size());
+
+    JsonObject json = new JsonObject();
+    json.addProperty("href", API_URL + path + "?offset=" + from + "&limit=" + limit);
+    json.add("items", array(items.subList(from, to), mapper));
+    json.addProperty("limit", limit);
+    json.addProperty("offset", from);
+    json.addProperty("total", items.size());
+    if (to < items.size()) {
+      json.addProperty("next", API_URL + path + "?offset=" + to + "&limit=" + limit);
+    } else {
+      json.add("next", JsonNull.INSTANCE);
+    }
+    if (from > 0) {
+      json.addProperty("previous", API_URL + path + "?offset=" + Math.max(0, from - limit) + "&limit=" + limit);
+    } else {
+      json.add("previous", JsonNull.INSTANCE);
+    }
+    return json;
+  }
+
+  private static <T> JsonArray array(List<T> items, Function<T, ? extends JsonElement> mapper) {
+    JsonArray array = new JsonArray();
+    for (T item : items) {
+      array.add(mapper.apply(item));
+    }
+    return array;
+  }
+}
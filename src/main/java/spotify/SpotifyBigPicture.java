@@ -16,7 +16,13 @@ public class SpotifyBigPicture {
    * Main entry point of the bot
    */
   public static void main(String[] args) {
-    new SpringApplicationBuilder(SpotifyBigPicture.class).headless(GraphicsEnvironment.isHeadless()).run(args);
+    new SpringApplicationBuilder(SpotifyBigPicture.class)
+      .headless(GraphicsEnvironment.isHeadless())
+      .properties(
+        // Defaults, can be overridden in application.properties
+        "management.endpoints.web.exposure.include=health,prometheus",
+        "management.metrics.distribution.percentiles-histogram.bigpicture.poll=true")
+      .run(args);
   }
 
   @Component
@@ -3,11 +3,18 @@ package spotify.playback;
 import java.io.IOException;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
 
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,36 +23,40 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.servlet.ModelAndView;
 
 import spotify.config.SpotifyApiConfig;
-import spotify.playback.control.PlaybackControl;
+import spotify.playback.account.AccountContext;
+import spotify.playback.account.AccountRegistry;
 import spotify.playback.data.PlaybackInfoProvider;
 import spotify.playback.data.dto.PlaybackInfo;
 import spotify.playback.data.dto.PlaybackInfoError;
 import spotify.playback.data.dto.PlaybackInfoResponse;
 import spotify.playback.data.dto.misc.BigPictureSetting;
+import spotify.playback.data.dto.misc.SyncedLyrics;
 import spotify.playback.data.lyrics.GeniusLyricsScraper;
+import spotify.playback.data.lyrics.SyncedLyricsFinder;
+import spotify.playback.metrics.PollTrace;
+import spotify.playback.web.VersionedHtmlProvider;
 
 @RestController
 public class PlaybackController {
   private static final String DISABLE_PLAYBACK_CONTROLS_ENV_NAME = "disable_playback_controls";
 
-  private final PlaybackInfoProvider playbackInfoProvider;
-  private final PlaybackControl playbackControl;
+  private final AccountRegistry accountRegistry;
   private final SpotifyApiConfig spotifyApiConfig;
   private final GeniusLyricsScraper geniusLyrics;
-
-  private List<BigPictureSetting> bigPictureSettings;
+  private final SyncedLyricsFinder syncedLyricsFinder;
+  private final VersionedHtmlProvider versionedHtmlProvider;
 
   private final boolean playbackControlsDisabled;
   private final Logger logger = Logger.getLogger(PlaybackController.class.getName());
 
-  PlaybackController(PlaybackInfoProvider playbackInfoProvider, PlaybackControl playbackControl, SpotifyApiConfig spotifyApiConfig, GeniusLyricsScraper geniusLyrics) {
-    this.playbackInfoProvider = playbackInfoProvider;
+  PlaybackController(AccountRegistry accountRegistry, SpotifyApiConfig spotifyApiConfig, @Lazy GeniusLyricsScraper geniusLyrics, SyncedLyricsFinder syncedLyricsFinder, VersionedHtmlProvider versionedHtmlProvider) {
     this.spotifyApiConfig = spotifyApiConfig;
-    this.playbackControl = playbackControl;
+    this.accountRegistry = accountRegistry;
     this.geniusLyrics = geniusLyrics;
+    this.syncedLyricsFinder = syncedLyricsFinder;
+    this.versionedHtmlProvider = versionedHtmlProvider;
 
     String env = System.getenv(DISABLE_PLAYBACK_CONTROLS_ENV_NAME);
     this.playbackControlsDisabled = Boolean.parseBoolean(env);
@@ -64,8 +75,8 @@ public class PlaybackController {
    * Return the layout.html file (root entry endpoint)
    */
   @GetMapping("/")
-  public ModelAndView createSpotifyPlaybackInterfaceView() {
-    return new ModelAndView("layout.html");
+  public ResponseEntity<String> createSpotifyPlaybackInterfaceView() throws IOException {
+    return createVersionedHtmlResponse("layout.html");
   }
 
   /**
@@ -73,18 +84,39 @@ public class PlaybackController {
    *
    * @param v versionId provided by the interface
    *          to see if there actually were any updates
-   * @return a PlaybackInfoResponse (either the playback info or an error object)
+   * @param c the ID of the client (i.e. the browser tab), so that several displays
+   *          can be connected at the same time without interfering with each other
+   * @param a the name of the account, the default account if not given
+   * @return a PlaybackInfoResponse (either the playback info or an error object),
+   *         asynchronously so the Spotify calls don't block a request thread
+   *         (503 if too many Spotify calls are queued up already, 404 if the account is unknown)
    */
   @CrossOrigin
   @GetMapping("/playback-info")
-  public ResponseEntity<? extends PlaybackInfoResponse> getCurrentPlaybackInfo(@RequestParam int v) {
-    try {
-      PlaybackInfo currentPlaybackInfo = playbackInfoProvider.getCurrentPlaybackInfo(v);
-      return ResponseEntity.ok(currentPlaybackInfo);
-    } catch (Exception e) {
-      PlaybackInfoError playbackInfoError = new PlaybackInfoError(e);
-      return ResponseEntity.internalServerError().body(playbackInfoError);
+  public Callable<ResponseEntity<? extends PlaybackInfoResponse>> getCurrentPlaybackInfo(@RequestParam int v, @RequestParam(required = false) String c, @RequestParam(required = false) String a, HttpServletRequest request) {
+    Optional<AccountContext> account = accountRegistry.getAccount(a);
+    if (account.isEmpty()) {
+      return () -> ResponseEntity.notFound().build();
     }
+    PlaybackInfoProvider accountPlaybackInfoProvider = account.get().getPlaybackInfoProvider();
+
+    // The trace is finished once the response has been serialized, see SlowPollLog
+    PollTrace trace = PollTrace.create();
+    request.setAttribute(PollTrace.REQUEST_ATTRIBUTE, trace);
+    PollTrace.Scope executorWait = trace.openSpan("executor-wait");
+    return () -> {
+      executorWait.close();
+      trace.bind();
+      try {
+        return ResponseEntity.ok(accountPlaybackInfoProvider.getCurrentPlaybackInfo(v, c));
+      } catch (RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new PlaybackInfoError(e));
+      } catch (RuntimeException e) {
+        return ResponseEntity.internalServerError().body(new PlaybackInfoError(e));
+      } finally {
+        PollTrace.detach();
+      }
+    };
   }
 
   ///////////////
@@ -94,13 +126,31 @@ public class PlaybackController {
    *
    * @param artist the artist name
    * @param song the song name
-   * @return the lyrics as String (empty string when none were found)
+   * @return the lyrics as String (empty string when none were found),
+   *         asynchronously so no request thread is blocked during the scraping
    */
   @CrossOrigin
   @GetMapping("/lyrics")
-  public ResponseEntity<String> getSongLyrics(@RequestParam String artist, @RequestParam String song) {
-    String songLyrics = geniusLyrics.getSongLyrics(artist, song);
-    return ResponseEntity.ok(songLyrics);
+  public CompletableFuture<ResponseEntity<String>> getSongLyrics(@RequestParam String artist, @RequestParam String song) {
+    return geniusLyrics.getSongLyrics(artist, song)
+      .thenApply(ResponseEntity::ok)
+      .exceptionally(e -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+  }
+
+  /**
+   * Try to look for time-coded lyrics for the given song name and artist,
+   * so that the interface can highlight and scroll to the currently sung line.
+   *
+   * @param artist the artist name
+   * @param song the song name
+   * @return the lyrics lines with their timestamps, 204 if there are no synced lyrics for this song
+   */
+  @CrossOrigin
+  @GetMapping("/lyrics/synced")
+  public ResponseEntity<SyncedLyrics> getSyncedSongLyrics(@RequestParam String artist, @RequestParam String song) {
+    return syncedLyricsFinder.findSyncedLyrics(artist, song)
+      .map(ResponseEntity::ok)
+      .orElseGet(() -> ResponseEntity.noContent().build());
   }
 
   ///////////////
@@ -111,17 +161,28 @@ public class PlaybackController {
    *
    * @param control the control to modify
    * @param param an optional parameter requires for some options (like volume)
+   * @param a the name of the account, the default account if not given
    * @return 200 on success, 400 on bad request
    *         (unknown parameter name or controls have been disabled using the
-   *         <code>disable_playback_controls=true</code> environment variable)
+   *         <code>disable_playback_controls=true</code> environment variable),
+   *         once the command has actually been applied by Spotify
    */
   @CrossOrigin
   @PostMapping("/modify-playback/{control}")
-  public ResponseEntity<Void> modifyPlaybackState(@PathVariable String control, @RequestParam(required = false) String param) {
-    if (checkPlaybackControlsEnabled() && playbackControl.modifyPlaybackState(control, param)) {
-      return ResponseEntity.ok().build();
+  public CompletableFuture<ResponseEntity<Void>> modifyPlaybackState(@PathVariable String control, @RequestParam(required = false) String param, @RequestParam(required = false) String a) {
+    Optional<AccountContext> account = accountRegistry.getAccount(a);
+    if (account.isEmpty()) {
+      return CompletableFuture.completedFuture(ResponseEntity.notFound().build());
     }
-    return ResponseEntity.badRequest().build();
+    if (checkPlaybackControlsEnabled()) {
+      return account.get().getPlaybackControl().modifyPlaybackState(control, param).thenApply(success -> {
+        if (success) {
+          return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.badRequest().build();
+      });
+    }
+    return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
   }
 
   ///////////////
@@ -152,44 +213,43 @@ public class PlaybackController {
 
   /**
    * Get a view to manage the visual preferences from anywhere.
+   *
+   * @param account the name of the account, the default account if not given
    */
   @CrossOrigin
   @GetMapping("/settings")
-  public ModelAndView createSettingsView() {
-    checkSettingAreSet();
-    return new ModelAndView("/settings/settings.html");
+  public ResponseEntity<String> createSettingsView(@RequestParam(required = false) String account) throws IOException {
+    checkSettingAreSet(getAccount(account));
+    return createVersionedHtmlResponse("settings/settings.html");
+  }
+
+  private ResponseEntity<String> createVersionedHtmlResponse(String pagePath) throws IOException {
+    return ResponseEntity.ok()
+      .contentType(MediaType.TEXT_HTML)
+      .cacheControl(CacheControl.noCache())
+      .body(versionedHtmlProvider.getPage(pagePath));
   }
 
   /**
-   * Set a flag to toggle the given setting with the next polling request.
+   * Set a flag to toggle the given setting with the next polling request of every client connected to the account.
+   *
+   * @param a the name of the account, the default account if not given
    */
   @CrossOrigin
   @PostMapping("/settings/toggle/{settingId}")
-  public ResponseEntity<BigPictureSetting> toggleSetting(@PathVariable String settingId) {
-    checkSettingAreSet();
+  public ResponseEntity<BigPictureSetting> toggleSetting(@PathVariable String settingId, @RequestParam(required = false) String a) {
+    AccountContext account = getAccount(a);
+    checkSettingAreSet(account);
+    PlaybackInfoProvider playbackInfoProvider = account.getPlaybackInfoProvider();
     if (settingId.startsWith("preset-") || settingId.equals("reload")) {
       playbackInfoProvider.addSettingToToggleForNextPoll(settingId);
       return ResponseEntity.ok(null);
-    } else if (settingId.startsWith("dark-mode-")) {
-      Optional<BigPictureSetting> darkModeSetting = this.bigPictureSettings.stream()
-        .filter(setting -> setting.getId().equals("dark-mode"))
-        .findFirst();
-      if (darkModeSetting.isPresent()) {
-        BigPictureSetting bigPictureSetting = darkModeSetting.get();
-        bigPictureSetting.setState(!bigPictureSetting.getState());
-        playbackInfoProvider.addSettingToToggleForNextPoll(settingId);
-        return ResponseEntity.ok(bigPictureSetting);
-      }
-      return ResponseEntity.notFound().build();
     } else {
-      Optional<BigPictureSetting> settingToToggle = this.bigPictureSettings.stream()
-        .filter(setting -> setting.getId().equals(settingId))
-        .findFirst();
-      if (settingToToggle.isPresent()) {
-        BigPictureSetting bigPictureSetting = settingToToggle.get();
-        bigPictureSetting.setState(!bigPictureSetting.getState());
+      String storedSettingId = settingId.startsWith("dark-mode-") ? "dark-mode" : settingId;
+      Optional<BigPictureSetting> toggledSetting = account.getBigPictureSettings().toggle(storedSettingId);
+      if (toggledSetting.isPresent()) {
         playbackInfoProvider.addSettingToToggleForNextPoll(settingId);
-        return ResponseEntity.ok(bigPictureSetting);
+        return ResponseEntity.ok(toggledSetting.get());
       }
       return ResponseEntity.notFound().build();
     }
@@ -197,26 +257,36 @@ public class PlaybackController {
 
   /**
    * Return the currently set list of settings.
+   *
+   * @param a the name of the account, the default account if not given
    */
   @CrossOrigin
   @GetMapping("/settings/list")
-  public ResponseEntity<List<BigPictureSetting>> getSettingsList() {
-    checkSettingAreSet();
-    return ResponseEntity.ok(bigPictureSettings);
+  public ResponseEntity<List<BigPictureSetting>> getSettingsList(@RequestParam(required = false) String a) {
+    AccountContext account = getAccount(a);
+    checkSettingAreSet(account);
+    return ResponseEntity.ok(account.getBigPictureSettings().getAll());
   }
 
   /**
    * Receive the settings from the backend.
+   *
+   * @param a the name of the account, the default account if not given
    */
   @CrossOrigin
   @PostMapping("/settings/list")
-  public ResponseEntity<String> setSettingsList(@RequestBody List<BigPictureSetting> bigPictureSettings) {
-    this.bigPictureSettings = bigPictureSettings;
+  public ResponseEntity<String> setSettingsList(@RequestBody List<BigPictureSetting> bigPictureSettings, @RequestParam(required = false) String a) {
+    getAccount(a).getBigPictureSettings().replaceAll(bigPictureSettings);
     return ResponseEntity.ok("Settings have been received!");
   }
 
-  private void checkSettingAreSet() {
-    if (bigPictureSettings == null) {
+  private AccountContext getAccount(String name) {
+    return accountRegistry.getAccount(name)
+      .orElseThrow(() -> new IllegalArgumentException("Unknown account: " + name));
+  }
+
+  private void checkSettingAreSet(AccountContext account) {
+    if (!account.getBigPictureSettings().isSet()) {
       throw new IllegalStateException("Settings haven't been transmitted yet. Open the interface at least once.");
     }
   }
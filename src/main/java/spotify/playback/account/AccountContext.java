@@ -0,0 +1,69 @@
+package spotify.playback.account;
+
+import org.springframework.context.ConfigurableApplicationContext;
+
+import se.michaelthelin.spotify.SpotifyApi;
+import spotify.playback.control.PlaybackControl;
+import spotify.playback.data.ClientRegistry;
+import spotify.playback.data.PlaybackInfoProvider;
+import spotify.playback.data.settings.BigPictureSettingsStore;
+
+/**
+ * The providers of a single Spotify account. Each account has its own instances of everything
+ * that holds state about its playback or its displays (the connected clients and their settings), while everything else (artwork, colors, album metadata,
+ * lyrics) is shared between all accounts.
+ */
+public class AccountContext {
+  private final String name;
+  private final SpotifyApi spotifyApi;
+  private final PlaybackInfoProvider playbackInfoProvider;
+  private final PlaybackControl playbackControl;
+  private final ClientRegistry clientRegistry;
+  private final BigPictureSettingsStore bigPictureSettings;
+  private final ConfigurableApplicationContext applicationContext;
+
+  AccountContext(String name, SpotifyApi spotifyApi, PlaybackInfoProvider playbackInfoProvider, PlaybackControl playbackControl,
+      ClientRegistry clientRegistry, BigPictureSettingsStore bigPictureSettings, ConfigurableApplicationContext applicationContext) {
+    this.name = name;
+    this.spotifyApi = spotifyApi;
+    this.playbackInfoProvider = playbackInfoProvider;
+    this.playbackControl = playbackControl;
+    this.clientRegistry = clientRegistry;
+    this.bigPictureSettings = bigPictureSettings;
+    this.applicationContext = applicationContext;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  SpotifyApi getSpotifyApi() {
+    return spotifyApi;
+  }
+
+  public PlaybackInfoProvider getPlaybackInfoProvider() {
+    return playbackInfoProvider;
+  }
+
+  public PlaybackControl getPlaybackControl() {
+    return playbackControl;
+  }
+
+  ClientRegistry getClientRegistry() {
+    return clientRegistry;
+  }
+
+  public BigPictureSettingsStore getBigPictureSettings() {
+    return bigPictureSettings;
+  }
+
+  /**
+   * Close the child context of this account, which stops its background threads
+   * (the saved tracks index and the playback command queue) through their <code>@PreDestroy</code> methods.
+   */
+  void close() {
+    if (applicationContext != null) {
+      applicationContext.close();
+    }
+  }
+}
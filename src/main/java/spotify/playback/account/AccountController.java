@@ -0,0 +1,63 @@
+package spotify.playback.account;
+
+import java.net.URI;
+import java.util.List;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class AccountController {
+  private final AccountRegistry accountRegistry;
+
+  AccountController(AccountRegistry accountRegistry) {
+    this.accountRegistry = accountRegistry;
+  }
+
+  /**
+   * Return the names of all logged in accounts.
+   */
+  @CrossOrigin
+  @GetMapping("/accounts")
+  public ResponseEntity<List<String>> getAccounts() {
+    return ResponseEntity.ok(accountRegistry.getAccountNames());
+  }
+
+  /**
+   * Redirect to Spotify's login page to log in an additional account.
+   *
+   * @param name the name of the account, which is then opened with <code>/?account=name</code>
+   * @return a redirect to Spotify, 400 if the name is invalid
+   */
+  @GetMapping("/accounts/login")
+  public ResponseEntity<Void> loginAccount(@RequestParam String name) {
+    try {
+      return ResponseEntity.status(HttpStatus.FOUND).location(accountRegistry.createLoginUri(name)).build();
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().build();
+    }
+  }
+
+  /**
+   * Callback for Spotify's login page. Redirects to the interface of the newly logged in account.
+   */
+  @GetMapping("/accounts/callback")
+  public ResponseEntity<String> loginCallback(@RequestParam(required = false) String code, @RequestParam String state) {
+    if (code == null) {
+      return ResponseEntity.badRequest().body("Login has been cancelled");
+    }
+    try {
+      String name = accountRegistry.completeLogin(state, code);
+      return ResponseEntity.status(HttpStatus.FOUND).location(URI.create("/?account=" + name)).build();
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(e.getMessage());
+    } catch (Exception e) {
+      e.printStackTrace();
+      return ResponseEntity.internalServerError().body("Login failed: " + e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,353 @@
+package spotify.playback.account;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.hc.core5.http.ParseException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+import spotify.api.SpotifyDependenciesSettings;
+import spotify.api.events.SpotifyApiLoggedInEvent;
+import spotify.playback.control.PlaybackControl;
+import spotify.playback.data.ClientRegistry;
+import spotify.playback.data.OptimisticPlaybackState;
+import spotify.playback.data.PlaybackInfoAssembler;
+import spotify.playback.data.PlaybackInfoProvider;
+import spotify.playback.data.settings.BigPictureSettingsStore;
+import spotify.playback.data.settings.SettingToggleLog;
+import spotify.playback.data.visual.ContextProvider;
+import spotify.playback.data.visual.SavedTracksIndex;
+import spotify.playback.metrics.PlaybackMetrics;
+import spotify.spring.SpringPortConfig;
+
+/**
+ * Manages the Spotify accounts served by this instance. The account that is logged in on startup
+ * is the default account. Any additional accounts (e.g. one per room) are logged in through
+ * <code>/accounts/login?name=...</code> and remembered in <code>accounts.txt</code>, and their
+ * interface is opened with <code>/?account=...</code>.
+ * <p>
+ * Every additional account gets its own set of playback providers, connected clients and settings
+ * in a child context of the application context, while all caches of the parent context are shared
+ * between the accounts.
+ */
+@Component
+public class AccountRegistry {
+  public static final String DEFAULT_ACCOUNT_NAME = "default";
+
+  private static final String ACCOUNTS_FILE = "accounts.txt";
+  private static final String SPLIT_CHAR = " -> ";
+  private static final String COMMENT_CHAR = "//";
+  private static final String CALLBACK_PATH = "/accounts/callback";
+  private static final Pattern VALID_ACCOUNT_NAME = Pattern.compile("[a-z0-9_-]{1,32}");
+  private static final long TOKEN_REFRESH_MARGIN_SECONDS = 5 * 60;
+  private static final long TOKEN_REFRESH_RETRY_SECONDS = 60;
+  private static final long LOGIN_EXPIRY_MINUTES = 10;
+  private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rw-------");
+
+  private final ApplicationContext applicationContext;
+  private final SpotifyApi defaultSpotifyApi;
+  private final SpotifyDependenciesSettings spotifyDependenciesSettings;
+  private final AccountContext defaultAccount;
+  private final Map<String, AccountContext> additionalAccounts;
+  private final Map<String, String> pendingLogins;
+  private final ScheduledExecutorService tokenRefreshExecutor;
+  private final int port;
+
+  private final Logger logger = Logger.getLogger(AccountRegistry.class.getName());
+
+  AccountRegistry(ApplicationContext applicationContext,
+      SpotifyApi spotifyApi,
+      PlaybackInfoProvider playbackInfoProvider,
+      PlaybackControl playbackControl,
+      ClientRegistry clientRegistry,
+      BigPictureSettingsStore bigPictureSettings,
+      SpotifyDependenciesSettings spotifyDependenciesSettings,
+      PlaybackMetrics playbackMetrics,
+      SpringPortConfig springPortConfig) {
+    this.applicationContext = applicationContext;
+    this.defaultSpotifyApi = spotifyApi;
+    this.spotifyDependenciesSettings = spotifyDependenciesSettings;
+    this.defaultAccount = new AccountContext(DEFAULT_ACCOUNT_NAME, spotifyApi, playbackInfoProvider, playbackControl, clientRegistry, bigPictureSettings, null);
+    this.additionalAccounts = new ConcurrentHashMap<>();
+    this.pendingLogins = new ConcurrentHashMap<>();
+    this.tokenRefreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "account-token-refresh");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.port = springPortConfig.getPort();
+    Gauge.builder("bigpicture.accounts", additionalAccounts, accounts -> accounts.size() + 1)
+      .description("Logged in Spotify accounts")
+      .register(playbackMetrics.getMeterRegistry());
+    Gauge.builder("bigpicture.clients.connected", this, registry -> registry.getAllAccounts().mapToInt(account -> account.getClientRegistry().getConnectedClients().size()).sum())
+      .description("Displays that have polled within the last minute")
+      .register(playbackMetrics.getMeterRegistry());
+  }
+
+  /**
+   * Log in the additional accounts remembered from previous runs. This requires the client ID
+   * and secret of the default account, which are only available once it has been logged in.
+   */
+  @EventListener(SpotifyApiLoggedInEvent.class)
+  public void loginRememberedAccounts() {
+    readAccountsFile().forEach((name, refreshToken) -> {
+      try {
+        addAccount(name, refreshToken);
+        logger.info("Account '" + name + "' is ready! URL: " + getBaseUri().resolve("/?account=" + name));
+      } catch (IOException | SpotifyWebApiException | ParseException e) {
+        logger.warning("Failed to log in account '" + name + "', log in again at " + getBaseUri().resolve("/accounts/login?name=" + name));
+        e.printStackTrace();
+      }
+    });
+  }
+
+  @PreDestroy
+  void closeAccounts() {
+    tokenRefreshExecutor.shutdownNow();
+    additionalAccounts.values().forEach(AccountContext::close);
+  }
+
+  /**
+   * Get the account with the given name.
+   *
+   * @param name the account name, null or blank for the default account
+   * @return the account, empty if there is no account with that name
+   */
+  public Optional<AccountContext> getAccount(String name) {
+    if (name == null || name.isBlank() || DEFAULT_ACCOUNT_NAME.equals(name)) {
+      return Optional.of(defaultAccount);
+    }
+    return Optional.ofNullable(additionalAccounts.get(name));
+  }
+
+  private Stream<AccountContext> getAllAccounts() {
+    return Stream.concat(Stream.of(defaultAccount), additionalAccounts.values().stream());
+  }
+
+  /**
+   * @return the names of all accounts, the default account first
+   */
+  public List<String> getAccountNames() {
+    List<String> names = new ArrayList<>();
+    names.add(DEFAULT_ACCOUNT_NAME);
+    additionalAccounts.keySet().stream().sorted().forEach(names::add);
+    return names;
+  }
+
+  /**
+   * Create the URL of Spotify's login page for an additional account. Note that the callback URL
+   * (the redirect URI of the default account with the path <code>/accounts/callback</code>, e.g.
+   * <code>http://localhost:8183/accounts/callback</code>) must be added to the redirect URIs of the app
+   * in Spotify's developer dashboard. The login has to be completed within a few minutes.
+   *
+   * @param name the name of the account, used to open its interface
+   * @return the login URL
+   */
+  public URI createLoginUri(String name) {
+    if (!VALID_ACCOUNT_NAME.matcher(name).matches() || DEFAULT_ACCOUNT_NAME.equals(name)) {
+      throw new IllegalArgumentException("Invalid account name (allowed are lowercase letters, digits, - and _): " + name);
+    }
+    String state = UUID.randomUUID().toString();
+    pendingLogins.put(state, name);
+    tokenRefreshExecutor.schedule(() -> pendingLogins.remove(state), LOGIN_EXPIRY_MINUTES, TimeUnit.MINUTES);
+    return createLoginSpotifyApi().authorizationCodeUri()
+      .scope(String.join(" ", spotifyDependenciesSettings.requiredScopes()))
+      .state(state)
+      .show_dialog(true)
+      .build()
+      .execute();
+  }
+
+  /**
+   * Complete the login of an additional account once Spotify has redirected back to the callback URL.
+   *
+   * @param state the state that was passed to Spotify's login page
+   * @param code the authorization code
+   * @return the name of the logged in account
+   */
+  public String completeLogin(String state, String code) throws IOException, SpotifyWebApiException, ParseException {
+    String name = pendingLogins.remove(state);
+    if (name == null) {
+      throw new IllegalArgumentException("Unknown or expired login attempt");
+    }
+    AuthorizationCodeCredentials credentials = createLoginSpotifyApi().authorizationCode(code).build().execute();
+    addAccount(name, credentials.getRefreshToken());
+    writeAccountsFile();
+    logger.info("Account '" + name + "' has been logged in! URL: " + getBaseUri().resolve("/?account=" + name));
+    return name;
+  }
+
+  private void addAccount(String name, String refreshToken) throws IOException, SpotifyWebApiException, ParseException {
+    SpotifyApi spotifyApi = SpotifyApi.builder()
+      .setClientId(defaultSpotifyApi.getClientId())
+      .setClientSecret(defaultSpotifyApi.getClientSecret())
+      .setRefreshToken(refreshToken)
+      .build();
+    long expiresIn = refreshAccessToken(spotifyApi);
+
+    AnnotationConfigApplicationContext accountApplicationContext = new AnnotationConfigApplicationContext();
+    accountApplicationContext.setParent(applicationContext);
+    accountApplicationContext.registerBean(SpotifyApi.class, () -> spotifyApi, beanDefinition -> beanDefinition.setPrimary(true));
+    accountApplicationContext.register(OptimisticPlaybackState.class, SavedTracksIndex.class, ContextProvider.class, PlaybackInfoAssembler.class, PlaybackInfoProvider.class, PlaybackControl.class,
+      SettingToggleLog.class, ClientRegistry.class, BigPictureSettingsStore.class);
+    accountApplicationContext.refresh();
+
+    AccountContext account;
+    try {
+      PlaybackInfoProvider playbackInfoProvider = accountApplicationContext.getBean(PlaybackInfoProvider.class);
+      playbackInfoProvider.ready();
+      account = new AccountContext(name, spotifyApi, playbackInfoProvider,
+        accountApplicationContext.getBean(PlaybackControl.class),
+        accountApplicationContext.getBean(ClientRegistry.class),
+        accountApplicationContext.getBean(BigPictureSettingsStore.class),
+        accountApplicationContext);
+    } catch (RuntimeException e) {
+      accountApplicationContext.close();
+      throw e;
+    }
+
+    AccountContext previous = additionalAccounts.put(name, account);
+    if (previous != null) {
+      previous.close();
+    }
+    scheduleTokenRefresh(name, spotifyApi, expiresIn);
+  }
+
+  private long refreshAccessToken(SpotifyApi spotifyApi) throws IOException, SpotifyWebApiException, ParseException {
+    AuthorizationCodeCredentials credentials = spotifyApi.authorizationCodeRefresh().build().execute();
+    spotifyApi.setAccessToken(credentials.getAccessToken());
+    if (credentials.getRefreshToken() != null) {
+      spotifyApi.setRefreshToken(credentials.getRefreshToken());
+    }
+    return credentials.getExpiresIn();
+  }
+
+  private void scheduleTokenRefresh(String name, SpotifyApi spotifyApi, long delaySeconds) {
+    tokenRefreshExecutor.schedule(() -> {
+      AccountContext account = additionalAccounts.get(name);
+      if (account == null || account.getSpotifyApi() != spotifyApi) {
+        return; // Account has been replaced or removed in the meantime
+      }
+      try {
+        String previousRefreshToken = spotifyApi.getRefreshToken();
+        long expiresIn = refreshAccessToken(spotifyApi);
+        if (!previousRefreshToken.equals(spotifyApi.getRefreshToken())) {
+          writeAccountsFile();
+        }
+        scheduleTokenRefresh(name, spotifyApi, expiresIn - TOKEN_REFRESH_MARGIN_SECONDS);
+      } catch (IOException | SpotifyWebApiException | ParseException e) {
+        logger.warning("Failed to refresh the access token of account '" + name + "', retrying in " + TOKEN_REFRESH_RETRY_SECONDS + " seconds");
+        scheduleTokenRefresh(name, spotifyApi, TOKEN_REFRESH_RETRY_SECONDS);
+      }
+    }, Math.max(delaySeconds, TOKEN_REFRESH_RETRY_SECONDS), TimeUnit.SECONDS);
+  }
+
+  private SpotifyApi createLoginSpotifyApi() {
+    return SpotifyApi.builder()
+      .setClientId(defaultSpotifyApi.getClientId())
+      .setClientSecret(defaultSpotifyApi.getClientSecret())
+      .setRedirectUri(getBaseUri().resolve(CALLBACK_PATH))
+      .build();
+  }
+
+  /**
+   * The callback has to be reachable from the browser that logs in, just like the one of the default account
+   * (e.g. when running in Docker), so its redirect URI is used as the base. Only when it isn't known,
+   * localhost is assumed.
+   */
+  private URI getBaseUri() {
+    URI defaultRedirectUri = defaultSpotifyApi.getRedirectURI();
+    if (defaultRedirectUri != null && defaultRedirectUri.isAbsolute()) {
+      return defaultRedirectUri.resolve("/");
+    }
+    return URI.create("http://localhost:" + port + "/");
+  }
+
+  private Map<String, String> readAccountsFile() {
+    Map<String, String> accounts = new LinkedHashMap<>();
+    try {
+      File accountsFile = new File(ACCOUNTS_FILE);
+      if (accountsFile.canRead()) {
+        try (Stream<String> accountLines = Files.lines(Path.of(ACCOUNTS_FILE))) {
+          accountLines
+            .filter(line -> !line.startsWith(COMMENT_CHAR) && !line.isBlank())
+            .map(line -> line.split(SPLIT_CHAR))
+            .filter(entry -> entry.length == 2)
+            .forEach(entry -> accounts.put(entry[0].trim(), entry[1].trim()));
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("Failed to read " + ACCOUNTS_FILE);
+    }
+    return accounts;
+  }
+
+  private synchronized void writeAccountsFile() {
+    List<String> lines = new ArrayList<>();
+    lines.add(COMMENT_CHAR + " Additional Spotify accounts (name" + SPLIT_CHAR + "refresh token). Log in new ones at /accounts/login?name=...");
+    additionalAccounts.values().stream()
+      .sorted((a, b) -> a.getName().compareTo(b.getName()))
+      .forEach(account -> lines.add(account.getName() + SPLIT_CHAR + account.getSpotifyApi().getRefreshToken()));
+    try {
+      Path accountsFile = Path.of(ACCOUNTS_FILE);
+      restrictToOwner(accountsFile);
+      Files.write(accountsFile, lines);
+    } catch (IOException e) {
+      System.out.println("Failed to write " + ACCOUNTS_FILE);
+      e.printStackTrace();
+    }
+  }
+
+  /**
+   * The file contains the refresh tokens of the accounts, so only the user running this instance may read it.
+   * The permissions are set before anything is written, so the tokens are never readable by anyone else.
+   */
+  private static void restrictToOwner(Path file) throws IOException {
+    if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      if (Files.exists(file)) {
+        Files.setPosixFilePermissions(file, OWNER_ONLY);
+      } else {
+        Files.createFile(file, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+      }
+    } else {
+      File accountsFile = file.toFile();
+      if (!accountsFile.exists()) {
+        Files.createFile(file);
+      }
+      accountsFile.setReadable(false, false);
+      accountsFile.setWritable(false, false);
+      accountsFile.setReadable(true, true);
+      accountsFile.setWritable(true, true);
+    }
+  }
+}
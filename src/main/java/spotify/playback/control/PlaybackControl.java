@@ -1,13 +1,28 @@
 package spotify.playback.control;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import javax.annotation.PreDestroy;
+
 import org.springframework.stereotype.Component;
 
 import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlayingContext;
 import spotify.api.SpotifyCall;
+import spotify.playback.data.OptimisticPlaybackState;
+import spotify.playback.data.PlaybackInfoProvider;
+import spotify.playback.data.help.OutboundCallExecutors;
 
 @Component
 public class PlaybackControl {
+  private static final long COALESCE_DEBOUNCE_MS = 150;
+
   private enum ControlOption {
     PLAY_PAUSE,
     SHUFFLE,
@@ -18,37 +33,78 @@ public class PlaybackControl {
   }
 
   private final SpotifyApi spotifyApi;
+  private final PlaybackInfoProvider playbackInfoProvider;
+  private final OptimisticPlaybackState optimisticPlaybackState;
+  private final OutboundCallExecutors outboundCallExecutors;
+
+  private final ScheduledExecutorService commandExecutor;
+  private final Deque<PlaybackCommand> pendingCommands;
+  private boolean drainScheduled;
 
-  PlaybackControl(SpotifyApi spotifyApi) {
+  PlaybackControl(SpotifyApi spotifyApi, PlaybackInfoProvider playbackInfoProvider, OptimisticPlaybackState optimisticPlaybackState, OutboundCallExecutors outboundCallExecutors) {
     this.spotifyApi = spotifyApi;
+    this.playbackInfoProvider = playbackInfoProvider;
+    this.optimisticPlaybackState = optimisticPlaybackState;
+    this.outboundCallExecutors = outboundCallExecutors;
+    this.commandExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "playback-control");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.pendingCommands = new ArrayDeque<>();
+    this.drainScheduled = false;
+  }
+
+  /**
+   * Stops the command thread. Commands that haven't been sent to Spotify yet are rolled back
+   * and complete with false, as does anything that is still received afterwards.
+   */
+  @PreDestroy
+  void shutdown() {
+    commandExecutor.shutdownNow();
+    synchronized (pendingCommands) {
+      failPendingCommands();
+    }
   }
 
   /**
    * Modify the playback state of the player with the given control name.
+   * The current state is taken from the last poll (including any changes that are
+   * still pending), so no extra request to Spotify is needed before sending the command.
+   * The new state is shown to the interface right away and rolled back if the command fails.
+   * <p>
+   * Commands are sent to Spotify one after another in the order they were received.
+   * Volume changes and skips that arrive in quick succession are merged into a single
+   * command (the last volume and the net number of skips respectively), and all of the
+   * merged requests receive the result of that command.
    *
    * @param controlName the control name
    * @param optionalParam an optional parameter containing extra information required for some controls
-   * @return true on success, false on error
+   * @return a future of true on success, false on error
    */
-  public boolean modifyPlaybackState(String controlName, String optionalParam) {
+  public CompletableFuture<Boolean> modifyPlaybackState(String controlName, String optionalParam) {
     try {
       ControlOption controlOption = ControlOption.valueOf(controlName);
-      CurrentlyPlayingContext context = SpotifyCall.execute(spotifyApi.getInformationAboutUsersCurrentPlayback());
 
       switch (controlOption) {
         case PLAY_PAUSE:
-          if (context.getIs_playing()) {
-            SpotifyCall.execute(spotifyApi.pauseUsersPlayback());
-          } else {
-            SpotifyCall.execute(spotifyApi.startResumeUsersPlayback());
-          }
-          return true;
+          boolean paused = optimisticPlaybackState.paused().get()
+            .orElseGet(() -> !getCurrentPlaybackContext().getIs_playing());
+          return enqueueOptimistically(optimisticPlaybackState.paused(), !paused, () -> {
+            if (paused) {
+              outboundCallExecutors.timeSpotify(() -> SpotifyCall.execute(spotifyApi.startResumeUsersPlayback()));
+            } else {
+              outboundCallExecutors.timeSpotify(() -> SpotifyCall.execute(spotifyApi.pauseUsersPlayback()));
+            }
+          });
         case SHUFFLE:
-          boolean newShuffleState = !context.getShuffle_state();
-          SpotifyCall.execute(spotifyApi.toggleShuffleForUsersPlayback(newShuffleState));
-          return true;
+          boolean newShuffleState = !optimisticPlaybackState.shuffle().get()
+            .orElseGet(() -> getCurrentPlaybackContext().getShuffle_state());
+          return enqueueOptimistically(optimisticPlaybackState.shuffle(), newShuffleState, () ->
+            outboundCallExecutors.timeSpotify(() -> SpotifyCall.execute(spotifyApi.toggleShuffleForUsersPlayback(newShuffleState))));
         case REPEAT:
-          String repeatState = context.getRepeat_state();
+          String repeatState = optimisticPlaybackState.repeat().get()
+            .orElseGet(() -> getCurrentPlaybackContext().getRepeat_state());
           if ("off".equals(repeatState)) {
             repeatState = "context";
           } else if ("context".equals(repeatState)) {
@@ -56,21 +112,152 @@ public class PlaybackControl {
           } else if ("track".equals(repeatState)) {
             repeatState = "off";
           }
-          SpotifyCall.execute(spotifyApi.setRepeatModeOnUsersPlayback(repeatState));
-          return true;
+          String newRepeatState = repeatState;
+          return enqueueOptimistically(optimisticPlaybackState.repeat(), newRepeatState, () ->
+            outboundCallExecutors.timeSpotify(() -> SpotifyCall.execute(spotifyApi.setRepeatModeOnUsersPlayback(newRepeatState))));
         case NEXT:
-          SpotifyCall.execute(spotifyApi.skipUsersPlaybackToNextTrack());
-          return true;
+          return enqueueSkip(1);
         case PREV:
-          SpotifyCall.execute(spotifyApi.skipUsersPlaybackToPreviousTrack());
-          return true;
+          return enqueueSkip(-1);
         case VOLUME:
-          SpotifyCall.execute(spotifyApi.setVolumeForUsersPlayback(Integer.parseInt(optionalParam)));
-          return true;
+          return enqueueVolume(Integer.parseInt(optionalParam));
+      }
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+    return CompletableFuture.completedFuture(false);
+  }
+
+  private CurrentlyPlayingContext getCurrentPlaybackContext() {
+    return playbackInfoProvider.getCachedPlaybackContext()
+      .orElseGet(() -> outboundCallExecutors.timeSpotify(() -> SpotifyCall.execute(spotifyApi.getInformationAboutUsersCurrentPlayback())));
+  }
+
+  private <T> CompletableFuture<Boolean> enqueueOptimistically(OptimisticPlaybackState.PendingValue<T> pendingValue, T newValue, Runnable command) {
+    OptimisticPlaybackState.Change<T> change = pendingValue.set(newValue);
+    PlaybackCommand playbackCommand = new PlaybackCommand(null, 0, value -> command.run());
+    playbackCommand.rollback = () -> pendingValue.rollback(change);
+    synchronized (pendingCommands) {
+      pendingCommands.addLast(playbackCommand);
+      scheduleDrain();
+    }
+    return playbackCommand.result;
+  }
+
+  private CompletableFuture<Boolean> enqueueSkip(int direction) {
+    synchronized (pendingCommands) {
+      PlaybackCommand lastCommand = pendingCommands.peekLast();
+      if (lastCommand != null && lastCommand.coalesceOption == ControlOption.NEXT) {
+        lastCommand.value += direction;
+        lastCommand.lastUpdated = System.currentTimeMillis();
+        return lastCommand.result;
+      }
+      PlaybackCommand playbackCommand = new PlaybackCommand(ControlOption.NEXT, direction, this::skip);
+      pendingCommands.addLast(playbackCommand);
+      scheduleDrain();
+      return playbackCommand.result;
+    }
+  }
+
+  private void skip(int netSkips) {
+    // Skips in opposite directions cancel each other out, Spotify doesn't offer a way to skip multiple tracks at once
+    for (int i = 0; i < netSkips; i++) {
+      outboundCallExecutors.timeSpotify(() -> SpotifyCall.execute(spotifyApi.skipUsersPlaybackToNextTrack()));
+    }
+    for (int i = 0; i > netSkips; i--) {
+      outboundCallExecutors.timeSpotify(() -> SpotifyCall.execute(spotifyApi.skipUsersPlaybackToPreviousTrack()));
+    }
+  }
+
+  private CompletableFuture<Boolean> enqueueVolume(int volume) {
+    OptimisticPlaybackState.PendingValue<Integer> pendingVolume = optimisticPlaybackState.volume();
+    OptimisticPlaybackState.Change<Integer> change = pendingVolume.set(volume);
+    synchronized (pendingCommands) {
+      PlaybackCommand lastCommand = pendingCommands.peekLast();
+      if (lastCommand != null && lastCommand.coalesceOption == ControlOption.VOLUME) {
+        lastCommand.value = volume;
+        lastCommand.lastUpdated = System.currentTimeMillis();
+        lastCommand.rollback = () -> pendingVolume.rollback(change);
+        return lastCommand.result;
       }
+      PlaybackCommand playbackCommand = new PlaybackCommand(ControlOption.VOLUME, volume, value ->
+        outboundCallExecutors.timeSpotify(() -> SpotifyCall.execute(spotifyApi.setVolumeForUsersPlayback(value))));
+      playbackCommand.rollback = () -> pendingVolume.rollback(change);
+      pendingCommands.addLast(playbackCommand);
+      scheduleDrain();
+      return playbackCommand.result;
+    }
+  }
+
+  private void scheduleDrain() {
+    if (commandExecutor.isShutdown()) {
+      failPendingCommands();
+    } else if (!drainScheduled) {
+      drainScheduled = true;
+      commandExecutor.execute(this::drainCommands);
+    }
+  }
+
+  private void failPendingCommands() {
+    PlaybackCommand playbackCommand;
+    while ((playbackCommand = pendingCommands.pollFirst()) != null) {
+      if (playbackCommand.rollback != null) {
+        playbackCommand.rollback.run();
+      }
+      playbackCommand.result.complete(false);
+    }
+  }
+
+  private void drainCommands() {
+    while (true) {
+      PlaybackCommand playbackCommand;
+      synchronized (pendingCommands) {
+        playbackCommand = pendingCommands.peekFirst();
+        if (playbackCommand == null) {
+          drainScheduled = false;
+          return;
+        }
+        if (playbackCommand.coalesceOption != null) {
+          // Wait until the burst is over, so that it results in a single command
+          long remainingDebounceMs = playbackCommand.lastUpdated + COALESCE_DEBOUNCE_MS - System.currentTimeMillis();
+          if (remainingDebounceMs > 0) {
+            commandExecutor.schedule(this::drainCommands, remainingDebounceMs, TimeUnit.MILLISECONDS);
+            return;
+          }
+        }
+        pendingCommands.pollFirst();
+      }
+      executeCommand(playbackCommand);
+    }
+  }
+
+  private void executeCommand(PlaybackCommand playbackCommand) {
+    try {
+      playbackCommand.execution.accept(playbackCommand.value);
+      playbackCommand.result.complete(true);
     } catch (Exception e) {
       e.printStackTrace();
+      if (playbackCommand.rollback != null) {
+        playbackCommand.rollback.run();
+      }
+      playbackCommand.result.complete(false);
+    }
+  }
+
+  private static class PlaybackCommand {
+    private final ControlOption coalesceOption;
+    private final IntConsumer execution;
+    private final CompletableFuture<Boolean> result;
+    private int value;
+    private long lastUpdated;
+    private Runnable rollback;
+
+    private PlaybackCommand(ControlOption coalesceOption, int value, IntConsumer execution) {
+      this.coalesceOption = coalesceOption;
+      this.value = value;
+      this.execution = execution;
+      this.result = new CompletableFuture<>();
+      this.lastUpdated = System.currentTimeMillis();
     }
-    return false;
   }
 }
@@ -0,0 +1,134 @@
+package spotify.playback.data;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+
+import spotify.playback.data.dto.PlaybackInfo;
+import spotify.playback.data.settings.SettingToggleLog;
+
+/**
+ * Keeps track of every connected display (i.e. browser tab) separately, so that several
+ * displays can poll at the same time without interfering with each other. Each client
+ * has its own diff baseline and its own position in the log of setting toggles. Clients that
+ * haven't polled in a while are evicted. Every account has its own registry (see
+ * {@link spotify.playback.account.AccountRegistry}).
+ */
+@Component
+public class ClientRegistry {
+  /**
+   * Used for clients that don't send an ID, such as outdated interfaces that are still open
+   */
+  public static final String DEFAULT_CLIENT_ID = "default";
+
+  private static final long CLIENT_EXPIRY_MS = 60 * 1000;
+  private static final int MAX_CLIENT_ID_LENGTH = 64;
+
+  private final SettingToggleLog settingToggleLog;
+  private final Map<String, ClientSession> clients;
+
+  ClientRegistry(SettingToggleLog settingToggleLog) {
+    this.settingToggleLog = settingToggleLog;
+    this.clients = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Get the session of the given client, or create a new one should this be its first poll
+   * (or should it have been evicted). Calling this counts as a sign of life of the client.
+   *
+   * @param clientId the ID sent by the client, may be null
+   * @return the session
+   */
+  public ClientSession getOrCreate(String clientId) {
+    evictExpiredClients();
+    String id = clientId == null || clientId.isBlank() || clientId.length() > MAX_CLIENT_ID_LENGTH
+      ? DEFAULT_CLIENT_ID
+      : clientId;
+    ClientSession session = clients.computeIfAbsent(id, newId -> new ClientSession(newId, settingToggleLog.head()));
+    session.touch();
+    return session;
+  }
+
+  /**
+   * Queue a setting toggle for every currently connected client, to be delivered with its next poll.
+   * Clients connecting afterwards won't receive it.
+   *
+   * @param settingId the setting to toggle
+   */
+  public void addSettingToToggleForAllClients(String settingId) {
+    settingToggleLog.append(settingId);
+  }
+
+  /**
+   * Get the settings to toggle of the given client that have been added since its last poll.
+   * Each toggle is only returned once per client, even for concurrent polls.
+   *
+   * @param session the session
+   * @return the settings to toggle, empty if there aren't any
+   */
+  public List<String> drainSettingsToToggle(ClientSession session) {
+    return settingToggleLog.readFrom(session.settingToggleCursor);
+  }
+
+  public Collection<ClientSession> getConnectedClients() {
+    evictExpiredClients();
+    return List.copyOf(clients.values());
+  }
+
+  private void evictExpiredClients() {
+    long now = System.currentTimeMillis();
+    clients.values().removeIf(session -> now - session.lastSeen > CLIENT_EXPIRY_MS);
+  }
+
+  public static class ClientSession {
+    private final String clientId;
+    private final AtomicLong settingToggleCursor;
+    private volatile PlaybackInfo previous;
+    private volatile int lastAckedVersionId;
+    private volatile long lastSeen;
+
+    private ClientSession(String clientId, long settingToggleSequence) {
+      this.clientId = clientId;
+      this.settingToggleCursor = new AtomicLong(settingToggleSequence);
+      this.lastSeen = System.currentTimeMillis();
+    }
+
+    private void touch() {
+      this.lastSeen = System.currentTimeMillis();
+    }
+
+    public String getClientId() {
+      return clientId;
+    }
+
+    /**
+     * @return the playback info of this client's previous poll (whether it was sent or not), null if there hasn't been any yet
+     */
+    public PlaybackInfo getPrevious() {
+      return previous;
+    }
+
+    public void setPrevious(PlaybackInfo previous) {
+      this.previous = previous;
+    }
+
+    /**
+     * @return the version ID of the playback info the client reported to have displayed during its last poll
+     */
+    public int getLastAckedVersionId() {
+      return lastAckedVersionId;
+    }
+
+    public void setLastAckedVersionId(int lastAckedVersionId) {
+      this.lastAckedVersionId = lastAckedVersionId;
+    }
+
+    public long getLastSeen() {
+      return lastSeen;
+    }
+  }
+}
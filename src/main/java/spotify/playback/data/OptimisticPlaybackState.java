@@ -0,0 +1,125 @@
+package spotify.playback.data;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the playback state changes that were sent to Spotify, but might not be reflected
+ * by Spotify's API yet. Until Spotify confirms them (or they expire), they are applied on top
+ * of the state reported by Spotify, so that the interface shows the result of a playback
+ * control immediately rather than flickering back to the old state for a few polls.
+ */
+@Component
+public class OptimisticPlaybackState {
+  private static final long PENDING_VALUE_EXPIRY_MS = 5 * 1000;
+
+  private final PendingValue<Boolean> paused;
+  private final PendingValue<Boolean> shuffle;
+  private final PendingValue<String> repeat;
+  private final PendingValue<Integer> volume;
+
+  OptimisticPlaybackState() {
+    this.paused = new PendingValue<>();
+    this.shuffle = new PendingValue<>();
+    this.repeat = new PendingValue<>();
+    this.volume = new PendingValue<>();
+  }
+
+  public PendingValue<Boolean> paused() {
+    return paused;
+  }
+
+  public PendingValue<Boolean> shuffle() {
+    return shuffle;
+  }
+
+  public PendingValue<String> repeat() {
+    return repeat;
+  }
+
+  public PendingValue<Integer> volume() {
+    return volume;
+  }
+
+  public static class PendingValue<T> {
+    private final AtomicReference<Change<T>> pendingChange;
+
+    private PendingValue() {
+      this.pendingChange = new AtomicReference<>();
+    }
+
+    /**
+     * Set the value that was just sent to Spotify.
+     *
+     * @param value the new value
+     * @return the change, to be able to roll it back should the command fail
+     */
+    public Change<T> set(T value) {
+      Change<T> change = new Change<>(value, System.currentTimeMillis() + PENDING_VALUE_EXPIRY_MS);
+      pendingChange.set(change);
+      return change;
+    }
+
+    /**
+     * Discard the given change, unless it has already been replaced by a newer one.
+     *
+     * @param change the change to discard
+     */
+    public void rollback(Change<T> change) {
+      pendingChange.compareAndSet(change, null);
+    }
+
+    /**
+     * Get the value that was sent to Spotify, if it hasn't been confirmed or expired yet.
+     *
+     * @return the pending value
+     */
+    public Optional<T> get() {
+      Change<T> change = pendingChange.get();
+      if (change != null && !change.isExpired()) {
+        return Optional.of(change.getValue());
+      }
+      return Optional.empty();
+    }
+
+    /**
+     * Resolve the value to display from the one reported by Spotify. The pending value is
+     * discarded once Spotify reports the same value, or once it has expired.
+     *
+     * @param reportedValue the value as reported by Spotify
+     * @return the pending value if there is one, otherwise the reported value
+     */
+    public T resolve(T reportedValue) {
+      Change<T> change = pendingChange.get();
+      if (change != null) {
+        if (change.isExpired() || Objects.equals(change.getValue(), reportedValue)) {
+          pendingChange.compareAndSet(change, null);
+        } else {
+          return change.getValue();
+        }
+      }
+      return reportedValue;
+    }
+  }
+
+  public static class Change<T> {
+    private final T value;
+    private final long expiresAt;
+
+    private Change(T value, long expiresAt) {
+      this.value = value;
+      this.expiresAt = expiresAt;
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    private boolean isExpired() {
+      return System.currentTimeMillis() > expiresAt;
+    }
+  }
+}
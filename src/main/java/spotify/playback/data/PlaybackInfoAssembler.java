@@ -0,0 +1,321 @@
+package spotify.playback.data;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import de.selbi.colorfetch.data.ColorFetchResult;
+import se.michaelthelin.spotify.enums.ModelObjectType;
+import se.michaelthelin.spotify.model_objects.IPlaylistItem;
+import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlayingContext;
+import se.michaelthelin.spotify.model_objects.special.PlaybackQueue;
+import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
+import se.michaelthelin.spotify.model_objects.specification.Episode;
+import se.michaelthelin.spotify.model_objects.specification.Track;
+import spotify.playback.data.dto.PlaybackInfo;
+import spotify.playback.data.dto.sub.CurrentlyPlaying;
+import spotify.playback.data.dto.sub.ImageData;
+import spotify.playback.data.dto.sub.PlaybackContext;
+import spotify.playback.data.dto.sub.TrackData;
+import spotify.playback.data.dto.sub.TrackElement;
+import spotify.playback.data.help.BigPictureConstants;
+import spotify.playback.data.help.BigPictureUtils;
+import spotify.playback.data.help.CustomVolumeSettingsProvider;
+import spotify.playback.data.help.SnapshotList;
+import spotify.playback.data.visual.ContextProvider;
+import spotify.playback.data.visual.artwork.ArtworkUrlCache;
+import spotify.playback.data.visual.color.ColorProviderService;
+import spotify.playback.metrics.PlaybackMetrics;
+import spotify.playback.metrics.PollTrace;
+import spotify.util.SpotifyUtils;
+
+/**
+ * Turns the raw playback state fetched from Spotify into the {@link PlaybackInfo} that is sent to
+ * the displays. Kept apart from the polling in {@link PlaybackInfoProvider}, so that building the
+ * DTO doesn't require any connection to Spotify (e.g. for the JMH benchmarks under src/jmh).
+ */
+@Component
+public class PlaybackInfoAssembler {
+  private static final int QUEUE_FALLBACK_THRESHOLD = 200;
+  // Short enough to not hold up the poll noticeably, long enough for most color fetches of a skipped-to track
+  private static final long CURRENT_COLORS_MAX_WAIT_MS = 250;
+
+  private final ContextProvider contextProvider;
+  private final ArtworkUrlCache artworkUrlCache;
+  private final ColorProviderService dominantColorProvider;
+  private final OptimisticPlaybackState optimisticPlaybackState;
+  private final PlaybackMetrics playbackMetrics;
+
+  private final List<PlaybackInfo.CustomVolumeSettings> customVolumeSettings;
+
+  private volatile PlaybackInfo previous;
+  private long deployTime;
+
+  PlaybackInfoAssembler(ContextProvider contextProvider,
+      ArtworkUrlCache artworkUrlCache,
+      ColorProviderService colorProvider,
+      CustomVolumeSettingsProvider customVolumeSettingsProvider,
+      OptimisticPlaybackState optimisticPlaybackState,
+      PlaybackMetrics playbackMetrics) {
+    this.contextProvider = contextProvider;
+    this.artworkUrlCache = artworkUrlCache;
+    this.dominantColorProvider = colorProvider;
+    this.optimisticPlaybackState = optimisticPlaybackState;
+    this.playbackMetrics = playbackMetrics;
+    this.customVolumeSettings = SnapshotList.of(customVolumeSettingsProvider.getCustomVolumeSettings());
+    refreshDeployTime();
+  }
+
+  public void refreshDeployTime() {
+    this.deployTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Remember the info of the latest poll, so that the next one can reuse whatever hasn't changed
+   * (context, colors, track list snapshots).
+   *
+   * @param previous the info of the latest poll
+   */
+  void setPrevious(PlaybackInfo previous) {
+    this.previous = previous;
+  }
+
+  private PlaybackInfo buildBaseInfo(PlaybackQueue playbackQueue, CurrentlyPlayingContext context) {
+    List<TrackElement> previousQueue = Optional.ofNullable(previous)
+      .map(PlaybackInfo::getTrackData)
+      .map(TrackData::getQueue)
+      .orElse(null);
+
+    IPlaylistItem currentTrack = playbackQueue.getCurrentlyPlaying();
+    if (context.getItem() != null && !Objects.equals(currentTrack.getId(), context.getItem().getId())) {
+      currentTrack = context.getItem();
+    }
+    PlaybackInfo previousInfo = previous;
+    if (previousInfo != null && previousInfo.hasPayload() && !Objects.equals(currentTrack.getId(), previousInfo.getCurrentlyPlaying().getId())) {
+      previousInfo = null; // Force a full context refresh on song change
+    }
+
+    // CurrentlyPlaying
+    int currentlyPlayingTrackNumber = 1;
+    int currentlyPlayingDiscNumber = 0;
+
+    ImageData imageData = new ImageData();
+    IPlaylistItem artworkTrack = currentTrack;
+    String artworkUrl = playbackMetrics.timeStage("artwork", () -> artworkUrlCache.findArtworkUrl(artworkTrack));
+    if (artworkUrl != null && !artworkUrl.isEmpty()) {
+      ColorFetchResult colors = playbackMetrics.timeStage("colors", () -> dominantColorProvider.getDominantColorFromImageUrl(artworkUrl, CURRENT_COLORS_MAX_WAIT_MS));
+      imageData = new ImageData(artworkUrl, colors);
+    }
+
+    // PlaybackContext
+    Boolean paused = optimisticPlaybackState.paused().resolve(!context.getIs_playing());
+    Boolean shuffle = optimisticPlaybackState.shuffle().resolve(context.getShuffle_state());
+    String repeat = optimisticPlaybackState.repeat().resolve(context.getRepeat_state());
+    Integer volume = optimisticPlaybackState.volume().resolve(context.getDevice().getVolume_percent());
+    String thumbnailUrl = BigPictureConstants.BLANK;
+
+    PlaybackInfo contextBaseline = previousInfo;
+    PlaybackContext.Context contextName = playbackMetrics.timeStage("context", () -> contextProvider.findContextName(context, contextBaseline));
+
+    // TrackData
+    List<TrackElement> listTracks = SnapshotList.of(List.of(TrackElement.fromPlaylistItem(currentTrack)));
+    Integer trackNumber = 1;
+    Integer trackCount = 1;
+    Long combinedTime = 0L;
+    Integer discNumber = 1;
+    Integer totalDiscCount = 1;
+    TrackData.ListViewType trackListView = TrackData.ListViewType.QUEUE;
+    ModelObjectType type = BigPictureUtils.getModelObjectType(context);
+    if (type != null) {
+      switch (type) {
+        case ALBUM:
+          // Album context
+          listTracks = contextProvider.getListTracks();
+          trackCount = contextProvider.getTrackCount();
+          combinedTime = contextProvider.getTotalTime();
+          trackNumber = contextProvider.getCurrentlyPlayingAlbumTrackNumber();
+          discNumber = contextProvider.getCurrentlyPlayingAlbumTrackDiscNumber();
+          totalDiscCount = contextProvider.getTotalDiscCount();
+          thumbnailUrl = contextProvider.getThumbnailUrl();
+          if (!contextName.getContextType().equals(PlaybackContext.Context.ContextType.QUEUE_IN_ALBUM)) {
+            trackListView = TrackData.ListViewType.ALBUM;
+          }
+          currentlyPlayingTrackNumber = contextProvider.getCurrentlyPlayingAlbumTrackNumber();
+          currentlyPlayingDiscNumber = contextProvider.getCurrentlyPlayingAlbumTrackDiscNumber();
+          break;
+        case PLAYLIST:
+          // Playlist context
+          Long playlistTotalTime = contextProvider.getTotalTime();
+          listTracks = playlistTotalTime != null && playlistTotalTime > 0 ? contextProvider.getListTracks() : SnapshotList.empty();
+          trackNumber = contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context);
+          trackCount = contextProvider.getTrackCount();
+          combinedTime = playlistTotalTime;
+          trackListView = TrackData.ListViewType.PLAYLIST;
+          contextName = contextName.withContextType(PlaybackContext.Context.ContextType.PLAYLIST);
+          thumbnailUrl = contextProvider.getThumbnailUrl();
+          currentlyPlayingTrackNumber = contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context);
+          if (listTracks.size() < QUEUE_FALLBACK_THRESHOLD && !shuffle) {
+            trackListView = TrackData.ListViewType.PLAYLIST_ALBUM;
+          }
+          break;
+        case ARTIST:
+        case USER:
+        // User favorite tracks or Artist top tracks context
+          listTracks = contextProvider.getListTracks();
+          trackListView = TrackData.ListViewType.PLAYLIST;
+          trackNumber = contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context);
+          trackCount = contextProvider.getTrackCount();
+          combinedTime = contextProvider.getTotalTime();
+          thumbnailUrl = contextProvider.getThumbnailUrl();
+          currentlyPlayingTrackNumber = contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context);
+          break;
+        case SHOW:
+        case EPISODE:
+          // Podcast context
+          trackListView = TrackData.ListViewType.PODCAST;
+          trackNumber = contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context);
+          trackCount = contextProvider.getTrackCount();
+          combinedTime = contextProvider.getTotalTime();
+          thumbnailUrl = contextProvider.getThumbnailUrl();
+          currentlyPlayingTrackNumber = contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context);
+          break;
+      }
+    } else {
+      // Fallback context
+      trackListView = TrackData.ListViewType.QUEUE;
+      trackNumber = contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context);
+      trackCount = contextProvider.getTrackCount();
+      combinedTime = contextProvider.getTotalTime();
+      thumbnailUrl = contextProvider.getThumbnailUrl();
+      currentlyPlayingTrackNumber = contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context);
+    }
+
+    // Kill-switch for gigantic playlists, to save performance
+    if (shuffle || (listTracks != null && listTracks.size() > QUEUE_FALLBACK_THRESHOLD)) {
+      trackListView = TrackData.ListViewType.QUEUE;
+      listTracks = SnapshotList.empty();
+    }
+
+    List<IPlaylistItem> playbackQueueQueue = playbackQueue.getQueue();
+    List<TrackElement> queue;
+    try (PollTrace.Scope ignored = PollTrace.open("queue-trimming")) {
+      queue = playbackQueueQueue.stream()
+        .map(TrackElement::fromPlaylistItem)
+        .collect(Collectors.toList());
+
+      // Because Spotify returns the queue with repeated sessions in mind (even if the option is disabled), we need to clean up manually
+      if (!shuffle && repeat.equals("off")) {
+        List<TrackElement> contextTracks = listTracks;
+        if (type == ModelObjectType.USER) {
+          // The track list of the favorite tracks is only a window, the queue ends with the end of the whole list.
+          // As long as not every saved track is indexed, that end isn't known yet and the queue is kept as it is
+          contextTracks = contextProvider.isSavedTracksComplete() ? contextProvider.getSavedTracks() : List.of();
+        } else if (type == ModelObjectType.ARTIST) {
+          // Spotify continues with the other tracks of the artist after the top tracks
+          contextTracks = List.of();
+        }
+        queue = cutOffRepeatedQueue(queue, contextTracks, currentTrack.getId());
+      }
+    }
+
+    // If next song in queue during an album doesn't match next song in track list, we know a song has been manually queued
+    boolean inAlbumView = Objects.equals(trackListView, TrackData.ListViewType.ALBUM);
+    boolean inPlaylistAlbumView = Objects.equals(trackListView, TrackData.ListViewType.PLAYLIST_ALBUM);
+    if (!shuffle && (inAlbumView || inPlaylistAlbumView)) {
+      Optional<TrackElement> nextTrackInQueue = queue.stream().findFirst();
+      if (nextTrackInQueue.isPresent()) {
+        int nextAlbumTrackIndex = inAlbumView ? contextProvider.getCurrentlyPlayingAlbumTrackNumber() : contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context);
+        if (nextAlbumTrackIndex >= contextProvider.getListTracks().size()) {
+          nextAlbumTrackIndex = 0;
+        }
+        String nextTrackInAlbumId = contextProvider.getListTracks().getId(nextAlbumTrackIndex);
+        if (!nextTrackInQueue.get().getId().equals(nextTrackInAlbumId)) {
+          contextName = contextName.withContextType(PlaybackContext.Context.ContextType.QUEUE_IN_ALBUM);
+        }
+      }
+    }
+
+    ImageData nextImageData = null;
+    if (playbackQueueQueue.size() > 1) {
+      IPlaylistItem nextSong = playbackQueueQueue.get(0);
+      nextImageData = new ImageData();
+      String nextArtworkUrl = artworkUrlCache.findArtworkUrl(nextSong);
+      if (nextArtworkUrl != null && !nextArtworkUrl.isEmpty()) {
+        ColorFetchResult colors = dominantColorProvider.getDominantColorFromImageUrl(nextArtworkUrl);
+        nextImageData = new ImageData(nextArtworkUrl, colors);
+      }
+    }
+
+    CurrentlyPlaying currentlyPlaying = new CurrentlyPlaying(currentTrack.getId(), currentlyPlayingTrackNumber, currentlyPlayingDiscNumber,
+      null, null, null, null, null, currentTrack.getDurationMs(), context.getProgress_ms(), imageData);
+    PlaybackContext playbackContext = new PlaybackContext(paused, shuffle, repeat, volume, contextName, context.getDevice().getName(), thumbnailUrl);
+    // Keep the queue of the previous poll if nothing changed, so its hash code doesn't need to be calculated again
+    TrackData trackData = new TrackData(trackNumber, discNumber, totalDiscCount, trackListView, trackCount, combinedTime,
+      listTracks, SnapshotList.reuseIfEqual(previousQueue, SnapshotList.of(queue)), nextImageData);
+    return new PlaybackInfo(PlaybackInfo.Type.DATA, deployTime, currentlyPlaying, playbackContext, trackData, List.of(), this.customVolumeSettings);
+  }
+
+  /**
+   * Cut off the queue after the last track of the track list, since anything after that is only
+   * there because Spotify assumes the context will be repeated.
+   *
+   * @param queue the queue as returned by Spotify
+   * @param listTracks the tracks of the current context
+   * @param currentlyPlayingId the ID of the currently playing track
+   * @return the queue up until (and including) the last track of the list, the unchanged queue if it isn't in there
+   */
+  static List<TrackElement> cutOffRepeatedQueue(List<TrackElement> queue, List<TrackElement> listTracks, String currentlyPlayingId) {
+    if (listTracks.isEmpty()) {
+      return queue;
+    }
+    TrackElement lastTrackOfList = listTracks.get(listTracks.size() - 1);
+    Optional<TrackElement> queueCutOffTrack = queue.stream().filter(track -> track.getId().equals(lastTrackOfList.getId())).findFirst();
+    if (queueCutOffTrack.isPresent()) {
+      TrackElement cutOffTrackElement = queueCutOffTrack.get();
+      List<TrackElement> cutOffQueue = queue.subList(0, queue.indexOf(cutOffTrackElement) + 1);
+      if (cutOffQueue.size() == 1 && Objects.equals(currentlyPlayingId, cutOffTrackElement.getId())) {
+        return List.of();
+      }
+      return cutOffQueue;
+    }
+    return queue;
+  }
+
+  PlaybackInfo buildInfoTrack(PlaybackQueue playbackQueue, CurrentlyPlayingContext context) {
+    PlaybackInfo pInfo = buildBaseInfo(playbackQueue, context);
+
+    IPlaylistItem item = playbackQueue.getCurrentlyPlaying();
+    if (context.getItem() != null && !Objects.equals(item.getId(), context.getItem().getId())) {
+      item = context.getItem();
+    }
+
+    Track track = (Track) item;
+
+    AlbumSimplified album = track.getAlbum();
+    CurrentlyPlaying currentlyPlaying = pInfo.getCurrentlyPlaying().withMetadata(
+      SpotifyUtils.toArtistNamesList(track.getArtists()),
+      track.getName(),
+      album.getName(),
+      album.getReleaseDate() != null ? album.getReleaseDate() : BigPictureConstants.BLANK,
+      BigPictureConstants.BLANK);
+
+    return pInfo.withCurrentlyPlaying(currentlyPlaying);
+  }
+
+  PlaybackInfo buildInfoEpisode(PlaybackQueue playbackQueue, CurrentlyPlayingContext context) {
+    PlaybackInfo pInfo = buildBaseInfo(playbackQueue, context);
+
+    Episode episode = (Episode) playbackQueue.getCurrentlyPlaying();
+    CurrentlyPlaying currentlyPlaying = pInfo.getCurrentlyPlaying().withMetadata(
+      List.of(episode.getShow().getName()),
+      episode.getName(),
+      episode.getShow().getPublisher(),
+      episode.getReleaseDate(),
+      episode.getDescription());
+
+    return pInfo.withCurrentlyPlaying(currentlyPlaying);
+  }
+}
@@ -1,13 +1,14 @@
 package spotify.playback.data;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
@@ -15,77 +16,82 @@ import de.selbi.colorfetch.data.ColorFetchResult;
 import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.enums.ModelObjectType;
 import se.michaelthelin.spotify.exceptions.detailed.ForbiddenException;
-import se.michaelthelin.spotify.model_objects.IPlaylistItem;
 import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlayingContext;
 import se.michaelthelin.spotify.model_objects.special.PlaybackQueue;
-import se.michaelthelin.spotify.model_objects.specification.AlbumSimplified;
-import se.michaelthelin.spotify.model_objects.specification.Episode;
-import se.michaelthelin.spotify.model_objects.specification.Track;
 import spotify.api.SpotifyCall;
 import spotify.api.events.SpotifyApiException;
 import spotify.api.events.SpotifyApiLoggedInEvent;
 import spotify.playback.data.dto.PlaybackInfo;
-import spotify.playback.data.dto.sub.CurrentlyPlaying;
 import spotify.playback.data.dto.sub.ImageData;
-import spotify.playback.data.dto.sub.PlaybackContext;
-import spotify.playback.data.dto.sub.TrackData;
 import spotify.playback.data.dto.sub.TrackElement;
-import spotify.playback.data.help.BigPictureConstants;
 import spotify.playback.data.help.BigPictureUtils;
-import spotify.playback.data.help.CustomVolumeSettingsProvider;
-import spotify.playback.data.visual.ContextProvider;
-import spotify.playback.data.visual.artwork.ArtworkUrlCache;
+import spotify.playback.data.help.OutboundCallExecutors;
+import spotify.playback.data.help.SerializerWarmup;
+import spotify.playback.data.lyrics.GeniusLyricsScraper;
 import spotify.playback.data.visual.color.ColorProviderService;
+import spotify.playback.metrics.PlaybackMetrics;
+import spotify.playback.metrics.StartupTimings;
 import spotify.spring.SpringPortConfig;
-import spotify.util.SpotifyUtils;
 
 @Component
 public class PlaybackInfoProvider {
-  private static final int QUEUE_FALLBACK_THRESHOLD = 200;
+  private static final long CACHED_CONTEXT_MAX_AGE_MS = 10 * 1000;
+  private static final long SHARED_FETCH_MAX_AGE_MS = 1000;
+  private static final long WARM_UP_COLORS_MAX_WAIT_MS = 5000;
 
   private final SpotifyApi spotifyApi;
-  private final ContextProvider contextProvider;
-  private final ArtworkUrlCache artworkUrlCache;
-  private final ColorProviderService dominantColorProvider;
+  private final PlaybackInfoAssembler playbackInfoAssembler;
+  private final GeniusLyricsScraper geniusLyricsScraper;
+  private final ColorProviderService colorProviderService;
+  private final ClientRegistry clientRegistry;
+  private final OutboundCallExecutors outboundCallExecutors;
+  private final PlaybackMetrics playbackMetrics;
+  private final SerializerWarmup serializerWarmup;
+  private final StartupTimings startupTimings;
 
   private final Logger logger = Logger.getLogger(PlaybackInfoProvider.class.getName());
 
-  private PlaybackInfo previous;
-  private long deployTime;
+  private volatile CurrentlyPlayingContext lastPlaybackContext;
+  private volatile long lastPlaybackContextTime;
+  private final AtomicReference<SharedFetch> sharedFetch;
   private boolean ready;
 
   private boolean queueEnabled;
 
-  private final Set<String> settingsToToggle;
-  private final List<PlaybackInfo.CustomVolumeSettings> customVolumeSettings;
-
   private final int port;
 
   PlaybackInfoProvider(SpotifyApi spotifyApi,
-      ContextProvider contextProvider,
-      ArtworkUrlCache artworkUrlCache,
-      ColorProviderService colorProvider,
-      CustomVolumeSettingsProvider customVolumeSettingsProvider,
+      PlaybackInfoAssembler playbackInfoAssembler,
+      @Lazy GeniusLyricsScraper geniusLyricsScraper,
+      ColorProviderService colorProviderService,
+      ClientRegistry clientRegistry,
+      OutboundCallExecutors outboundCallExecutors,
+      PlaybackMetrics playbackMetrics,
+      SerializerWarmup serializerWarmup,
+      StartupTimings startupTimings,
       SpringPortConfig springPortConfig) {
     this.spotifyApi = spotifyApi;
-    this.contextProvider = contextProvider;
-    this.artworkUrlCache = artworkUrlCache;
-    this.dominantColorProvider = colorProvider;
+    this.playbackInfoAssembler = playbackInfoAssembler;
+    this.geniusLyricsScraper = geniusLyricsScraper;
+    this.colorProviderService = colorProviderService;
+    this.clientRegistry = clientRegistry;
+    this.outboundCallExecutors = outboundCallExecutors;
+    this.playbackMetrics = playbackMetrics;
+    this.serializerWarmup = serializerWarmup;
+    this.startupTimings = startupTimings;
+    this.sharedFetch = new AtomicReference<>();
     this.ready = false;
     this.queueEnabled = true;
-    this.settingsToToggle = new HashSet<>();
-    this.customVolumeSettings = customVolumeSettingsProvider.getCustomVolumeSettings();
     this.port = springPortConfig.getPort();
-    refreshDeployTime();
   }
 
   @EventListener(SpotifyApiLoggedInEvent.class)
   public void ready() {
-    logger.info("SpotifyBigPicture is ready! URL: http://localhost:" + port);
+    startupTimings.mark(StartupTimings.LOGGED_IN);
 
     // Test if the queue is available (i.e. if the user is a free user or not)
     try {
-      SpotifyCall.execute(spotifyApi.getTheUsersQueue());
+      outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getTheUsersQueue()));
       queueEnabled = true;
     } catch (SpotifyApiException e) {
       if (ForbiddenException.class.equals(e.getNestedException().getClass())) {
@@ -94,307 +100,262 @@ public class PlaybackInfoProvider {
       }
     }
 
+    warmUp();
     ready = true;
+    logger.info("SpotifyBigPicture is ready! URL: http://localhost:" + port);
+  }
+
+  /**
+   * Run the whole pipeline once before the first display connects: the first Spotify calls, resolving
+   * the context, the artwork and the colors, and the serialization of the result. Otherwise, all of that
+   * would be done cold (class loading, connection setup, empty caches) during the first poll, delaying the
+   * first frame by several seconds. The result also serves as the baseline for building the next info.
+   * <p>
+   * Unlike during a poll, the colors of the current artwork are waited for (within a few seconds), so that
+   * the first frame is shown with its actual colors rather than the fallback ones.
+   */
+  private void warmUp() {
+    try {
+      PlaybackInfo playbackInfo = getSharedPlaybackInfo();
+      if (playbackInfo != null && awaitCurrentColors(playbackInfo)) {
+        // The colors are cached now, so the info is built again with them instead of the fallback colors
+        sharedFetch.set(null);
+        playbackInfo = getSharedPlaybackInfo();
+      }
+      if (playbackInfo != null) {
+        serializerWarmup.warmUp(playbackInfo);
+      } else {
+        serializerWarmup.warmUp(PlaybackInfo.EMPTY);
+      }
+    } catch (RuntimeException e) {
+      logger.warning("Warm-up failed, the first poll will be slower: " + e.getMessage());
+    }
+    startupTimings.mark(StartupTimings.WARMED_UP);
   }
 
-  public void refreshDeployTime() {
-    this.deployTime = System.currentTimeMillis();
+  /**
+   * @param playbackInfo the playback info
+   * @return true if the info was built with the fallback colors, but the actual colors are available now
+   */
+  private boolean awaitCurrentColors(PlaybackInfo playbackInfo) {
+    ImageData imageData = playbackInfo.getCurrentlyPlaying().getImageData();
+    if (imageData.getImageColors() != ColorFetchResult.FALLBACK) {
+      return false;
+    }
+    ColorFetchResult colors = colorProviderService.getDominantColorFromImageUrl(imageData.getImageUrl(), WARM_UP_COLORS_MAX_WAIT_MS);
+    return colors != ColorFetchResult.FALLBACK;
   }
 
   public void addSettingToToggleForNextPoll(String settingId) {
-    settingsToToggle.add(settingId);
+    clientRegistry.addSettingToToggleForAllClients(settingId);
   }
 
-  public PlaybackInfo getCurrentPlaybackInfo(int previousVersionId) {
-    if (ready) {
-      CurrentlyPlayingContext currentlyPlayingContext = SpotifyCall.execute(spotifyApi.getInformationAboutUsersCurrentPlayback().additionalTypes("episode"));
-      if (currentlyPlayingContext != null && currentlyPlayingContext.getItem() != null) {
-        PlaybackQueue playbackQueue = null;
-        if (queueEnabled) {
-          playbackQueue = SpotifyCall.execute(spotifyApi.getTheUsersQueue());
+  /**
+   * Get the playback context as it was last fetched by the polling, so that playback
+   * controls don't need to fetch it again.
+   *
+   * @return the last playback context, empty if there hasn't been a poll in the last few seconds
+   */
+  public Optional<CurrentlyPlayingContext> getCachedPlaybackContext() {
+    if (System.currentTimeMillis() - lastPlaybackContextTime < CACHED_CONTEXT_MAX_AGE_MS) {
+      return Optional.ofNullable(lastPlaybackContext);
+    }
+    return Optional.empty();
+  }
 
-          if (playbackQueue == null || playbackQueue.getCurrentlyPlaying() == null) {
-            // Edge case for local files
-            PlaybackQueue.Builder builder = new PlaybackQueue.Builder();
-            builder.setCurrentlyPlaying(currentlyPlayingContext.getItem());
-            builder.setQueue(playbackQueue != null ? playbackQueue.getQueue() : List.of());
-            playbackQueue = builder.build();
-          } else if (currentlyPlayingContext.getItem().getId() != null && playbackQueue.getCurrentlyPlaying() != null && !Objects.equals(currentlyPlayingContext.getItem().getId(), playbackQueue.getCurrentlyPlaying().getId())) {
-            // If the currently playing song in the queue doesn't match the currently playing context's song, the endpoints have gotten out of sync
-            // It's a hackish solution, but the only way I can feasibly avoid this problem is to force the user to re-request until a match arrives
-            return getCurrentPlaybackInfo(previousVersionId);
-          }
-        }
-        if (playbackQueue == null) {
-          playbackQueue = createFakePlaybackQueueForFreeUsers(currentlyPlayingContext);
-        }
-        if (playbackQueue.getCurrentlyPlaying() != null && currentlyPlayingContext.getItem() != null) {
-          PlaybackInfo currentPlaybackInfo;
-          ModelObjectType type = playbackQueue.getCurrentlyPlaying().getType();
-          if (currentlyPlayingContext.getItem() != null && !Objects.equals(playbackQueue.getCurrentlyPlaying().getId(), currentlyPlayingContext.getItem().getId())) {
-            type = ModelObjectType.TRACK;
-          }
-          switch (type) {
-            case TRACK:
-              currentPlaybackInfo = buildInfoTrack(playbackQueue, currentlyPlayingContext);
-              break;
-            case EPISODE:
-              currentPlaybackInfo = buildInfoEpisode(playbackQueue, currentlyPlayingContext);
-              break;
-            default:
-              throw new IllegalStateException("Unknown ModelObjectType: " + type);
-          }
-          try {
-            if (previous == null || isSeekedSong(currentPlaybackInfo) || currentPlaybackInfo.hashCode() != previousVersionId || !settingsToToggle.isEmpty()) {
-              if (!settingsToToggle.isEmpty()) {
-                currentPlaybackInfo.setSettingsToToggle(List.copyOf(settingsToToggle));
-                settingsToToggle.clear();
-              }
-              return currentPlaybackInfo;
-            }
-          } finally {
-            this.previous = currentPlaybackInfo;
+  /**
+   * Get the current playback info for the given client.
+   *
+   * @param previousVersionId the version ID of the playback info the client currently displays
+   * @param clientId the ID of the client, may be null
+   * @return the playback info, or an empty one if nothing has changed for the client since its last poll
+   */
+  public PlaybackInfo getCurrentPlaybackInfo(int previousVersionId, String clientId) {
+    ClientRegistry.ClientSession session = clientRegistry.getOrCreate(clientId);
+    session.setLastAckedVersionId(previousVersionId);
+
+    long start = System.nanoTime();
+    PlaybackInfo previousOfClient = session.getPrevious();
+    try {
+      PlaybackInfo playbackInfo = getCurrentPlaybackInfo(previousVersionId, session);
+      String result;
+      if (playbackInfo != PlaybackInfo.EMPTY) {
+        result = "changed";
+        startupTimings.mark(StartupTimings.FIRST_FRAME);
+      } else {
+        result = session.getPrevious() != previousOfClient ? "unchanged" : "idle";
+      }
+      playbackMetrics.recordPoll(result, System.nanoTime() - start);
+      return playbackInfo;
+    } catch (RuntimeException e) {
+      playbackMetrics.recordPoll("error", System.nanoTime() - start);
+      throw e;
+    }
+  }
+
+  private PlaybackInfo getCurrentPlaybackInfo(int previousVersionId, ClientRegistry.ClientSession session) {
+    if (ready) {
+      PlaybackInfo currentPlaybackInfo = getSharedPlaybackInfo();
+      if (currentPlaybackInfo != null) {
+        // The previous info of the client is the diff baseline, the shared one is only used to build the next info faster
+        PlaybackInfo previousOfClient = session.getPrevious();
+        try {
+          List<String> settingsToToggle = clientRegistry.drainSettingsToToggle(session);
+          if (previousOfClient == null || isSeekedSong(previousOfClient, currentPlaybackInfo) || currentPlaybackInfo.hashCode() != previousVersionId || !settingsToToggle.isEmpty()) {
+            prefetchLyricsOfNextSong(currentPlaybackInfo);
+            // The settings are only meant for this client, the info itself is shared
+            return settingsToToggle.isEmpty() ? currentPlaybackInfo : currentPlaybackInfo.withSettingsToToggle(settingsToToggle);
           }
+        } finally {
+          session.setPrevious(currentPlaybackInfo);
         }
       }
     }
     return PlaybackInfo.EMPTY;
   }
 
-  private PlaybackQueue createFakePlaybackQueueForFreeUsers(CurrentlyPlayingContext currentlyPlayingContext) {
-    PlaybackQueue.Builder builder = new PlaybackQueue.Builder();
-    builder.setCurrentlyPlaying(currentlyPlayingContext.getItem());
-    builder.setQueue(List.of());
-    return builder.build();
-  }
-
-  private boolean isSeekedSong(PlaybackInfo current) {
-    Integer previousTimeCurrent = previous.getCurrentlyPlaying().getTimeCurrent();
-    Integer timeCurrent = current.getCurrentlyPlaying().getTimeCurrent();
-    if (timeCurrent != null && previousTimeCurrent != null) {
-      if (BigPictureUtils.isWithinEstimatedProgressMs(previousTimeCurrent, timeCurrent)) {
-        previous.getCurrentlyPlaying().setTimeCurrent(timeCurrent);
-        return false;
+  /**
+   * Get the current playback info, shared by all clients. Only one fetch runs at a time: polls that
+   * arrive while it's running wait for it, and its result is reused for up to a second after it's
+   * done. So, no matter how many displays are polling, Spotify is asked about once a second, and the
+   * assembler and the context provider are only ever used by one thread at a time.
+   *
+   * @return the playback info, null if nothing is playing
+   */
+  private PlaybackInfo getSharedPlaybackInfo() {
+    while (true) {
+      SharedFetch current = sharedFetch.get();
+      if (current != null && current.isReusable()) {
+        return current.join();
+      }
+      SharedFetch next = new SharedFetch();
+      if (sharedFetch.compareAndSet(current, next)) {
+        try {
+          PlaybackInfo playbackInfo = fetchPlaybackInfo();
+          if (playbackInfo != null) {
+            playbackInfoAssembler.setPrevious(playbackInfo);
+          }
+          next.complete(playbackInfo);
+          return playbackInfo;
+        } catch (RuntimeException | Error e) {
+          next.completeExceptionally(e);
+          throw e;
+        }
       }
     }
-    return true;
   }
 
-  private PlaybackInfo buildBaseInfo(PlaybackQueue playbackQueue, CurrentlyPlayingContext context) {
-    IPlaylistItem currentTrack = playbackQueue.getCurrentlyPlaying();
-    if (context.getItem() != null && !Objects.equals(currentTrack.getId(), context.getItem().getId())) {
-      currentTrack = context.getItem();
-    }
-    if (previous != null && previous.hasPayload() && !Objects.equals(currentTrack.getId(), previous.getCurrentlyPlaying().getId())) {
-      previous = null; // Force a full context refresh on song change
-    }
-
-    // Meta data
-    PlaybackInfo playbackInfo = new PlaybackInfo(PlaybackInfo.Type.DATA);
-    playbackInfo.setDeployTime(deployTime);
-    playbackInfo.setCustomVolumeSettings(this.customVolumeSettings);
-
-    // CurrentlyPlaying
-    CurrentlyPlaying currentlyPlaying = playbackInfo.getCurrentlyPlaying();
-    currentlyPlaying.setId(currentTrack.getId());
-    currentlyPlaying.setTimeCurrent(context.getProgress_ms());
-    currentlyPlaying.setTimeTotal(currentTrack.getDurationMs());
-    currentlyPlaying.setTrackNumber(1);
-    currentlyPlaying.setDiscNumber(0);
-
-    ImageData imageData = currentlyPlaying.getImageData();
-    String artworkUrl = artworkUrlCache.findArtworkUrl(currentTrack);
-    if (artworkUrl != null && !artworkUrl.isEmpty()) {
-      imageData.setImageUrl(artworkUrl);
-      ImageData previousImageData = Optional.ofNullable(previous)
-        .map(PlaybackInfo::getCurrentlyPlaying)
-        .map(CurrentlyPlaying::getImageData)
-        .orElse(null);
-      ColorFetchResult colors = dominantColorProvider.getDominantColorFromImageUrl(artworkUrl, previousImageData);
-      imageData.setImageColors(colors);
+  /**
+   * Fetch the current playback and queue from Spotify and build the complete playback info from them.
+   *
+   * @return the playback info, null if nothing is playing
+   */
+  private PlaybackInfo fetchPlaybackInfo() {
+    CurrentlyPlayingContext currentlyPlayingContext = playbackMetrics.timeStage("current-playback", () ->
+      outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getInformationAboutUsersCurrentPlayback().additionalTypes("episode"))));
+    this.lastPlaybackContext = currentlyPlayingContext;
+    this.lastPlaybackContextTime = System.currentTimeMillis();
+    if (currentlyPlayingContext != null && currentlyPlayingContext.getItem() != null) {
+      PlaybackQueue playbackQueue = null;
+      if (queueEnabled) {
+        playbackQueue = playbackMetrics.timeStage("queue", () -> outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getTheUsersQueue())));
+
+        if (playbackQueue == null || playbackQueue.getCurrentlyPlaying() == null) {
+          // Edge case for local files
+          PlaybackQueue.Builder builder = new PlaybackQueue.Builder();
+          builder.setCurrentlyPlaying(currentlyPlayingContext.getItem());
+          builder.setQueue(playbackQueue != null ? playbackQueue.getQueue() : List.of());
+          playbackQueue = builder.build();
+        } else if (currentlyPlayingContext.getItem().getId() != null && playbackQueue.getCurrentlyPlaying() != null && !Objects.equals(currentlyPlayingContext.getItem().getId(), playbackQueue.getCurrentlyPlaying().getId())) {
+          // If the currently playing song in the queue doesn't match the currently playing context's song, the endpoints have gotten out of sync
+          // It's a hackish solution, but the only way I can feasibly avoid this problem is to force the user to re-request until a match arrives
+          return fetchPlaybackInfo();
+        }
+      }
+      if (playbackQueue == null) {
+        playbackQueue = createFakePlaybackQueueForFreeUsers(currentlyPlayingContext);
+      }
+      if (playbackQueue.getCurrentlyPlaying() != null && currentlyPlayingContext.getItem() != null) {
+        ModelObjectType type = playbackQueue.getCurrentlyPlaying().getType();
+        if (currentlyPlayingContext.getItem() != null && !Objects.equals(playbackQueue.getCurrentlyPlaying().getId(), currentlyPlayingContext.getItem().getId())) {
+          type = ModelObjectType.TRACK;
+        }
+        switch (type) {
+          case TRACK:
+            PlaybackQueue trackQueue = playbackQueue;
+            return playbackMetrics.timeStage("build", () -> playbackInfoAssembler.buildInfoTrack(trackQueue, currentlyPlayingContext));
+          case EPISODE:
+            PlaybackQueue episodeQueue = playbackQueue;
+            return playbackMetrics.timeStage("build", () -> playbackInfoAssembler.buildInfoEpisode(episodeQueue, currentlyPlayingContext));
+          default:
+            throw new IllegalStateException("Unknown ModelObjectType: " + type);
+        }
+      }
     }
+    return null;
+  }
 
-    // PlaybackContext
-    PlaybackContext playbackContext = playbackInfo.getPlaybackContext();
-    playbackContext.setPaused(!context.getIs_playing());
-    playbackContext.setShuffle(context.getShuffle_state());
-    playbackContext.setRepeat(context.getRepeat_state());
-    playbackContext.setVolume(context.getDevice().getVolume_percent());
-    playbackContext.setDevice(context.getDevice().getName());
-    playbackContext.setThumbnailUrl(BigPictureConstants.BLANK);
-
-    PlaybackContext.Context contextName = contextProvider.findContextName(context, previous);
-    playbackContext.setContext(contextName);
+  private static class SharedFetch {
+    private final CompletableFuture<PlaybackInfo> future = new CompletableFuture<>();
+    private volatile long completedAt;
 
-    // TrackData
-    TrackData trackData = playbackInfo.getTrackData();
-    trackData.setListTracks(List.of(TrackElement.fromPlaylistItem(currentTrack)));
-    trackData.setTrackNumber(1);
-    trackData.setTrackCount(1);
-    trackData.setCombinedTime(0L);
-    trackData.setDiscNumber(1);
-    trackData.setTotalDiscCount(1);
-    trackData.setTrackListView(TrackData.ListViewType.QUEUE);
-    ModelObjectType type = BigPictureUtils.getModelObjectType(context);
-    if (type != null) {
-      switch (type) {
-        case ALBUM:
-          // Album context
-          trackData.setListTracks(contextProvider.getListTracks());
-          trackData.setTrackCount(contextProvider.getTrackCount());
-          trackData.setCombinedTime(contextProvider.getTotalTime());
-          trackData.setTrackNumber(contextProvider.getCurrentlyPlayingAlbumTrackNumber());
-          trackData.setDiscNumber(contextProvider.getCurrentlyPlayingAlbumTrackDiscNumber());
-          trackData.setTotalDiscCount(contextProvider.getTotalDiscCount());
-          playbackContext.setThumbnailUrl(contextProvider.getThumbnailUrl());
-          if (!playbackContext.getContext().getContextType().equals(PlaybackContext.Context.ContextType.QUEUE_IN_ALBUM)) {
-            trackData.setTrackListView(TrackData.ListViewType.ALBUM);
-          }
-          currentlyPlaying.setTrackNumber(contextProvider.getCurrentlyPlayingAlbumTrackNumber());
-          currentlyPlaying.setDiscNumber(contextProvider.getCurrentlyPlayingAlbumTrackDiscNumber());
-          break;
-        case PLAYLIST:
-          // Playlist context
-          Long playlistTotalTime = contextProvider.getTotalTime();
-          trackData.setListTracks(playlistTotalTime != null && playlistTotalTime > 0 ? contextProvider.getListTracks() : List.of());
-          trackData.setTrackNumber(contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context));
-          trackData.setTrackCount(contextProvider.getTrackCount());
-          trackData.setCombinedTime(playlistTotalTime);
-          trackData.setTrackListView(TrackData.ListViewType.PLAYLIST);
-          playbackContext.getContext().setContextType(PlaybackContext.Context.ContextType.PLAYLIST);
-          playbackContext.setThumbnailUrl(contextProvider.getThumbnailUrl());
-          currentlyPlaying.setTrackNumber(contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context));
-          if (trackData.getListTracks().size() < QUEUE_FALLBACK_THRESHOLD && !playbackContext.getShuffle()) {
-            trackData.setTrackListView(TrackData.ListViewType.PLAYLIST_ALBUM);
-          }
-          break;
-        case ARTIST:
-        case USER:
-        // User favorite tracks or Artist top tracks context
-          trackData.setTrackNumber(contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context));
-          trackData.setTrackCount(contextProvider.getTrackCount());
-          trackData.setCombinedTime(contextProvider.getTotalTime());
-          playbackContext.setThumbnailUrl(contextProvider.getThumbnailUrl());
-          currentlyPlaying.setTrackNumber(contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context));
-          break;
-        case SHOW:
-        case EPISODE:
-          // Podcast context
-          trackData.setTrackListView(TrackData.ListViewType.PODCAST);
-          trackData.setTrackNumber(contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context));
-          trackData.setTrackCount(contextProvider.getTrackCount());
-          trackData.setCombinedTime(contextProvider.getTotalTime());
-          playbackContext.setThumbnailUrl(contextProvider.getThumbnailUrl());
-          currentlyPlaying.setTrackNumber(contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context));
-          break;
+    boolean isReusable() {
+      if (!future.isDone()) {
+        return true;
       }
-    } else {
-      // Fallback context
-      trackData.setTrackListView(TrackData.ListViewType.QUEUE);
-      trackData.setTrackNumber(contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context));
-      trackData.setTrackCount(contextProvider.getTrackCount());
-      trackData.setCombinedTime(contextProvider.getTotalTime());
-      playbackContext.setThumbnailUrl(contextProvider.getThumbnailUrl());
-      currentlyPlaying.setTrackNumber(contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context));
+      // A failed fetch is only shared with the polls that were already waiting for it
+      return !future.isCompletedExceptionally() && System.currentTimeMillis() - completedAt < SHARED_FETCH_MAX_AGE_MS;
     }
 
-    // Kill-switch for gigantic playlists, to save performance
-    if (playbackContext.getShuffle() || (trackData.getListTracks() != null && trackData.getListTracks().size() > QUEUE_FALLBACK_THRESHOLD)) {
-      trackData.setTrackListView(TrackData.ListViewType.QUEUE);
-      trackData.setListTracks(List.of());
+    void complete(PlaybackInfo playbackInfo) {
+      completedAt = System.currentTimeMillis();
+      future.complete(playbackInfo);
     }
 
-    List<IPlaylistItem> playbackQueueQueue = playbackQueue.getQueue();
-    List<TrackElement> queue = playbackQueueQueue.stream()
-      .map(TrackElement::fromPlaylistItem)
-      .collect(Collectors.toList());
-
-    // Because Spotify returns the queue with repeated sessions in mind (even if the option is disabled), we need to clean up manually
-    if (!playbackContext.getShuffle() && playbackContext.getRepeat().equals("off") && !trackData.getListTracks().isEmpty())  {
-      List<TrackElement> listTracks = trackData.getListTracks();
-      TrackElement lastTrackOfList = listTracks.get(listTracks.size() - 1);
-      Optional<TrackElement> queueCutOffTrack = queue.stream().filter(track -> track.getId().equals(lastTrackOfList.getId())).findFirst();
-      if (queueCutOffTrack.isPresent()) {
-        TrackElement cutOffTrackElement = queueCutOffTrack.get();
-        queue = queue.subList(0, queue.indexOf(cutOffTrackElement) + 1);
-        if (queue.size() == 1 && Objects.equals(currentlyPlaying.getId(), cutOffTrackElement.getId())) {
-          queue = List.of();
-        }
-      }
+    void completeExceptionally(Throwable e) {
+      completedAt = System.currentTimeMillis();
+      future.completeExceptionally(e);
     }
 
-    // If next song in queue during an album doesn't match next song in track list, we know a song has been manually queued
-    boolean inAlbumView = Objects.equals(trackData.getTrackListView(), TrackData.ListViewType.ALBUM);
-    boolean inPlaylistAlbumView = Objects.equals(trackData.getTrackListView(), TrackData.ListViewType.PLAYLIST_ALBUM);
-    if (!playbackContext.getShuffle() && (inAlbumView || inPlaylistAlbumView)) {
-      Optional<TrackElement> nextTrackInQueue = queue.stream().findFirst();
-      if (nextTrackInQueue.isPresent()) {
-        int nextAlbumTrackIndex = inAlbumView ? contextProvider.getCurrentlyPlayingAlbumTrackNumber() : contextProvider.getCurrentlyPlayingPlaylistTrackNumber(context);
-        if (nextAlbumTrackIndex >= contextProvider.getListTracks().size()) {
-          nextAlbumTrackIndex = 0;
+    PlaybackInfo join() {
+      try {
+        return future.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
         }
-        TrackElement nextTrackInAlbum = contextProvider.getListTracks().get(nextAlbumTrackIndex);
-        if (!nextTrackInQueue.get().getId().equals(nextTrackInAlbum.getId())) {
-          playbackContext.getContext().setContextType(PlaybackContext.Context.ContextType.QUEUE_IN_ALBUM);
+        if (e.getCause() instanceof Error) {
+          throw (Error) e.getCause();
         }
+        throw e;
       }
     }
+  }
 
-    trackData.setQueue(queue);
+  private PlaybackQueue createFakePlaybackQueueForFreeUsers(CurrentlyPlayingContext currentlyPlayingContext) {
+    PlaybackQueue.Builder builder = new PlaybackQueue.Builder();
+    builder.setCurrentlyPlaying(currentlyPlayingContext.getItem());
+    builder.setQueue(List.of());
+    return builder.build();
+  }
 
-    if (playbackQueueQueue.size() > 1) {
-      IPlaylistItem nextSong = playbackQueueQueue.get(0);
-      ImageData nextImageData = new ImageData();
-      String nextArtworkUrl = artworkUrlCache.findArtworkUrl(nextSong);
-      if (nextArtworkUrl != null && !nextArtworkUrl.isEmpty()) {
-        nextImageData.setImageUrl(nextArtworkUrl);
-        ImageData previousNextImageData = Optional.ofNullable(previous)
-          .map(PlaybackInfo::getTrackData)
-          .map(TrackData::getNextImageData)
-          .orElse(null);
-        ColorFetchResult colors = dominantColorProvider.getDominantColorFromImageUrl(nextArtworkUrl, previousNextImageData);
-        nextImageData.setImageColors(colors);
+  private void prefetchLyricsOfNextSong(PlaybackInfo playbackInfo) {
+    List<TrackElement> queue = playbackInfo.getTrackData().getQueue();
+    if (queue != null && !queue.isEmpty()) {
+      TrackElement nextSong = queue.get(0);
+      if (nextSong.getArtists() != null && !nextSong.getArtists().isEmpty() && nextSong.getTitle() != null) {
+        geniusLyricsScraper.prefetchSongLyrics(nextSong.getArtists().get(0), nextSong.getTitle());
       }
-      trackData.setNextImageData(nextImageData);
     }
-
-    return playbackInfo;
   }
 
-  private PlaybackInfo buildInfoTrack(PlaybackQueue playbackQueue, CurrentlyPlayingContext context) {
-    PlaybackInfo pInfo = buildBaseInfo(playbackQueue, context);
-
-    IPlaylistItem item = playbackQueue.getCurrentlyPlaying();
-    if (context.getItem() != null && !Objects.equals(item.getId(), context.getItem().getId())) {
-      item = context.getItem();
+  private boolean isSeekedSong(PlaybackInfo previous, PlaybackInfo current) {
+    Integer previousTimeCurrent = previous.getCurrentlyPlaying().getTimeCurrent();
+    Integer timeCurrent = current.getCurrentlyPlaying().getTimeCurrent();
+    if (timeCurrent != null && previousTimeCurrent != null) {
+      // No need to update the time of the previous info, as it's replaced by the current one after every poll anyway
+      return !BigPictureUtils.isWithinEstimatedProgressMs(previousTimeCurrent, timeCurrent);
     }
-
-    Track track = (Track) item;
-
-    AlbumSimplified album = track.getAlbum();
-    CurrentlyPlaying currentlyPlaying = pInfo.getCurrentlyPlaying();
-
-    currentlyPlaying.setArtists(SpotifyUtils.toArtistNamesList(track.getArtists()));
-    currentlyPlaying.setTitle(track.getName());
-    currentlyPlaying.setAlbum(album.getName());
-    currentlyPlaying.setReleaseDate(album.getReleaseDate() != null ? album.getReleaseDate() : BigPictureConstants.BLANK);
-    currentlyPlaying.setDescription(BigPictureConstants.BLANK);
-
-    return pInfo;
-  }
-
-  private PlaybackInfo buildInfoEpisode(PlaybackQueue playbackQueue, CurrentlyPlayingContext context) {
-    PlaybackInfo pInfo = buildBaseInfo(playbackQueue, context);
-
-    Episode episode = (Episode) playbackQueue.getCurrentlyPlaying();
-    CurrentlyPlaying currentlyPlaying = pInfo.getCurrentlyPlaying();
-
-    currentlyPlaying.setArtists(List.of(episode.getShow().getName()));
-    currentlyPlaying.setTitle(episode.getName());
-    currentlyPlaying.setAlbum(episode.getShow().getPublisher());
-    currentlyPlaying.setDescription(episode.getDescription());
-    currentlyPlaying.setReleaseDate(episode.getReleaseDate());
-
-    return pInfo;
+    return true;
   }
 }
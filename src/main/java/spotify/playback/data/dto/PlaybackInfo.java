@@ -20,28 +20,59 @@ public class PlaybackInfo implements PlaybackInfoResponse {
     DATA
   }
 
-  private Type type;
-  private Long deployTime;
+  private final Type type;
+  private final Long deployTime;
 
-  private CurrentlyPlaying currentlyPlaying;
-  private PlaybackContext playbackContext;
-  private TrackData trackData;
+  private final CurrentlyPlaying currentlyPlaying;
+  private final PlaybackContext playbackContext;
+  private final TrackData trackData;
 
-  private List<String> settingsToToggle;
-  private List<CustomVolumeSettings> customVolumeSettings;
+  private final List<String> settingsToToggle;
+  private final List<CustomVolumeSettings> customVolumeSettings;
 
   public PlaybackInfo(Type type) {
-    this(type, true);
+    this(type, null, new CurrentlyPlaying(), new PlaybackContext(), new TrackData(), List.of(), null);
   }
 
-  public PlaybackInfo(Type type, boolean buildDefaultValues) {
-    if (buildDefaultValues) {
-      this.currentlyPlaying = new CurrentlyPlaying();
-      this.playbackContext = new PlaybackContext();
-      this.trackData = new TrackData();
-    }
+  public PlaybackInfo(Type type, Long deployTime, CurrentlyPlaying currentlyPlaying, PlaybackContext playbackContext, TrackData trackData, List<String> settingsToToggle, List<CustomVolumeSettings> customVolumeSettings) {
     this.type = type;
-    this.settingsToToggle = List.of();
+    this.deployTime = deployTime;
+    this.currentlyPlaying = currentlyPlaying;
+    this.playbackContext = playbackContext;
+    this.trackData = trackData;
+    this.settingsToToggle = settingsToToggle;
+    this.customVolumeSettings = customVolumeSettings;
+  }
+
+  /**
+   * Create a copy of this info with a different currently playing track.
+   *
+   * @param currentlyPlaying the new currently playing track
+   * @return the copy
+   */
+  public PlaybackInfo withCurrentlyPlaying(CurrentlyPlaying currentlyPlaying) {
+    return new PlaybackInfo(type, deployTime, currentlyPlaying, playbackContext, trackData, settingsToToggle, customVolumeSettings);
+  }
+
+  /**
+   * Create a copy of this info with different track data.
+   *
+   * @param trackData the new track data
+   * @return the copy
+   */
+  public PlaybackInfo withTrackData(TrackData trackData) {
+    return new PlaybackInfo(type, deployTime, currentlyPlaying, playbackContext, trackData, settingsToToggle, customVolumeSettings);
+  }
+
+  /**
+   * Create a copy of this info for a single client, with the settings that client should toggle. The info itself
+   * is shared between all clients, so it must not be modified.
+   *
+   * @param settingsToToggle the settings to toggle
+   * @return the copy
+   */
+  public PlaybackInfo withSettingsToToggle(List<String> settingsToToggle) {
+    return new PlaybackInfo(type, deployTime, currentlyPlaying, playbackContext, trackData, settingsToToggle, customVolumeSettings);
   }
 
   @JsonIgnore
@@ -53,42 +84,22 @@ public class PlaybackInfo implements PlaybackInfoResponse {
     return type;
   }
 
-  public void setType(Type type) {
-    this.type = type;
-  }
-
   public Long getDeployTime() {
     return deployTime;
   }
 
-  public void setDeployTime(Long deployTime) {
-    this.deployTime = deployTime;
-  }
-
   public CurrentlyPlaying getCurrentlyPlaying() {
     return currentlyPlaying;
   }
 
-  public void setCurrentlyPlaying(CurrentlyPlaying currentlyPlaying) {
-    this.currentlyPlaying = currentlyPlaying;
-  }
-
   public PlaybackContext getPlaybackContext() {
     return playbackContext;
   }
 
-  public void setPlaybackContext(PlaybackContext playbackContext) {
-    this.playbackContext = playbackContext;
-  }
-
   public TrackData getTrackData() {
     return trackData;
   }
 
-  public void setTrackData(TrackData trackData) {
-    this.trackData = trackData;
-  }
-
   public int getVersionId() {
     return hashCode();
   }
@@ -97,18 +108,10 @@ public class PlaybackInfo implements PlaybackInfoResponse {
     return settingsToToggle;
   }
 
-  public void setSettingsToToggle(List<String> settingsToToggle) {
-    this.settingsToToggle = settingsToToggle;
-  }
-
   public List<CustomVolumeSettings> getCustomVolumeSettings() {
     return customVolumeSettings;
   }
 
-  public void setCustomVolumeSettings(List<CustomVolumeSettings> customVolumeSettings) {
-    this.customVolumeSettings = customVolumeSettings;
-  }
-
   @Override
   public boolean equals(Object o) {
     if (this == o)
@@ -126,8 +129,8 @@ public class PlaybackInfo implements PlaybackInfoResponse {
   }
 
   public static class CustomVolumeSettings {
-    private String device;
-    private int baseDb;
+    private final String device;
+    private final int baseDb;
 
     public CustomVolumeSettings(String device, int baseDb) {
       this.device = device;
@@ -138,18 +141,10 @@ public class PlaybackInfo implements PlaybackInfoResponse {
       return device;
     }
 
-    public void setDevice(String device) {
-      this.device = device;
-    }
-
     public int getBaseDb() {
       return baseDb;
     }
 
-    public void setBaseDb(int baseDb) {
-      this.baseDb = baseDb;
-    }
-
     @Override
     public boolean equals(Object o) {
       if (this == o)
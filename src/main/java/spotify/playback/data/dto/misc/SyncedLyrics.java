@@ -0,0 +1,33 @@
+package spotify.playback.data.dto.misc;
+
+import java.util.List;
+
+public class SyncedLyrics {
+  private final List<Line> lines;
+
+  public SyncedLyrics(List<Line> lines) {
+    this.lines = lines;
+  }
+
+  public List<Line> getLines() {
+    return lines;
+  }
+
+  public static class Line {
+    private final int timeMs;
+    private final String text;
+
+    public Line(int timeMs, String text) {
+      this.timeMs = timeMs;
+      this.text = text;
+    }
+
+    public int getTimeMs() {
+      return timeMs;
+    }
+
+    public String getText() {
+      return text;
+    }
+  }
+}
@@ -8,36 +8,36 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
 @JsonInclude(Include.NON_NULL)
 public class CurrentlyPlaying extends TrackElement {
-  private Integer timeCurrent;
-  private ImageData imageData;
+  private final Integer timeCurrent;
+  private final ImageData imageData;
 
   public CurrentlyPlaying() {
-    super();
-    this.imageData = new ImageData();
+    this(null, null, null, null, null, null, null, null, null, null, new ImageData());
   }
 
-  public CurrentlyPlaying(String id, int trackNumber, int discNumber, List<String> artists, String title, String album, String releaseDate, String description, int timeTotal, int timeCurrent, ImageData imageData) {
+  public CurrentlyPlaying(String id, Integer trackNumber, Integer discNumber, List<String> artists, String title, String album, String releaseDate, String description, Integer timeTotal, Integer timeCurrent, ImageData imageData) {
     super(id, trackNumber, discNumber, artists, title, album, releaseDate, description, timeTotal);
     this.timeCurrent = timeCurrent;
     this.imageData = imageData;
   }
 
-  public Integer getTimeCurrent() {
-    return timeCurrent;
+  /**
+   * Create a copy of this currently playing track with the given metadata, which differs between tracks and episodes.
+   *
+   * @return the copy
+   */
+  public CurrentlyPlaying withMetadata(List<String> artists, String title, String album, String releaseDate, String description) {
+    return new CurrentlyPlaying(getId(), getTrackNumber(), getDiscNumber(), artists, title, album, releaseDate, description, getTimeTotal(), timeCurrent, imageData);
   }
 
-  public void setTimeCurrent(Integer timeCurrent) {
-    this.timeCurrent = timeCurrent;
+  public Integer getTimeCurrent() {
+    return timeCurrent;
   }
 
   public ImageData getImageData() {
     return imageData;
   }
 
-  public void setImageData(ImageData imageData) {
-    this.imageData = imageData;
-  }
-
   // Equals and hashCode explicitly ignore timeCurrent
 
   @Override
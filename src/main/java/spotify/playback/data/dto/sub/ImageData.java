@@ -11,30 +11,26 @@ import spotify.playback.data.help.BigPictureConstants;
 @JsonInclude(Include.NON_NULL)
 public class ImageData {
 
-  private String imageUrl;
-  private ColorFetchResult imageColors;
+  private final String imageUrl;
+  private final ColorFetchResult imageColors;
 
   public ImageData() {
-    this.imageUrl = BigPictureConstants.BLANK;
-    this.imageColors = ColorFetchResult.FALLBACK;
+    this(BigPictureConstants.BLANK, ColorFetchResult.FALLBACK);
   }
 
-  public String getImageUrl() {
-    return imageUrl;
+  public ImageData(String imageUrl, ColorFetchResult imageColors) {
+    this.imageUrl = imageUrl;
+    this.imageColors = imageColors;
   }
 
-  public void setImageUrl(String imageUrl) {
-    this.imageUrl = imageUrl;
+  public String getImageUrl() {
+    return imageUrl;
   }
 
   public ColorFetchResult getImageColors() {
     return imageColors;
   }
 
-  public void setImageColors(ColorFetchResult imageColors) {
-    this.imageColors = imageColors;
-  }
-
   @Override
   public boolean equals(Object o) {
     if (this == o)
@@ -49,4 +45,4 @@ public class ImageData {
   public int hashCode() {
     return Objects.hash(imageUrl, imageColors);
   }
-}
\ No newline at end of file
+}
@@ -7,79 +7,56 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 
 @JsonInclude(Include.NON_NULL)
 public class PlaybackContext {
-  private Boolean paused;
-  private Boolean shuffle;
-  private String repeat;
-  private Integer volume;
-  private Context context;
-  private String contextType;
-  private String device;
-  private String thumbnailUrl;
+  private final Boolean paused;
+  private final Boolean shuffle;
+  private final String repeat;
+  private final Integer volume;
+  private final Context context;
+  private final String device;
+  private final String thumbnailUrl;
 
-  public Boolean getPaused() {
-    return paused;
+  public PlaybackContext() {
+    this(null, null, null, null, null, null, null);
   }
 
-  public void setPaused(Boolean paused) {
+  public PlaybackContext(Boolean paused, Boolean shuffle, String repeat, Integer volume, Context context, String device, String thumbnailUrl) {
     this.paused = paused;
+    this.shuffle = shuffle;
+    this.repeat = repeat;
+    this.volume = volume;
+    this.context = context;
+    this.device = device;
+    this.thumbnailUrl = thumbnailUrl;
   }
 
-  public Boolean getShuffle() {
-    return shuffle;
+  public Boolean getPaused() {
+    return paused;
   }
 
-  public void setShuffle(Boolean shuffle) {
-    this.shuffle = shuffle;
+  public Boolean getShuffle() {
+    return shuffle;
   }
 
   public String getRepeat() {
     return repeat;
   }
 
-  public void setRepeat(String repeat) {
-    this.repeat = repeat;
-  }
-
   public Integer getVolume() {
     return volume;
   }
 
-  public void setVolume(Integer volume) {
-    this.volume = volume;
-  }
-
   public Context getContext() {
     return context;
   }
 
-  public void setContext(Context context) {
-    this.context = context;
-  }
-
-  public String getContextType() {
-    return contextType;
-  }
-
-  public void setContextType(String contextType) {
-    this.contextType = contextType;
-  }
-
   public String getDevice() {
     return device;
   }
 
-  public void setDevice(String device) {
-    this.device = device;
-  }
-
   public String getThumbnailUrl() {
     return thumbnailUrl;
   }
 
-  public void setThumbnailUrl(String thumbnailUrl) {
-    this.thumbnailUrl = thumbnailUrl;
-  }
-
   @Override
   public boolean equals(Object o) {
     if (this == o)
@@ -88,12 +65,12 @@ public class PlaybackContext {
       return false;
     PlaybackContext that = (PlaybackContext) o;
     return Objects.equals(paused, that.paused) && Objects.equals(shuffle, that.shuffle) && Objects.equals(repeat, that.repeat) && Objects.equals(volume, that.volume) && Objects.equals(context, that.context)
-        && Objects.equals(contextType, that.contextType) && Objects.equals(device, that.device) && Objects.equals(thumbnailUrl, that.thumbnailUrl);
+        && Objects.equals(device, that.device) && Objects.equals(thumbnailUrl, that.thumbnailUrl);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(paused, shuffle, repeat, volume, context, contextType, device, thumbnailUrl);
+    return Objects.hash(paused, shuffle, repeat, volume, context, device, thumbnailUrl);
   }
 
   public static class Context {
@@ -110,8 +87,8 @@ public class PlaybackContext {
       FAVORITE_TRACKS,
       FALLBACK
     }
-    private String contextName;
-    private ContextType contextType;
+    private final String contextName;
+    private final ContextType contextType;
 
     private Context(String contextName, ContextType contextType) {
       this.contextName = contextName;
@@ -122,22 +99,24 @@ public class PlaybackContext {
       return new Context(context, contextType);
     }
 
-    public String getContextName() {
-      return contextName;
+    /**
+     * Create a copy of this context with a different type, as the same context may be shared with the previous poll.
+     *
+     * @param contextType the new type
+     * @return the copy
+     */
+    public Context withContextType(ContextType contextType) {
+      return new Context(contextName, contextType);
     }
 
-    public void setContextName(String contextName) {
-      this.contextName = contextName;
+    public String getContextName() {
+      return contextName;
     }
 
     public ContextType getContextType() {
       return contextType;
     }
 
-    public void setContextType(ContextType contextType) {
-      this.contextType = contextType;
-    }
-
     @Override
     public boolean equals(Object o) {
       if (this == o)
@@ -16,89 +16,80 @@ public class TrackData {
     PLAYLIST_ALBUM
   }
 
-  private Integer trackNumber;
-  private Integer discNumber;
-  private Integer totalDiscCount;
-  private ListViewType trackListView;
-  private Integer trackCount;
-  private Long combinedTime;
-  private List<TrackElement> listTracks;
-  private List<TrackElement> queue;
+  private final Integer trackNumber;
+  private final Integer discNumber;
+  private final Integer totalDiscCount;
+  private final ListViewType trackListView;
+  private final Integer trackCount;
+  private final Long combinedTime;
+  private final List<TrackElement> listTracks;
+  private final List<TrackElement> queue;
 
-  private ImageData nextImageData;
+  private final ImageData nextImageData;
 
-  public Integer getTrackNumber() {
-    return trackNumber;
+  public TrackData() {
+    this(null, null, null, null, null, null, null, null, null);
   }
 
-  public void setTrackNumber(Integer trackNumber) {
+  public TrackData(Integer trackNumber, Integer discNumber, Integer totalDiscCount, ListViewType trackListView, Integer trackCount, Long combinedTime, List<TrackElement> listTracks, List<TrackElement> queue, ImageData nextImageData) {
     this.trackNumber = trackNumber;
+    this.discNumber = discNumber;
+    this.totalDiscCount = totalDiscCount;
+    this.trackListView = trackListView;
+    this.trackCount = trackCount;
+    this.combinedTime = combinedTime;
+    this.listTracks = listTracks;
+    this.queue = queue;
+    this.nextImageData = nextImageData;
   }
 
-  public Integer getDiscNumber() {
-    return discNumber;
+  /**
+   * Create a copy of this track data with different track lists.
+   *
+   * @param listTracks the new tracks of the context
+   * @param queue the new queue
+   * @return the copy
+   */
+  public TrackData withTrackLists(List<TrackElement> listTracks, List<TrackElement> queue) {
+    return new TrackData(trackNumber, discNumber, totalDiscCount, trackListView, trackCount, combinedTime, listTracks, queue, nextImageData);
   }
 
-  public void setDiscNumber(Integer discNumber) {
-    this.discNumber = discNumber;
+  public Integer getTrackNumber() {
+    return trackNumber;
   }
 
-  public Integer getTotalDiscCount() {
-    return totalDiscCount;
+  public Integer getDiscNumber() {
+    return discNumber;
   }
 
-  public void setTotalDiscCount(Integer totalDiscCount) {
-    this.totalDiscCount = totalDiscCount;
+  public Integer getTotalDiscCount() {
+    return totalDiscCount;
   }
 
   public ListViewType getTrackListView() {
     return trackListView;
   }
 
-  public void setTrackListView(ListViewType trackListView) {
-    this.trackListView = trackListView;
-  }
-
   public Integer getTrackCount() {
     return trackCount;
   }
 
-  public void setTrackCount(Integer trackCount) {
-    this.trackCount = trackCount;
-  }
-
   public Long getCombinedTime() {
     return combinedTime;
   }
 
-  public void setCombinedTime(Long combinedTime) {
-    this.combinedTime = combinedTime;
-  }
-
   public List<TrackElement> getListTracks() {
     return listTracks;
   }
 
-  public void setListTracks(List<TrackElement> listTracks) {
-    this.listTracks = listTracks;
-  }
-
   public List<TrackElement> getQueue() {
     return queue;
   }
 
-  public void setQueue(List<TrackElement> queue) {
-    this.queue = queue;
-  }
-
   public ImageData getNextImageData() {
     return nextImageData;
   }
 
-  public void setNextImageData(ImageData nextImageData) {
-    this.nextImageData = nextImageData;
-  }
-
   @Override
   public boolean equals(Object o) {
     if (this == o)
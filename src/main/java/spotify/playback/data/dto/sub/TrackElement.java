@@ -16,22 +16,26 @@ import se.michaelthelin.spotify.model_objects.specification.Track;
 import se.michaelthelin.spotify.model_objects.specification.TrackSimplified;
 import spotify.util.SpotifyUtils;
 
+/**
+ * A single track of a track list. Track elements are immutable, so the same instances can be shared
+ * between the playback info of consecutive polls (and between the threads serving them), and their
+ * hash code is calculated once on creation.
+ */
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class TrackElement implements Comparable<TrackElement> {
-  private String id;
-  private List<String> artists;
-  private String title;
-  private String album;
-  private String releaseDate;
-  private String description;
-  private Integer timeTotal;
-  private Integer trackNumber;
-  private Integer discNumber;
-
-  public TrackElement() {
-  }
-
-  public TrackElement(String id, int trackNumber, int discNumber, List<String> artists, String title, String album, String releaseDate, String description, int timeTotal) {
+  private final String id;
+  private final List<String> artists;
+  private final String title;
+  private final String album;
+  private final String releaseDate;
+  private final String description;
+  private final Integer timeTotal;
+  private final Integer trackNumber;
+  private final Integer discNumber;
+
+  private final int hash;
+
+  public TrackElement(String id, Integer trackNumber, Integer discNumber, List<String> artists, String title, String album, String releaseDate, String description, Integer timeTotal) {
     this.id = id;
     this.trackNumber = trackNumber;
     this.discNumber = discNumber;
@@ -41,6 +45,7 @@ public class TrackElement implements Comparable<TrackElement> {
     this.releaseDate = releaseDate;
     this.description = description;
     this.timeTotal = timeTotal;
+    this.hash = hashOf(id, artists, title, album, releaseDate, description, timeTotal, trackNumber, discNumber);
   }
 
   public static TrackElement fromTrackSimplified(TrackSimplified track, Album album) {
@@ -66,78 +71,52 @@ public class TrackElement implements Comparable<TrackElement> {
     throw new IllegalArgumentException("Illegal IPlaylistItem type");
   }
 
-  public String getId() {
-    return id;
+  /**
+   * Create a copy of this track element with a different track number.
+   *
+   * @param trackNumber the new track number
+   * @return the copy
+   */
+  public TrackElement withTrackNumber(int trackNumber) {
+    return new TrackElement(id, trackNumber, discNumber, artists, title, album, releaseDate, description, timeTotal);
   }
 
-  public void setId(String id) {
-    this.id = id;
+  public String getId() {
+    return id;
   }
 
   public List<String> getArtists() {
     return artists;
   }
 
-  public void setArtists(List<String> artists) {
-    this.artists = artists;
-  }
-
   public String getTitle() {
     return title;
   }
 
-  public void setTitle(String title) {
-    this.title = title;
-  }
-
   public String getAlbum() {
     return album;
   }
 
-  public void setAlbum(String album) {
-    this.album = album;
-  }
-
   public String getReleaseDate() {
     return releaseDate;
   }
 
-  public void setReleaseDate(String releaseDate) {
-    this.releaseDate = releaseDate;
-  }
-
   public String getDescription() {
     return description;
   }
 
-  public void setDescription(String description) {
-    this.description = description;
-  }
-
   public Integer getTimeTotal() {
     return timeTotal;
   }
 
-  public void setTimeTotal(Integer timeTotal) {
-    this.timeTotal = timeTotal;
-  }
-
   public Integer getTrackNumber() {
     return trackNumber;
   }
 
-  public void setTrackNumber(Integer trackNumber) {
-    this.trackNumber = trackNumber;
-  }
-
   public Integer getDiscNumber() {
     return discNumber;
   }
 
-  public void setDiscNumber(Integer discNumber) {
-    this.discNumber = discNumber;
-  }
-
   @Override
   public int compareTo(@NonNull TrackElement o) {
     return Comparator
@@ -159,6 +138,14 @@ public class TrackElement implements Comparable<TrackElement> {
 
   @Override
   public int hashCode() {
+    return hash;
+  }
+
+  /**
+   * The hash code of a track element with the given values, for track lists that don't store their
+   * elements as objects (see {@link spotify.playback.data.help.TrackTable}).
+   */
+  public static int hashOf(String id, List<String> artists, String title, String album, String releaseDate, String description, Integer timeTotal, Integer trackNumber, Integer discNumber) {
     return Objects.hash(id, artists, title, album, releaseDate, description, timeTotal, trackNumber, discNumber);
   }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package spotify.playback.data.help;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.CharacterEscapes;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+/**
+ * A piece of JSON that was written once and is then copied into every subsequent response as a raw value
+ * (see {@link SnapshotListSerializer} and {@link TrackTableSerializer}). The fragment remembers the settings
+ * it was written with (the mapper configuration, the generator features and the character escapes), and is
+ * only reused for generators with the same settings, so a differently configured mapper never gets output
+ * that it wouldn't have produced itself.
+ */
+final class JsonFragment {
+  @FunctionalInterface
+  interface Writer {
+    void write(JsonGenerator gen) throws IOException;
+  }
+
+  private final SerializationConfig config;
+  private final int featureMask;
+  private final CharacterEscapes characterEscapes;
+  private final int highestEscapedChar;
+  private final String json;
+
+  private JsonFragment(SerializationConfig config, JsonGenerator gen, String json) {
+    this.config = config;
+    this.featureMask = gen.getFeatureMask();
+    this.characterEscapes = gen.getCharacterEscapes();
+    this.highestEscapedChar = gen.getHighestEscapedChar();
+    this.json = json;
+  }
+
+  /**
+   * Fragments can only be used for plain JSON output. Any other format (or pretty-printed JSON, where the
+   * indentation depends on where the fragment ends up) has to be written as usual.
+   *
+   * @param gen the generator of the response
+   * @return true if a fragment can be written to the generator
+   */
+  static boolean isSupported(JsonGenerator gen) {
+    return gen instanceof JsonGeneratorImpl && gen.getPrettyPrinter() == null && gen.getCodec() != null;
+  }
+
+  /**
+   * Write the given content to a new fragment, using the same settings as the given generator.
+   *
+   * @param gen the generator of the response, which must be {@link #isSupported supported}
+   * @param provider the provider of the response
+   * @param writer writes the content
+   * @return the fragment
+   * @throws IOException if the content couldn't be written
+   */
+  static JsonFragment write(JsonGenerator gen, SerializerProvider provider, Writer writer) throws IOException {
+    StringWriter out = new StringWriter();
+    try (JsonGenerator fragmentGenerator = gen.getCodec().getFactory().createGenerator(out)) {
+      fragmentGenerator.setCodec(gen.getCodec());
+      fragmentGenerator.overrideStdFeatures(gen.getFeatureMask(), -1);
+      if (gen.getCharacterEscapes() != null) {
+        fragmentGenerator.setCharacterEscapes(gen.getCharacterEscapes());
+      }
+      fragmentGenerator.setHighestNonEscapedChar(gen.getHighestEscapedChar());
+      writer.write(fragmentGenerator);
+    }
+    return new JsonFragment(provider.getConfig(), gen, out.toString());
+  }
+
+  /**
+   * @param gen the generator of the response
+   * @param provider the provider of the response
+   * @return true if this fragment was written with the same settings as the given generator would use
+   */
+  boolean matches(JsonGenerator gen, SerializerProvider provider) {
+    return config == provider.getConfig()
+      && featureMask == gen.getFeatureMask()
+      && characterEscapes == gen.getCharacterEscapes()
+      && highestEscapedChar == gen.getHighestEscapedChar();
+  }
+
+  String getJson() {
+    return json;
+  }
+}
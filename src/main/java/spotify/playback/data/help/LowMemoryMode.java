@@ -0,0 +1,40 @@
+package spotify.playback.data.help;
+
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * A mode for devices with very little RAM (e.g. a Raspberry Pi that also runs the browser of the display),
+ * enabled with the environment variable <code>low_memory_mode=true</code>. It trades a few more cache misses
+ * for a smaller steady-state heap, as the in-memory caches hold far fewer entries.
+ */
+@Component
+public class LowMemoryMode {
+  private static final String LOW_MEMORY_MODE_ENV_NAME = "low_memory_mode";
+
+  private final boolean enabled;
+
+  private final Logger logger = Logger.getLogger(LowMemoryMode.class.getName());
+
+  LowMemoryMode(@Value("${" + LOW_MEMORY_MODE_ENV_NAME + ":false}") boolean enabled) {
+    this.enabled = enabled;
+    if (enabled) {
+      logger.info("Low-memory mode has been enabled with " + LOW_MEMORY_MODE_ENV_NAME + "=true");
+    }
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param defaultSize the size of a cache
+   * @param lowMemorySize the size of the same cache in low-memory mode
+   * @return the size to use
+   */
+  public int cacheSize(int defaultSize, int lowMemorySize) {
+    return enabled ? lowMemorySize : defaultSize;
+  }
+}
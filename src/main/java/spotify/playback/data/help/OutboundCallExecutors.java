@@ -0,0 +1,118 @@
+package spotify.playback.data.help;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import spotify.playback.metrics.PlaybackMetrics;
+
+/**
+ * Dedicated, bounded thread pools for the blocking calls to each external service
+ * (bulkheads). A slow or unresponsive service can only ever occupy its own threads,
+ * instead of exhausting the request threads of the web server and thereby starving
+ * everything else. Once a pool and its queue are full, further calls are rejected
+ * right away rather than piling up.
+ * <p>
+ * The duration of each call and the number of rejected calls are recorded per service.
+ */
+@Component
+public class OutboundCallExecutors {
+  private static final String SPOTIFY_THREAD_NAME = "spotify";
+
+  private final ExecutorService spotifyExecutor;
+  private final ExecutorService lastFmExecutor;
+  private final ExecutorService colorFetchExecutor;
+  private final ExecutorService geniusExecutor;
+  private final PlaybackMetrics playbackMetrics;
+
+  OutboundCallExecutors(PlaybackMetrics playbackMetrics) {
+    this.playbackMetrics = playbackMetrics;
+    this.spotifyExecutor = createBoundedExecutor(SPOTIFY_THREAD_NAME, 8, 64);
+    this.lastFmExecutor = createBoundedExecutor("lastfm", 2, 8);
+    this.colorFetchExecutor = createBoundedExecutor("colorfetch", 2, 8);
+    this.geniusExecutor = createBoundedExecutor("genius-lyrics", 2, 32);
+  }
+
+  public <T> CompletableFuture<T> supplySpotify(Supplier<T> supplier) {
+    return supply("spotify", spotifyExecutor, supplier);
+  }
+
+  /**
+   * Make a single blocking call to Spotify on the Spotify pool and wait for its result. This keeps
+   * the number of concurrent calls to Spotify bounded no matter how many polls are running at once,
+   * while everything in between the calls stays on the thread of the poll.
+   *
+   * @param supplier the call
+   * @param <T> the result type
+   * @return the result of the call
+   * @throws RejectedExecutionException if the pool and its queue are full
+   */
+  public <T> T callSpotify(Supplier<T> supplier) {
+    if (SPOTIFY_THREAD_NAME.equals(Thread.currentThread().getName())) {
+      // Already on the pool, waiting for another of its threads could deadlock it
+      return timeSpotify(supplier);
+    }
+    try {
+      return supplySpotify(supplier).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Make a single blocking call to Spotify on the current thread, only recording its duration. This is
+   * meant for background work that already runs on a thread of its own (the playback commands and the
+   * saved tracks index), which shouldn't compete with the polls for the Spotify pool.
+   *
+   * @param supplier the call
+   * @param <T> the result type
+   * @return the result of the call
+   */
+  public <T> T timeSpotify(Supplier<T> supplier) {
+    return playbackMetrics.timedUpstreamCall("spotify", supplier).get();
+  }
+
+  public <T> CompletableFuture<T> supplyLastFm(Supplier<T> supplier) {
+    return supply("lastfm", lastFmExecutor, supplier);
+  }
+
+  public <T> CompletableFuture<T> supplyColorFetch(Supplier<T> supplier) {
+    return supply("colorfetch", colorFetchExecutor, supplier);
+  }
+
+  public <T> CompletableFuture<T> supplyGenius(Supplier<T> supplier) {
+    return supply("genius", geniusExecutor, supplier);
+  }
+
+  private <T> CompletableFuture<T> supply(String service, ExecutorService executor, Supplier<T> supplier) {
+    try {
+      return CompletableFuture.supplyAsync(playbackMetrics.timedUpstreamCall(service, supplier), executor);
+    } catch (RejectedExecutionException e) {
+      playbackMetrics.recordRejectedUpstreamCall(service);
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  private static ExecutorService createBoundedExecutor(String name, int threadCount, int queueCapacity) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+      Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      return thread;
+    });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
@@ -0,0 +1,40 @@
+package spotify.playback.data.help;
+
+import java.util.logging.Logger;
+
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Serializes a response once with every Jackson message converter, so that Jackson has
+ * introspected the DTO classes and cached their serializers before the first actual request comes in.
+ */
+@Component
+public class SerializerWarmup {
+  private final HttpMessageConverters httpMessageConverters;
+
+  private final Logger logger = Logger.getLogger(SerializerWarmup.class.getName());
+
+  SerializerWarmup(HttpMessageConverters httpMessageConverters) {
+    this.httpMessageConverters = httpMessageConverters;
+  }
+
+  /**
+   * @param response a response as it would be returned by a controller
+   */
+  public void warmUp(Object response) {
+    for (HttpMessageConverter<?> converter : httpMessageConverters) {
+      if (converter instanceof AbstractJackson2HttpMessageConverter) {
+        try {
+          ((AbstractJackson2HttpMessageConverter) converter).getObjectMapper().writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+          logger.warning("Failed to warm up " + converter.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package spotify.playback.data.help;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * An immutable list that only calculates its hash code once. Used for the track lists of the
+ * playback info, which are hashed with every single poll to find out if anything has changed,
+ * even though they themselves rarely ever change. Hash code and equality follow the contract
+ * of {@link List}, so it can be compared to any other list.
+ * <p>
+ * For the same reason, the JSON representation is cached as well (see {@link SnapshotListSerializer}).
+ *
+ * @param <E> the element type
+ */
+@JsonSerialize(using = SnapshotListSerializer.class)
+public final class SnapshotList<E> extends AbstractList<E> implements RandomAccess {
+  private static final SnapshotList<?> EMPTY = new SnapshotList<>(new Object[0]);
+
+  private final Object[] elements;
+  private int hash;
+  private boolean hashIsZero;
+  private volatile JsonFragment jsonFragment;
+
+  private SnapshotList(Object[] elements) {
+    this.elements = elements;
+  }
+
+  /**
+   * Create a snapshot of the given elements.
+   *
+   * @param elements the elements (copied, so later changes to the collection aren't reflected)
+   * @param <E> the element type
+   * @return the snapshot, the given collection itself if it's a snapshot already
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> SnapshotList<E> of(Collection<? extends E> elements) {
+    if (elements instanceof SnapshotList) {
+      return (SnapshotList<E>) elements;
+    }
+    if (elements.isEmpty()) {
+      return empty();
+    }
+    return new SnapshotList<>(elements.toArray());
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <E> SnapshotList<E> empty() {
+    return (SnapshotList<E>) EMPTY;
+  }
+
+  /**
+   * Return the previous snapshot if it has the same content as the current one, so that
+   * consecutive polls share the same instance (and its already calculated hash code).
+   *
+   * @param previous the list of the previous poll, may be null
+   * @param current the newly created snapshot
+   * @param <E> the element type
+   * @return the previous snapshot if equal, otherwise the current one
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> SnapshotList<E> reuseIfEqual(List<E> previous, SnapshotList<E> current) {
+    if (previous instanceof SnapshotList && previous.equals(current)) {
+      return (SnapshotList<E>) previous;
+    }
+    return current;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+    return (E) elements[index];
+  }
+
+  @Override
+  public int size() {
+    return elements.length;
+  }
+
+  JsonFragment getJsonFragment() {
+    return jsonFragment;
+  }
+
+  void setJsonFragment(JsonFragment jsonFragment) {
+    this.jsonFragment = jsonFragment;
+  }
+
+  @Override
+  public int hashCode() {
+    // Same approach as String, so that it's safe to call from several threads without locking
+    int h = hash;
+    if (h == 0 && !hashIsZero) {
+      h = super.hashCode();
+      if (h == 0) {
+        hashIsZero = true;
+      } else {
+        hash = h;
+      }
+    }
+    return h;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o instanceof SnapshotList && ((SnapshotList<?>) o).hashCode() != hashCode()) {
+      return false;
+    }
+    return super.equals(o);
+  }
+}
@@ -0,0 +1,50 @@
+package spotify.playback.data.help;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Serializes a {@link SnapshotList} only once and then keeps the resulting JSON in the list itself.
+ * As snapshots never change and are shared between polls for as long as their content doesn't change,
+ * every subsequent response only needs to copy the cached fragment instead of walking through all
+ * the elements again.
+ * <p>
+ * This is only done for plain JSON output (see {@link JsonFragment}). Anything else is serialized element by element as usual.
+ */
+@SuppressWarnings("rawtypes")
+public class SnapshotListSerializer extends StdSerializer<SnapshotList> {
+
+  public SnapshotListSerializer() {
+    super(SnapshotList.class);
+  }
+
+  @Override
+  public boolean isEmpty(SerializerProvider provider, SnapshotList value) {
+    return value.isEmpty();
+  }
+
+  @Override
+  public void serialize(SnapshotList value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+    if (JsonFragment.isSupported(gen)) {
+      JsonFragment fragment = value.getJsonFragment();
+      if (fragment == null || !fragment.matches(gen, provider)) {
+        fragment = JsonFragment.write(gen, provider, fragmentGenerator -> writeElements(value, fragmentGenerator, provider));
+        value.setJsonFragment(fragment);
+      }
+      gen.writeRawValue(fragment.getJson());
+    } else {
+      writeElements(value, gen, provider);
+    }
+  }
+
+  private void writeElements(SnapshotList value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+    gen.writeStartArray(value, value.size());
+    for (Object element : value) {
+      provider.defaultSerializeValue(element, gen);
+    }
+    gen.writeEndArray();
+  }
+}
@@ -0,0 +1,439 @@
+package spotify.playback.data.help;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import spotify.playback.data.dto.sub.TrackElement;
+
+/**
+ * An immutable track list that is stored column by column instead of as one {@link TrackElement} per track:
+ * durations, track and disc numbers are primitive arrays, while album names, release dates, descriptions
+ * and artist lists are dictionary-encoded, since they're mostly the same for every track of an album (and
+ * repeat a lot in large playlists too). Only IDs and titles are kept per track.
+ * <p>
+ * Looking up a track, summing up the durations and cutting out a window all work on the columns directly.
+ * A {@link TrackElement} is only created when an element is accessed through the {@link List} interface,
+ * and not even for serialization (see {@link TrackTableSerializer}). Like {@link SnapshotList}, the hash
+ * code and the JSON representation are only calculated once.
+ */
+@JsonSerialize(using = TrackTableSerializer.class)
+public final class TrackTable extends AbstractList<TrackElement> implements RandomAccess {
+  private static final TrackTable EMPTY = new Builder().build();
+
+  private final Columns columns;
+  private final int offset;
+  private final int size;
+  private final long totalTime;
+  private int hash;
+  private boolean hashIsZero;
+  private volatile JsonFragment jsonFragment;
+
+  private TrackTable(Columns columns, int offset, int size) {
+    this(columns, offset, size, sumTimeTotals(columns, offset, size));
+  }
+
+  private TrackTable(Columns columns, int offset, int size, long totalTime) {
+    this.columns = columns;
+    this.offset = offset;
+    this.size = size;
+    this.totalTime = totalTime;
+  }
+
+  private static long sumTimeTotals(Columns columns, int offset, int size) {
+    long sum = 0;
+    for (int i = offset; i < offset + size; i++) {
+      sum += columns.timeTotals[i];
+    }
+    return sum;
+  }
+
+  /**
+   * @param tracks the tracks, each with a duration, track and disc number
+   * @return the table of the given tracks, the given collection itself if it's a table already
+   */
+  public static TrackTable of(Collection<TrackElement> tracks) {
+    if (tracks instanceof TrackTable) {
+      return (TrackTable) tracks;
+    }
+    if (tracks.isEmpty()) {
+      return empty();
+    }
+    Builder builder = new Builder();
+    tracks.forEach(builder::add);
+    return builder.build();
+  }
+
+  public static TrackTable empty() {
+    return EMPTY;
+  }
+
+  @Override
+  public TrackElement get(int index) {
+    int i = column(index);
+    return new TrackElement(columns.ids[i], columns.trackNumbers[i], columns.discNumbers[i], columns.artists(i), columns.titles[i],
+      columns.string(columns.albums, i), columns.string(columns.releaseDates, i), columns.string(columns.descriptions, i), columns.timeTotals[i]);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  public String getId(int index) {
+    return columns.ids[column(index)];
+  }
+
+  public String getTitle(int index) {
+    return columns.titles[column(index)];
+  }
+
+  public List<String> getArtists(int index) {
+    return columns.artists(column(index));
+  }
+
+  public String getAlbum(int index) {
+    return columns.string(columns.albums, column(index));
+  }
+
+  public String getReleaseDate(int index) {
+    return columns.string(columns.releaseDates, column(index));
+  }
+
+  public String getDescription(int index) {
+    return columns.string(columns.descriptions, column(index));
+  }
+
+  public int getTimeTotal(int index) {
+    return columns.timeTotals[column(index)];
+  }
+
+  public int getTrackNumber(int index) {
+    return columns.trackNumbers[column(index)];
+  }
+
+  public int getDiscNumber(int index) {
+    return columns.discNumbers[column(index)];
+  }
+
+  /**
+   * @return the combined duration of all tracks in ms
+   */
+  public long getTotalTime() {
+    return totalTime;
+  }
+
+  /**
+   * @return the highest disc number, 0 if the table is empty
+   */
+  public int getMaxDiscNumber() {
+    int max = 0;
+    for (int i = offset; i < offset + size; i++) {
+      max = Math.max(max, columns.discNumbers[i]);
+    }
+    return max;
+  }
+
+  /**
+   * @param id the track ID, may be null
+   * @return the index of the first track with that ID, -1 if there is none
+   */
+  public int indexOfId(String id) {
+    return indexOfId(id, -1);
+  }
+
+  /**
+   * Same as {@link #indexOfId(String)}, but first checks the given index and its neighbors. While a context
+   * is played in order, the current track is either the one found by the previous poll or the one after
+   * it, so passing the previous result turns the lookup into a constant-time check.
+   *
+   * @param id the track ID, may be null
+   * @param hint the index to check first, e.g. the previous result (ignored if out of range)
+   * @return the index of a track with that ID, -1 if there is none
+   */
+  public int indexOfId(String id, int hint) {
+    if (id == null) {
+      return -1;
+    }
+    for (int candidate = hint; candidate <= hint + 1; candidate++) {
+      if (candidate >= 0 && candidate < size && id.equals(getId(candidate))) {
+        return candidate;
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      if (id.equals(columns.ids[offset + i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param text the text to look for
+   * @return the index of the first track whose title contains the text, -1 if there is none
+   */
+  public int indexOfTitleContaining(String text) {
+    for (int i = 0; i < size; i++) {
+      String title = columns.titles[offset + i];
+      if (title != null && title.contains(text)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @param fromIndex the first index (inclusive)
+   * @param toIndex the last index (exclusive)
+   * @return a table of the given range that shares the columns of this one, without copying anything
+   */
+  @Override
+  public TrackTable subList(int fromIndex, int toIndex) {
+    if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+      throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + size);
+    }
+    if (fromIndex == 0 && toIndex == size) {
+      return this;
+    }
+    return new TrackTable(columns, offset + fromIndex, toIndex - fromIndex);
+  }
+
+  /**
+   * @param index the index the window should be centered on
+   * @param maxSize the maximum number of tracks in the window
+   * @return a window of up to maxSize tracks around the given index, shifted towards the start or the end
+   *         of the table where necessary
+   */
+  public TrackTable window(int index, int maxSize) {
+    if (size <= maxSize) {
+      return this;
+    }
+    int fromIndex = Math.max(0, Math.min(index - maxSize / 2, size - maxSize));
+    return subList(fromIndex, fromIndex + maxSize);
+  }
+
+  JsonFragment getJsonFragment() {
+    return jsonFragment;
+  }
+
+  void setJsonFragment(JsonFragment jsonFragment) {
+    this.jsonFragment = jsonFragment;
+  }
+
+  @Override
+  public int hashCode() {
+    // Same approach as SnapshotList, but without creating the elements
+    int h = hash;
+    if (h == 0 && !hashIsZero) {
+      h = 1;
+      for (int i = offset; i < offset + size; i++) {
+        h = 31 * h + TrackElement.hashOf(columns.ids[i], columns.artists(i), columns.titles[i], columns.string(columns.albums, i), columns.string(columns.releaseDates, i),
+          columns.string(columns.descriptions, i), columns.timeTotals[i], columns.trackNumbers[i], columns.discNumbers[i]);
+      }
+      if (h == 0) {
+        hashIsZero = true;
+      } else {
+        hash = h;
+      }
+    }
+    return h;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o instanceof TrackTable) {
+      TrackTable that = (TrackTable) o;
+      if (that.size != size || that.hashCode() != hashCode()) {
+        return false;
+      }
+      for (int i = 0; i < size; i++) {
+        if (!Objects.equals(getId(i), that.getId(i)) || !Objects.equals(getTitle(i), that.getTitle(i)) || !Objects.equals(getArtists(i), that.getArtists(i))
+          || !Objects.equals(getAlbum(i), that.getAlbum(i)) || !Objects.equals(getReleaseDate(i), that.getReleaseDate(i)) || !Objects.equals(getDescription(i), that.getDescription(i))
+          || getTimeTotal(i) != that.getTimeTotal(i) || getTrackNumber(i) != that.getTrackNumber(i) || getDiscNumber(i) != that.getDiscNumber(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return super.equals(o);
+  }
+
+  private int column(int index) {
+    Objects.checkIndex(index, size);
+    return offset + index;
+  }
+
+  /**
+   * Collects the tracks of a table one by one, e.g. while paging through a playlist.
+   * The builder may be used further after building a table, later tables then contain all tracks added so far.
+   * <p>
+   * Building doesn't copy anything: the table shares the builder's arrays up to the current size. That's safe,
+   * as the builder only ever writes behind the tracks (and dictionary entries) of the tables built so far, and
+   * grows into new arrays, so a table can be built after every page at no extra cost.
+   */
+  public static class Builder {
+    private static final int NULL = -1;
+
+    private final Map<String, Integer> stringIndex;
+    private final Map<List<String>, Integer> artistListIndex;
+
+    private String[] strings;
+    private int stringCount;
+    private List<String>[] artistLists;
+    private int artistListCount;
+
+    private String[] ids;
+    private String[] titles;
+    private int[] artists;
+    private int[] albums;
+    private int[] releaseDates;
+    private int[] descriptions;
+    private int[] timeTotals;
+    private int[] trackNumbers;
+    private int[] discNumbers;
+    private int size;
+    private long totalTime;
+
+    @SuppressWarnings("unchecked")
+    public Builder() {
+      this.stringIndex = new HashMap<>();
+      this.strings = new String[16];
+      this.artistListIndex = new HashMap<>();
+      this.artistLists = new List[16];
+      this.ids = new String[16];
+      this.titles = new String[16];
+      this.artists = new int[16];
+      this.albums = new int[16];
+      this.releaseDates = new int[16];
+      this.descriptions = new int[16];
+      this.timeTotals = new int[16];
+      this.trackNumbers = new int[16];
+      this.discNumbers = new int[16];
+    }
+
+    /**
+     * @param track the track, with a duration, track and disc number
+     * @return this builder
+     */
+    public Builder add(TrackElement track) {
+      if (size == ids.length) {
+        grow();
+      }
+      ids[size] = track.getId();
+      titles[size] = track.getTitle();
+      artists[size] = encode(track.getArtists());
+      albums[size] = encode(track.getAlbum());
+      releaseDates[size] = encode(track.getReleaseDate());
+      descriptions[size] = encode(track.getDescription());
+      timeTotals[size] = track.getTimeTotal();
+      trackNumbers[size] = track.getTrackNumber();
+      discNumbers[size] = track.getDiscNumber();
+      totalTime += timeTotals[size];
+      size++;
+      return this;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public TrackTable build() {
+      Columns columns = new Columns(ids, titles, artists, albums, releaseDates, descriptions, timeTotals, trackNumbers, discNumbers, strings, artistLists);
+      return new TrackTable(columns, 0, size, totalTime);
+    }
+
+    private void grow() {
+      int capacity = ids.length * 2;
+      ids = Arrays.copyOf(ids, capacity);
+      titles = Arrays.copyOf(titles, capacity);
+      artists = Arrays.copyOf(artists, capacity);
+      albums = Arrays.copyOf(albums, capacity);
+      releaseDates = Arrays.copyOf(releaseDates, capacity);
+      descriptions = Arrays.copyOf(descriptions, capacity);
+      timeTotals = Arrays.copyOf(timeTotals, capacity);
+      trackNumbers = Arrays.copyOf(trackNumbers, capacity);
+      discNumbers = Arrays.copyOf(discNumbers, capacity);
+    }
+
+    private int encode(String string) {
+      if (string == null) {
+        return NULL;
+      }
+      return stringIndex.computeIfAbsent(string, s -> {
+        if (stringCount == strings.length) {
+          strings = Arrays.copyOf(strings, stringCount * 2);
+        }
+        strings[stringCount] = s;
+        return stringCount++;
+      });
+    }
+
+    private int encode(List<String> artistList) {
+      if (artistList == null) {
+        return NULL;
+      }
+      Integer index = artistListIndex.get(artistList);
+      if (index == null) {
+        String[] shared = artistList.stream().map(artist -> artist != null ? strings[encode(artist)] : null).toArray(String[]::new);
+        List<String> sharedList = Collections.unmodifiableList(Arrays.asList(shared));
+        if (artistListCount == artistLists.length) {
+          artistLists = Arrays.copyOf(artistLists, artistListCount * 2);
+        }
+        artistLists[artistListCount] = sharedList;
+        index = artistListCount++;
+        artistListIndex.put(sharedList, index);
+      }
+      return index;
+    }
+  }
+
+  private static class Columns {
+    private final String[] ids;
+    private final String[] titles;
+    private final int[] artists;
+    private final int[] albums;
+    private final int[] releaseDates;
+    private final int[] descriptions;
+    private final int[] timeTotals;
+    private final int[] trackNumbers;
+    private final int[] discNumbers;
+    private final String[] strings;
+    private final List<String>[] artistLists;
+
+    private Columns(String[] ids, String[] titles, int[] artists, int[] albums, int[] releaseDates, int[] descriptions,
+        int[] timeTotals, int[] trackNumbers, int[] discNumbers, String[] strings, List<String>[] artistLists) {
+      this.ids = ids;
+      this.titles = titles;
+      this.artists = artists;
+      this.albums = albums;
+      this.releaseDates = releaseDates;
+      this.descriptions = descriptions;
+      this.timeTotals = timeTotals;
+      this.trackNumbers = trackNumbers;
+      this.discNumbers = discNumbers;
+      this.strings = strings;
+      this.artistLists = artistLists;
+    }
+
+    private String string(int[] column, int i) {
+      int index = column[i];
+      return index != Builder.NULL ? strings[index] : null;
+    }
+
+    private List<String> artists(int i) {
+      int index = artists[i];
+      return index != Builder.NULL ? artistLists[index] : null;
+    }
+  }
+}
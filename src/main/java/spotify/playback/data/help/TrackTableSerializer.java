@@ -0,0 +1,72 @@
+package spotify.playback.data.help;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import spotify.playback.data.dto.sub.TrackElement;
+
+/**
+ * Writes a {@link TrackTable} straight from its columns, producing the same properties as the default
+ * serialization of {@link TrackElement} (null values are left out). Like {@link SnapshotListSerializer},
+ * the JSON is only generated once and then kept in the table.
+ */
+public class TrackTableSerializer extends StdSerializer<TrackTable> {
+
+  public TrackTableSerializer() {
+    super(TrackTable.class);
+  }
+
+  @Override
+  public boolean isEmpty(SerializerProvider provider, TrackTable value) {
+    return value.isEmpty();
+  }
+
+  @Override
+  public void serialize(TrackTable value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+    if (JsonFragment.isSupported(gen)) {
+      JsonFragment fragment = value.getJsonFragment();
+      if (fragment == null || !fragment.matches(gen, provider)) {
+        fragment = JsonFragment.write(gen, provider, fragmentGenerator -> writeTracks(value, fragmentGenerator));
+        value.setJsonFragment(fragment);
+      }
+      gen.writeRawValue(fragment.getJson());
+    } else {
+      writeTracks(value, gen);
+    }
+  }
+
+  private void writeTracks(TrackTable value, JsonGenerator gen) throws IOException {
+    gen.writeStartArray(value, value.size());
+    for (int i = 0; i < value.size(); i++) {
+      gen.writeStartObject();
+      writeString(gen, "id", value.getId(i));
+      List<String> artists = value.getArtists(i);
+      if (artists != null) {
+        gen.writeArrayFieldStart("artists");
+        for (String artist : artists) {
+          gen.writeString(artist);
+        }
+        gen.writeEndArray();
+      }
+      writeString(gen, "title", value.getTitle(i));
+      writeString(gen, "album", value.getAlbum(i));
+      writeString(gen, "releaseDate", value.getReleaseDate(i));
+      writeString(gen, "description", value.getDescription(i));
+      gen.writeNumberField("timeTotal", value.getTimeTotal(i));
+      gen.writeNumberField("trackNumber", value.getTrackNumber(i));
+      gen.writeNumberField("discNumber", value.getDiscNumber(i));
+      gen.writeEndObject();
+    }
+    gen.writeEndArray();
+  }
+
+  private void writeString(JsonGenerator gen, String name, String value) throws IOException {
+    if (value != null) {
+      gen.writeStringField(name, value);
+    }
+  }
+}
@@ -0,0 +1,263 @@
+package spotify.playback.data.lyrics;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.StringJoiner;
+
+import org.jsoup.parser.Parser;
+
+/**
+ * Extracts the lyrics from a Genius song page in a single pass over the raw HTML, without
+ * building a DOM. Only the text inside the lyrics containers (<code>div[class^=Lyrics__Container]</code>)
+ * is collected, with <code>&lt;br&gt;</code> tags being turned into line breaks. Reading stops as
+ * soon as the lyrics root element has been closed, so the (rather large) rest of the page never
+ * needs to be downloaded.
+ */
+final class GeniusLyricsExtractor {
+  private static final String LYRICS_CONTAINER_CLASS_PREFIX = "Lyrics__Container";
+  private static final String LYRICS_ROOT_ID = "lyrics-root";
+  private static final int BUFFER_SIZE = 8 * 1024;
+
+  private final Reader reader;
+  private final char[] buffer;
+  private int position;
+  private int limit;
+
+  private final StringJoiner lyricsBlocks;
+  private final StringBuilder currentBlock;
+  private final StringBuilder pendingText;
+  private final StringBuilder tag;
+
+  private int containerDepth;
+  private int rootDepth;
+  private boolean rootClosed;
+
+  private GeniusLyricsExtractor(Reader reader) {
+    this.reader = reader;
+    this.buffer = new char[BUFFER_SIZE];
+    this.lyricsBlocks = new StringJoiner("\n");
+    this.currentBlock = new StringBuilder();
+    this.pendingText = new StringBuilder();
+    this.tag = new StringBuilder();
+  }
+
+  /**
+   * Extract the lyrics from the given Genius page.
+   *
+   * @param reader the reader for the raw HTML of the page (isn't closed by this method)
+   * @return the lyrics, with each lyrics container being separated by a line break
+   *         (empty string if the page didn't contain any lyrics containers)
+   * @throws IOException on a read error
+   */
+  static String extractLyrics(Reader reader) throws IOException {
+    return new GeniusLyricsExtractor(reader).extract();
+  }
+
+  private String extract() throws IOException {
+    int c;
+    while (!rootClosed && (c = read()) >= 0) {
+      if (c == '<' && isTagStart(peek())) {
+        flushText();
+        readTag();
+        processTag();
+      } else if (containerDepth > 0) {
+        pendingText.append((char) c);
+      }
+    }
+    flushText();
+    if (containerDepth > 0) {
+      // Page ended in the middle of a lyrics container, keep what's there
+      lyricsBlocks.add(currentBlock);
+    }
+    return lyricsBlocks.toString();
+  }
+
+  private void readTag() throws IOException {
+    tag.setLength(0);
+    if (peek() == '!') {
+      skipCommentOrDeclaration();
+      return;
+    }
+    char quote = 0;
+    int c;
+    while ((c = read()) >= 0) {
+      if (quote != 0) {
+        if (c == quote) {
+          quote = 0;
+        }
+      } else if (c == '"' || c == '\'') {
+        quote = (char) c;
+      } else if (c == '>') {
+        break;
+      }
+      tag.append((char) c);
+    }
+  }
+
+  private void processTag() throws IOException {
+    if (tag.length() == 0) {
+      return;
+    }
+    boolean closing = tag.charAt(0) == '/';
+    String tagName = getTagName(closing ? 1 : 0);
+    boolean selfClosing = tag.charAt(tag.length() - 1) == '/';
+
+    if (!closing && ("script".equals(tagName) || "style".equals(tagName))) {
+      skipRawText(tagName);
+    } else if ("div".equals(tagName)) {
+      if (closing) {
+        if (containerDepth > 0 && --containerDepth == 0) {
+          lyricsBlocks.add(currentBlock);
+          currentBlock.setLength(0);
+        }
+        if (rootDepth > 0 && --rootDepth == 0) {
+          rootClosed = true;
+        }
+      } else if (!selfClosing) {
+        if (rootDepth > 0) {
+          rootDepth++;
+        } else if (LYRICS_ROOT_ID.equals(getAttribute("id"))) {
+          rootDepth = 1;
+        }
+        if (containerDepth > 0) {
+          containerDepth++;
+        } else {
+          String cssClass = getAttribute("class");
+          if (cssClass != null && cssClass.startsWith(LYRICS_CONTAINER_CLASS_PREFIX)) {
+            containerDepth = 1;
+          }
+        }
+      }
+    } else if ("br".equals(tagName) && containerDepth > 0) {
+      currentBlock.append('\n');
+    }
+  }
+
+  private String getTagName(int start) {
+    int end = start;
+    while (end < tag.length() && Character.isLetterOrDigit(tag.charAt(end))) {
+      end++;
+    }
+    return tag.substring(start, end).toLowerCase();
+  }
+
+  private String getAttribute(String attributeName) {
+    String search = attributeName + "=";
+    int index = tag.indexOf(search);
+    while (index > 0 && !Character.isWhitespace(tag.charAt(index - 1))) {
+      index = tag.indexOf(search, index + 1);
+    }
+    if (index < 0) {
+      return null;
+    }
+    int valueStart = index + search.length();
+    if (valueStart >= tag.length()) {
+      return "";
+    }
+    char quote = tag.charAt(valueStart);
+    if (quote == '"' || quote == '\'') {
+      int valueEnd = tag.indexOf(String.valueOf(quote), valueStart + 1);
+      return tag.substring(valueStart + 1, valueEnd >= 0 ? valueEnd : tag.length());
+    }
+    int valueEnd = valueStart;
+    while (valueEnd < tag.length() && !Character.isWhitespace(tag.charAt(valueEnd)) && tag.charAt(valueEnd) != '/') {
+      valueEnd++;
+    }
+    return tag.substring(valueStart, valueEnd);
+  }
+
+  private void skipCommentOrDeclaration() throws IOException {
+    read(); // '!'
+    if (peek() == '-') {
+      // Comment: skip until "-->"
+      int dashes = 0;
+      int c;
+      while ((c = read()) >= 0) {
+        if (c == '>' && dashes >= 2) {
+          return;
+        }
+        dashes = c == '-' ? dashes + 1 : 0;
+      }
+    } else {
+      // Doctype or similar: skip until '>'
+      int c;
+      while ((c = read()) >= 0 && c != '>') {
+        // skip
+      }
+    }
+  }
+
+  private void skipRawText(String tagName) throws IOException {
+    // Scripts and styles may contain anything (including tag-like text), so skip straight to their end tag
+    int c;
+    while ((c = read()) >= 0) {
+      if (c == '<' && peek() == '/') {
+        read();
+        int matched = 0;
+        while (matched < tagName.length() && Character.toLowerCase(peek()) == tagName.charAt(matched)) {
+          read();
+          matched++;
+        }
+        if (matched == tagName.length()) {
+          while ((c = read()) >= 0 && c != '>') {
+            // skip
+          }
+          return;
+        }
+      }
+    }
+  }
+
+  private void flushText() {
+    if (pendingText.length() > 0) {
+      String text = Parser.unescapeEntities(pendingText.toString(), false);
+      appendNormalizedWhitespace(text);
+      pendingText.setLength(0);
+    }
+  }
+
+  private void appendNormalizedWhitespace(String text) {
+    // Same rules as Jsoup's TextNode.text(), which was used to extract the lyrics before
+    boolean lastWasWhitespace = false;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00A0') {
+        if (!lastWasWhitespace) {
+          currentBlock.append(' ');
+          lastWasWhitespace = true;
+        }
+      } else if (c != '\u200B' && c != '\u00AD') {
+        currentBlock.append(c);
+        lastWasWhitespace = false;
+      }
+    }
+  }
+
+  private boolean isTagStart(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '/' || c == '!';
+  }
+
+  private int read() throws IOException {
+    if (position >= limit && !fill()) {
+      return -1;
+    }
+    return buffer[position++];
+  }
+
+  private int peek() throws IOException {
+    if (position >= limit && !fill()) {
+      return -1;
+    }
+    return buffer[position];
+  }
+
+  private boolean fill() throws IOException {
+    int read = reader.read(buffer, 0, buffer.length);
+    if (read <= 0) {
+      return false;
+    }
+    position = 0;
+    limit = read;
+    return true;
+  }
+}
@@ -1,19 +1,21 @@
 package spotify.playback.data.lyrics;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.Arrays;
-import java.util.StringJoiner;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.jsoup.Connection;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.nodes.Node;
-import org.jsoup.nodes.TextNode;
-import org.jsoup.select.Elements;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -22,28 +24,81 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
+import spotify.playback.data.help.OutboundCallExecutors;
+
 
 // TODO: redo implementation based on fmbot https://github.com/fmbot-discord/fmbot/blob/dev/src/FMBot.Bot/Services/ThirdParty/GeniusService.cs#L22
+@Lazy
 @Service
 public class GeniusLyricsScraper {
   private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.124 Safari/537.36";
   private static final Gson gson = new Gson();
+  private static final long PREFETCH_AFTER_LAST_REQUEST_MS = Duration.ofMinutes(30).toMillis();
+
+  private final LyricsCache lyricsCache;
+  private final LyricsNormalizer lyricsNormalizer;
+  private final OutboundCallExecutors outboundCallExecutors;
+  private final Map<String, CompletableFuture<String>> lyricsInFlight;
+
+  private volatile long lastLyricsRequest;
+
+  GeniusLyricsScraper(LyricsCache lyricsCache, LyricsNormalizer lyricsNormalizer, OutboundCallExecutors outboundCallExecutors) {
+    this.lyricsCache = lyricsCache;
+    this.lyricsNormalizer = lyricsNormalizer;
+    this.outboundCallExecutors = outboundCallExecutors;
+    this.lyricsInFlight = new ConcurrentHashMap<>();
+  }
 
   /**
    * Try to find the lyrics for the given artist and song name on the lyrics website genius.com.
    * This method works by first searching for the track URL, then scraping the lyrics from the actual
-   * web page recursively.
+   * web page recursively. Results (including songs without lyrics) are cached, so that the same
+   * song isn't scraped again when it's requested multiple times.
+   * <p>
+   * The scraping itself happens in the background. Concurrent requests for the same song
+   * share the same result.
+   *
+   * @param artistName the artist name to search for
+   * @param songName   the song name to search for
+   * @return a future of the lyrics as a single, compiled string (empty string if the lyrics couldn't be found)
+   */
+  public CompletableFuture<String> getSongLyrics(String artistName, String songName) {
+    lastLyricsRequest = System.currentTimeMillis();
+    return fetchSongLyrics(artistName, songName);
+  }
+
+  /**
+   * Fetch the lyrics for the given song in the background, so that they are already cached
+   * by the time they are actually requested. This only does anything if lyrics have been
+   * requested recently, so Genius doesn't get scraped for users who don't use the lyrics at all.
    *
    * @param artistName the artist name to search for
    * @param songName   the song name to search for
-   * @return the lyrics as a single, compiled string (empty string if the lyrics couldn't be found)
    */
-  public String getSongLyrics(String artistName, String songName) {
+  public void prefetchSongLyrics(String artistName, String songName) {
+    if (System.currentTimeMillis() - lastLyricsRequest < PREFETCH_AFTER_LAST_REQUEST_MS) {
+      fetchSongLyrics(artistName, songName);
+    }
+  }
+
+  private CompletableFuture<String> fetchSongLyrics(String artistName, String songName) {
+    String cacheKey = lyricsNormalizer.createCacheKey(artistName, songName);
+    Optional<String> cachedLyrics = lyricsCache.get(cacheKey);
+    if (cachedLyrics.isPresent()) {
+      return CompletableFuture.completedFuture(cachedLyrics.get());
+    }
+    CompletableFuture<String> lyricsFuture = lyricsInFlight.computeIfAbsent(cacheKey, key ->
+      outboundCallExecutors.supplyGenius(() -> scrapeAndCacheSongLyrics(key, artistName, songName)));
+    lyricsFuture.whenComplete((lyrics, e) -> lyricsInFlight.remove(cacheKey, lyricsFuture));
+    return lyricsFuture;
+  }
+
+  private String scrapeAndCacheSongLyrics(String cacheKey, String artistName, String songName) {
     try {
       String url = findLyricsUrl(artistName, songName);
-      if (url != null) {
-        return scrapeLyrics(url);
-      }
+      String lyrics = url != null ? scrapeLyrics(url) : "";
+      lyricsCache.put(cacheKey, lyrics);
+      return lyrics;
     } catch (Exception e) {
       e.printStackTrace();
     }
@@ -52,8 +107,8 @@ public class GeniusLyricsScraper {
 
   private String findLyricsUrl(String artistName, String songName) throws IOException {
     // Preprocess artistName and songName to remove brackets
-    String processedArtistName = preprocessString(artistName);
-    String processedSongName = preprocessString(songName);
+    String processedArtistName = lyricsNormalizer.preprocess(artistName);
+    String processedSongName = lyricsNormalizer.preprocess(songName);
 
     String searchUrl = "https://genius.com/api/search?q=" + processedArtistName + " " + processedSongName;
 
@@ -71,66 +126,52 @@ public class GeniusLyricsScraper {
     return null;
   }
 
-  private String preprocessString(String input) {
-    // Remove all occurrences of problematic symbols
-    input = input.replaceAll("[#@_]", "");
-
-    // Check if the string contains only non-language characters outside the brackets
-    String outsideBrackets = input.replaceAll("\\(.*?\\)", "").trim();
-    if (outsideBrackets.isEmpty() || outsideBrackets.matches("[^\\p{L}\\p{N}]+")) {
-      // If so, keep the content inside the brackets
-      Pattern pattern = Pattern.compile("\\((.*?)\\)");
-      Matcher matcher = pattern.matcher(input);
-      if (matcher.find()) {
-        return matcher.group(1).trim();
-      }
-    }
-
-    // Remove content inside brackets
-    input = input.replaceAll("\\(.*?\\)", "").trim();
-
-    // Remove any trailing text after an unpaired opening bracket
-    if (input.contains("(") && !input.contains(")")) {
-      input = input.substring(0, input.indexOf('(')).trim();
-    }
-
-    return input;
-  }
-
   private String findMatchingPath(String json, String artistName, String songName) {
     JsonObject jsonObject = gson.fromJson(json, JsonObject.class);
     JsonArray hits = jsonObject.getAsJsonObject("response").getAsJsonArray("hits");
 
     // Normalize the search strings
-    String normalizedArtistName = normalizeString(artistName);
-    String normalizedSongName = normalizeString(songName);
-    String[] artistNameParts = normalizedArtistName.split("\\s+");
+    String normalizedArtistName = lyricsNormalizer.normalize(artistName);
+    String normalizedSongName = lyricsNormalizer.normalize(songName);
+    String[] artistNameParts = lyricsNormalizer.splitWords(normalizedArtistName);
 
+    String bestMatchingPath = null;
+    int bestScore = 0;
     for (JsonElement hit : hits) {
       JsonObject result = hit.getAsJsonObject().getAsJsonObject("result");
-      String artistNames = result.get("artist_names").getAsString();
-      String title = result.get("title").getAsString();
 
-      // Normalize the JSON strings
-      String normalizedArtistNames = normalizeString(artistNames);
-      String normalizedTitle = normalizeString(title);
+      // Match title first, as it rules out most hits without having to look at the artists
+      String normalizedTitle = lyricsNormalizer.normalize(result.get("title").getAsString());
+      if (!normalizedTitle.contains(normalizedSongName)) {
+        continue;
+      }
 
       // Check for partial matches in artist names
+      String normalizedArtistNames = lyricsNormalizer.normalize(result.get("artist_names").getAsString());
       boolean artistMatch = Arrays.stream(artistNameParts)
               .allMatch(normalizedArtistNames::contains);
-      // Match title
-      boolean titleMatch = normalizedTitle.contains(normalizedSongName);
+      if (!artistMatch) {
+        continue;
+      }
 
-      if (artistMatch && titleMatch) {
-        return result.get("path").getAsString();
+      // Prefer exact matches over partial ones (e.g. the original over a remix), otherwise keep Genius' order
+      int score = scoreMatch(normalizedTitle, normalizedSongName) * 2 + (normalizedArtistNames.equals(normalizedArtistName) ? 1 : 0);
+      if (score > bestScore) {
+        bestScore = score;
+        bestMatchingPath = result.get("path").getAsString();
       }
     }
 
-    return null;
+    return bestMatchingPath;
   }
 
-  private String normalizeString(String input) {
-    return input.toLowerCase().replaceAll("[^a-zA-Z0-9\\s]", "").trim();
+  private int scoreMatch(String normalizedTitle, String normalizedSongName) {
+    if (normalizedTitle.equals(normalizedSongName)) {
+      return 3;
+    } else if (normalizedTitle.startsWith(normalizedSongName)) {
+      return 2;
+    }
+    return 1;
   }
 
   private String scrapeLyrics(String url) throws IOException {
@@ -139,34 +180,10 @@ public class GeniusLyricsScraper {
       .ignoreContentType(true)
       .execute();
 
-    Document document = response.parse();
-    Elements lyricsElements = document.select("div[class^=Lyrics__Container]");
-
-    StringJoiner lyricsBlocks = new StringJoiner("\n");
-    for (Element element : lyricsElements) {
-      StringBuilder lyricsBuilder = new StringBuilder();
-      recursivelyGetDeepestLyricsNodeText(element, lyricsBuilder);
-      lyricsBlocks.add(lyricsBuilder);
-    }
-    return lyricsBlocks.toString();
-  }
-
-  private void recursivelyGetDeepestLyricsNodeText(Node node, StringBuilder stringBuilder) {
-    if (node instanceof TextNode) {
-      // Get the raw lyrics text for this verse
-      TextNode textNode = (TextNode) node;
-      String text = textNode.text();
-      stringBuilder.append(text);
-    } else if (node instanceof Element) {
-      Element element = (Element) node;
-      if ("br".equals(element.tagName())) {
-        // Special case: if it's a <br> node, make sure the line breaks are preserved
-        stringBuilder.append("\n");
-      } else {
-        for (Node childNode : element.childNodes()) {
-          recursivelyGetDeepestLyricsNodeText(childNode, stringBuilder);
-        }
-      }
+    // Stream the page instead of parsing it into a full document, as only a tiny part of it is actually needed
+    Charset charset = response.charset() != null ? Charset.forName(response.charset()) : StandardCharsets.UTF_8;
+    try (Reader reader = new InputStreamReader(response.bodyStream(), charset)) {
+      return GeniusLyricsExtractor.extractLyrics(reader);
     }
   }
 }
@@ -0,0 +1,189 @@
+package spotify.playback.data.lyrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import spotify.playback.data.help.LowMemoryMode;
+import spotify.playback.metrics.PlaybackMetrics;
+
+/**
+ * Two-level cache for scraped lyrics: a bounded in-memory LRU map in front of a simple
+ * on-disk store (one file per song in the working directory), so that the same song
+ * never has to be scraped twice, not even across restarts.
+ * <p>
+ * Songs for which no lyrics could be found are cached too (as empty string), but they
+ * expire much sooner, in case Genius gets the lyrics later on. Expired entries are deleted from
+ * disk when they're read, and all others once on startup, so the directory doesn't grow forever.
+ */
+@Lazy
+@Component
+public class LyricsCache {
+  private static final String LYRICS_CACHE_DIRECTORY = "lyrics_cache";
+  private static final int MAX_IN_MEMORY_ENTRIES = 256;
+  private static final int MAX_IN_MEMORY_ENTRIES_LOW_MEMORY = 16;
+  private static final long TTL_FOUND_MS = Duration.ofDays(30).toMillis();
+  private static final long TTL_NOT_FOUND_MS = Duration.ofHours(12).toMillis();
+
+  private final Map<String, CacheEntry> inMemoryCache;
+  private final Path cacheDirectory;
+  private final PlaybackMetrics playbackMetrics;
+
+  private final Logger logger = Logger.getLogger(LyricsCache.class.getName());
+
+  LyricsCache(PlaybackMetrics playbackMetrics, LowMemoryMode lowMemoryMode) {
+    this.playbackMetrics = playbackMetrics;
+    int maxInMemoryEntries = lowMemoryMode.cacheSize(MAX_IN_MEMORY_ENTRIES, MAX_IN_MEMORY_ENTRIES_LOW_MEMORY);
+    this.inMemoryCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+        return size() > maxInMemoryEntries;
+      }
+    });
+    this.cacheDirectory = Path.of(LYRICS_CACHE_DIRECTORY);
+    CompletableFuture.runAsync(this::deleteExpiredFromDisk);
+  }
+
+  /**
+   * Look up the lyrics for the given cache key, first in memory, then on disk.
+   *
+   * @param cacheKey the normalized artist/title key
+   * @return the cached lyrics (an empty string means the song is known to have no lyrics),
+   *         or an empty Optional if the song isn't cached or the entry has expired
+   */
+  public Optional<String> get(String cacheKey) {
+    long now = System.currentTimeMillis();
+    CacheEntry cacheEntry = inMemoryCache.get(cacheKey);
+    if (cacheEntry == null) {
+      cacheEntry = readFromDisk(cacheKey);
+      if (cacheEntry != null) {
+        inMemoryCache.put(cacheKey, cacheEntry);
+      }
+    }
+    if (cacheEntry != null) {
+      if (!cacheEntry.isExpired(now)) {
+        playbackMetrics.recordCacheAccess("lyrics", true);
+        return Optional.of(cacheEntry.getLyrics());
+      }
+      inMemoryCache.remove(cacheKey);
+      deleteFromDisk(cacheKey);
+    }
+    playbackMetrics.recordCacheAccess("lyrics", false);
+    return Optional.empty();
+  }
+
+  /**
+   * Store the lyrics for the given cache key, both in memory and on disk.
+   *
+   * @param cacheKey the normalized artist/title key
+   * @param lyrics the lyrics (empty string if none were found)
+   */
+  public void put(String cacheKey, String lyrics) {
+    CacheEntry cacheEntry = new CacheEntry(lyrics, System.currentTimeMillis());
+    inMemoryCache.put(cacheKey, cacheEntry);
+    writeToDisk(cacheKey, cacheEntry);
+  }
+
+  private CacheEntry readFromDisk(String cacheKey) {
+    return readFromDisk(getCacheFile(cacheKey));
+  }
+
+  private CacheEntry readFromDisk(Path file) {
+    if (Files.isReadable(file)) {
+      try {
+        String content = Files.readString(file, StandardCharsets.UTF_8);
+        int headerEnd = content.indexOf('\n');
+        if (headerEnd > 0) {
+          long createdAt = Long.parseLong(content.substring(0, headerEnd));
+          return new CacheEntry(content.substring(headerEnd + 1), createdAt);
+        }
+      } catch (IOException | NumberFormatException e) {
+        logger.warning("Failed to read cached lyrics file " + file + ": " + e.getMessage());
+      }
+    }
+    return null;
+  }
+
+  private void writeToDisk(String cacheKey, CacheEntry cacheEntry) {
+    try {
+      Files.createDirectories(cacheDirectory);
+      Files.writeString(getCacheFile(cacheKey), cacheEntry.getCreatedAt() + "\n" + cacheEntry.getLyrics(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      logger.warning("Failed to write lyrics to " + LYRICS_CACHE_DIRECTORY + ": " + e.getMessage());
+    }
+  }
+
+  private void deleteFromDisk(String cacheKey) {
+    try {
+      Files.deleteIfExists(getCacheFile(cacheKey));
+    } catch (IOException e) {
+      logger.warning("Failed to delete expired lyrics from " + LYRICS_CACHE_DIRECTORY + ": " + e.getMessage());
+    }
+  }
+
+  private void deleteExpiredFromDisk() {
+    if (!Files.isDirectory(cacheDirectory)) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    int deleted = 0;
+    try (Stream<Path> files = Files.list(cacheDirectory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        // Entries can't expire before the shorter of the two TTLs, those don't even need to be read
+        if (now - Files.getLastModifiedTime(file).toMillis() > TTL_NOT_FOUND_MS) {
+          CacheEntry cacheEntry = readFromDisk(file);
+          if (cacheEntry == null || cacheEntry.isExpired(now)) {
+            Files.deleteIfExists(file);
+            deleted++;
+          }
+        }
+      }
+    } catch (IOException e) {
+      logger.warning("Failed to delete expired lyrics from " + LYRICS_CACHE_DIRECTORY + ": " + e.getMessage());
+    }
+    if (deleted > 0) {
+      logger.info("Deleted " + deleted + " expired lyrics from " + LYRICS_CACHE_DIRECTORY);
+    }
+  }
+
+  private Path getCacheFile(String cacheKey) {
+    // The keys may contain all sorts of characters, so a name-based UUID is used as file name instead
+    return cacheDirectory.resolve(UUID.nameUUIDFromBytes(cacheKey.getBytes(StandardCharsets.UTF_8)) + ".txt");
+  }
+
+  private static class CacheEntry {
+    private final String lyrics;
+    private final long createdAt;
+
+    private CacheEntry(String lyrics, long createdAt) {
+      this.lyrics = lyrics;
+      this.createdAt = createdAt;
+    }
+
+    private String getLyrics() {
+      return lyrics;
+    }
+
+    private long getCreatedAt() {
+      return createdAt;
+    }
+
+    private boolean isExpired(long now) {
+      long ttl = lyrics.isEmpty() ? TTL_NOT_FOUND_MS : TTL_FOUND_MS;
+      return now - createdAt > ttl;
+    }
+  }
+}
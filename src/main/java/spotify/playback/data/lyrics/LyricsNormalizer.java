@@ -0,0 +1,156 @@
+package spotify.playback.data.lyrics;
+
+import java.util.regex.Pattern;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Normalizes artist and song names for the lyrics search, as well as for the keys
+ * of the lyrics cache. Everything in here is called for every single search hit,
+ * so it avoids recompiling regular expressions and works in as few passes as possible.
+ */
+@Component
+public class LyricsNormalizer {
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  /**
+   * Remove the problematic symbols (#, @, _) and any content inside round brackets from
+   * the given artist or song name. If there are no letters or numbers outside the brackets,
+   * the content of the first pair of brackets is returned instead.
+   *
+   * @param input the raw name
+   * @return the preprocessed name
+   */
+  public String preprocess(String input) {
+    StringBuilder outsideBrackets = new StringBuilder(input.length());
+    String firstBracketContent = null;
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (c == '(') {
+        int closingBracket = input.indexOf(')', i + 1);
+        if (closingBracket >= 0) {
+          if (firstBracketContent == null) {
+            firstBracketContent = removeProblematicSymbols(input, i + 1, closingBracket);
+          }
+          i = closingBracket;
+          continue;
+        }
+      }
+      if (!isProblematicSymbol(c)) {
+        outsideBrackets.append(c);
+      }
+    }
+
+    String result = outsideBrackets.toString().trim();
+    if (firstBracketContent != null && !containsLetterOrNumber(result)) {
+      // Only non-language characters outside the brackets, keep the content inside the brackets instead
+      return firstBracketContent.trim();
+    }
+
+    // Remove any trailing text after an unpaired opening bracket
+    int openingBracket = result.indexOf('(');
+    if (openingBracket >= 0 && result.indexOf(')') < 0) {
+      result = result.substring(0, openingBracket).trim();
+    }
+    return result;
+  }
+
+  /**
+   * Lower-case the given name and strip everything except for ASCII letters, digits and
+   * whitespace. Leading and trailing whitespace is removed as well.
+   *
+   * @param input the name to normalize
+   * @return the normalized name
+   */
+  public String normalize(String input) {
+    StringBuilder normalized = new StringBuilder(input.length());
+    int lengthWithoutTrailingWhitespace = 0;
+    for (int i = 0; i < input.length(); i++) {
+      char c = Character.toLowerCase(input.charAt(i));
+      if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+        normalized.append(c);
+        lengthWithoutTrailingWhitespace = normalized.length();
+      } else if (isWhitespace(c) && normalized.length() > 0) {
+        normalized.append(c);
+      }
+    }
+    normalized.setLength(lengthWithoutTrailingWhitespace);
+    return normalized.toString();
+  }
+
+  /**
+   * Split a normalized name into its individual words.
+   *
+   * @param normalized the normalized name
+   * @return the words
+   */
+  public String[] splitWords(String normalized) {
+    return WHITESPACE.split(normalized);
+  }
+
+  /**
+   * Create the key under which the lyrics for the given song are cached. Different spellings
+   * of the same song (e.g. with or without a bracketed suffix) result in the same key.
+   * Unlike {@link #normalize(String)}, which is only used to match search hits, letters and digits
+   * of any script are kept, so that e.g. two Japanese songs don't end up with the same key.
+   *
+   * @param artistName the artist name
+   * @param songName the song name
+   * @return the cache key
+   */
+  public String createCacheKey(String artistName, String songName) {
+    return normalizeForKey(preprocess(artistName)) + "|" + normalizeForKey(preprocess(songName));
+  }
+
+  private String normalizeForKey(String input) {
+    StringBuilder normalized = new StringBuilder(input.length());
+    int lengthWithoutTrailingWhitespace = 0;
+    for (int i = 0; i < input.length(); ) {
+      int codePoint = input.codePointAt(i);
+      if (Character.isLetterOrDigit(codePoint)) {
+        normalized.appendCodePoint(Character.toLowerCase(codePoint));
+        lengthWithoutTrailingWhitespace = normalized.length();
+      } else if (isWhitespace(input.charAt(i)) && normalized.length() > 0) {
+        normalized.append(input.charAt(i));
+      }
+      i += Character.charCount(codePoint);
+    }
+    normalized.setLength(lengthWithoutTrailingWhitespace);
+    return normalized.toString();
+  }
+
+  private String removeProblematicSymbols(String input, int from, int to) {
+    StringBuilder result = new StringBuilder(to - from);
+    for (int i = from; i < to; i++) {
+      char c = input.charAt(i);
+      if (!isProblematicSymbol(c)) {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  private boolean containsLetterOrNumber(String input) {
+    for (int i = 0; i < input.length(); ) {
+      int codePoint = input.codePointAt(i);
+      if (Character.isLetter(codePoint) || isNumber(codePoint)) {
+        return true;
+      }
+      i += Character.charCount(codePoint);
+    }
+    return false;
+  }
+
+  private boolean isNumber(int codePoint) {
+    int type = Character.getType(codePoint);
+    return type == Character.DECIMAL_DIGIT_NUMBER || type == Character.LETTER_NUMBER || type == Character.OTHER_NUMBER;
+  }
+
+  private boolean isProblematicSymbol(char c) {
+    return c == '#' || c == '@' || c == '_';
+  }
+
+  private boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+}
@@ -0,0 +1,37 @@
+package spotify.playback.data.lyrics;
+
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.stereotype.Component;
+
+import spotify.playback.data.dto.misc.SyncedLyrics;
+import spotify.playback.data.lyrics.synced.SyncedLyricsProvider;
+
+@Component
+public class SyncedLyricsFinder {
+
+  private final List<SyncedLyricsProvider> syncedLyricsProviders;
+
+  SyncedLyricsFinder(List<SyncedLyricsProvider> syncedLyricsProviders) {
+    this.syncedLyricsProviders = syncedLyricsProviders;
+  }
+
+  /**
+   * Find time-coded lyrics for the given song, asking each of the available
+   * providers in turn until one of them has any.
+   *
+   * @param artistName the artist name
+   * @param songName the song name
+   * @return the synced lyrics, empty if no provider has any for this song
+   */
+  public Optional<SyncedLyrics> findSyncedLyrics(String artistName, String songName) {
+    for (SyncedLyricsProvider syncedLyricsProvider : syncedLyricsProviders) {
+      Optional<SyncedLyrics> syncedLyrics = syncedLyricsProvider.getSyncedLyrics(artistName, songName);
+      if (syncedLyrics.isPresent()) {
+        return syncedLyrics;
+      }
+    }
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,107 @@
+package spotify.playback.data.lyrics.synced;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Component;
+
+import spotify.playback.data.dto.misc.SyncedLyrics;
+import spotify.playback.data.lyrics.LyricsNormalizer;
+
+/**
+ * Provides synced lyrics from LRC files that were put into a local directory. The files are
+ * matched by their <code>ar</code> and <code>ti</code> tags, or otherwise by their file name,
+ * which is expected to be in the format <code>Artist - Title.lrc</code>.
+ * <p>
+ * The directory is only indexed once and then again whenever its content changes,
+ * so files can be added while the app is running.
+ */
+@Component
+public class LocalLrcSyncedLyricsProvider implements SyncedLyricsProvider {
+  private static final String SYNCED_LYRICS_DIRECTORY = "synced_lyrics";
+  private static final String LRC_FILE_EXTENSION = ".lrc";
+  private static final String FILE_NAME_SPLIT_CHAR = " - ";
+
+  private final LyricsNormalizer lyricsNormalizer;
+  private final File syncedLyricsDirectory;
+
+  private Map<String, Path> lrcFileIndex;
+  private long lrcFileIndexLastModified;
+
+  LocalLrcSyncedLyricsProvider(LyricsNormalizer lyricsNormalizer) {
+    this.lyricsNormalizer = lyricsNormalizer;
+    this.syncedLyricsDirectory = new File(SYNCED_LYRICS_DIRECTORY);
+    this.lrcFileIndex = Map.of();
+    this.lrcFileIndexLastModified = -1;
+  }
+
+  @Override
+  public Optional<SyncedLyrics> getSyncedLyrics(String artistName, String songName) {
+    Path lrcFile = getLrcFileIndex().get(lyricsNormalizer.createCacheKey(artistName, songName));
+    if (lrcFile != null) {
+      try {
+        SyncedLyrics syncedLyrics = LrcParser.parse(Files.readString(lrcFile, StandardCharsets.UTF_8));
+        if (!syncedLyrics.getLines().isEmpty()) {
+          return Optional.of(syncedLyrics);
+        }
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return Optional.empty();
+  }
+
+  private synchronized Map<String, Path> getLrcFileIndex() {
+    if (!syncedLyricsDirectory.isDirectory()) {
+      return Map.of();
+    }
+    long lastModified = syncedLyricsDirectory.lastModified();
+    if (lastModified != lrcFileIndexLastModified) {
+      lrcFileIndex = indexLrcFiles();
+      lrcFileIndexLastModified = lastModified;
+    }
+    return lrcFileIndex;
+  }
+
+  private Map<String, Path> indexLrcFiles() {
+    Map<String, Path> index = new HashMap<>();
+    try (Stream<Path> files = Files.list(syncedLyricsDirectory.toPath())) {
+      List<Path> lrcFiles = files
+        .filter(file -> file.getFileName().toString().toLowerCase().endsWith(LRC_FILE_EXTENSION))
+        .collect(Collectors.toList());
+      for (Path lrcFile : lrcFiles) {
+        String fileName = lrcFile.getFileName().toString();
+        String baseName = fileName.substring(0, fileName.length() - LRC_FILE_EXTENSION.length());
+        int split = baseName.indexOf(FILE_NAME_SPLIT_CHAR);
+        if (split > 0) {
+          index.putIfAbsent(lyricsNormalizer.createCacheKey(baseName.substring(0, split), baseName.substring(split + FILE_NAME_SPLIT_CHAR.length())), lrcFile);
+        }
+
+        // Tags take precedence over the file name
+        try {
+          String content = Files.readString(lrcFile, StandardCharsets.UTF_8);
+          String artist = LrcParser.getArtist(content);
+          String title = LrcParser.getTitle(content);
+          if (artist != null && title != null) {
+            index.put(lyricsNormalizer.createCacheKey(artist, title), lrcFile);
+          }
+        } catch (IOException e) {
+          // A single unreadable file (e.g. not UTF-8) shouldn't cost the rest of the index
+          System.out.println("Failed to read " + lrcFile + ": " + e);
+        }
+      }
+    } catch (IOException e) {
+      System.out.println("Failed to read " + SYNCED_LYRICS_DIRECTORY);
+    }
+    return index;
+  }
+}
@@ -0,0 +1,121 @@
+package spotify.playback.data.lyrics.synced;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import spotify.playback.data.dto.misc.SyncedLyrics;
+
+/**
+ * Parser for the LRC format, i.e. lines of lyrics prefixed with one or more timestamps:
+ * <pre>
+ * [ar:Artist]
+ * [ti:Title]
+ * [00:12.34]First line
+ * [00:17.00][01:20.50]Line that is repeated in the chorus
+ * </pre>
+ * The <code>offset</code> tag and word-level timestamps (<code>&lt;00:12.34&gt;</code>) of the
+ * enhanced format are supported as well, the latter are simply removed.
+ */
+public class LrcParser {
+  private static final Pattern TIMESTAMP = Pattern.compile("\\[(\\d+):(\\d{1,2})(?:[.:](\\d{1,3}))?]");
+  private static final Pattern TAG = Pattern.compile("^\\[([a-z]+):(.*)]$");
+  private static final Pattern WORD_TIMESTAMP = Pattern.compile("<\\d+:\\d{1,2}(?:[.:]\\d{1,3})?>");
+
+  private static final String ARTIST_TAG = "ar";
+  private static final String TITLE_TAG = "ti";
+  private static final String OFFSET_TAG = "offset";
+
+  private LrcParser() {}
+
+  /**
+   * Parse the given LRC content into lines sorted by their timestamps.
+   *
+   * @param lrcContent the raw content of the LRC file
+   * @return the synced lyrics (without any lines if the content didn't contain any timestamps)
+   */
+  public static SyncedLyrics parse(String lrcContent) {
+    Map<String, String> tags = parseTags(lrcContent);
+    int offsetMs = parseOffset(tags.get(OFFSET_TAG));
+
+    List<SyncedLyrics.Line> lines = new ArrayList<>();
+    for (String rawLine : lrcContent.split("\\R")) {
+      Matcher matcher = TIMESTAMP.matcher(rawLine);
+      List<Integer> timestamps = new ArrayList<>();
+      int textStart = 0;
+      while (matcher.find() && matcher.start() == textStart) {
+        timestamps.add(toMillis(matcher));
+        textStart = matcher.end();
+      }
+      if (!timestamps.isEmpty()) {
+        String text = WORD_TIMESTAMP.matcher(rawLine.substring(textStart)).replaceAll("").trim();
+        for (int timestamp : timestamps) {
+          lines.add(new SyncedLyrics.Line(Math.max(0, timestamp - offsetMs), text));
+        }
+      }
+    }
+    lines.sort(Comparator.comparingInt(SyncedLyrics.Line::getTimeMs));
+    return new SyncedLyrics(lines);
+  }
+
+  /**
+   * Read the artist (<code>ar</code>) tag of the given LRC content.
+   *
+   * @param lrcContent the raw content of the LRC file
+   * @return the artist, null if the tag isn't set
+   */
+  public static String getArtist(String lrcContent) {
+    return parseTags(lrcContent).get(ARTIST_TAG);
+  }
+
+  /**
+   * Read the title (<code>ti</code>) tag of the given LRC content.
+   *
+   * @param lrcContent the raw content of the LRC file
+   * @return the title, null if the tag isn't set
+   */
+  public static String getTitle(String lrcContent) {
+    return parseTags(lrcContent).get(TITLE_TAG);
+  }
+
+  private static Map<String, String> parseTags(String lrcContent) {
+    Map<String, String> tags = new HashMap<>();
+    for (String rawLine : lrcContent.split("\\R")) {
+      Matcher matcher = TAG.matcher(rawLine.trim());
+      if (matcher.matches()) {
+        tags.put(matcher.group(1), matcher.group(2).trim());
+      }
+    }
+    return tags;
+  }
+
+  private static int parseOffset(String offset) {
+    if (offset != null) {
+      try {
+        return Integer.parseInt(offset.replace("+", ""));
+      } catch (NumberFormatException e) {
+        // Invalid offset, ignore it
+      }
+    }
+    return 0;
+  }
+
+  private static int toMillis(Matcher timestamp) {
+    int minutes = Integer.parseInt(timestamp.group(1));
+    int seconds = Integer.parseInt(timestamp.group(2));
+    int millis = 0;
+    String fraction = timestamp.group(3);
+    if (fraction != null) {
+      // Fractions may be given as tenths, hundredths, or thousandths of a second
+      millis = Integer.parseInt(fraction);
+      for (int i = fraction.length(); i < 3; i++) {
+        millis *= 10;
+      }
+    }
+    return (minutes * 60 + seconds) * 1000 + millis;
+  }
+}
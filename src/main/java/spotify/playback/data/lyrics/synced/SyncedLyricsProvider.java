@@ -0,0 +1,9 @@
+package spotify.playback.data.lyrics.synced;
+
+import java.util.Optional;
+
+import spotify.playback.data.dto.misc.SyncedLyrics;
+
+public interface SyncedLyricsProvider {
+  Optional<SyncedLyrics> getSyncedLyrics(String artistName, String songName);
+}
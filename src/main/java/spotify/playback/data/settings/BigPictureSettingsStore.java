@@ -0,0 +1,87 @@
+package spotify.playback.data.settings;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.stereotype.Component;
+
+import spotify.playback.data.dto.misc.BigPictureSetting;
+
+/**
+ * Holds the settings transmitted by the interface, indexed by their ID. The settings are
+ * never modified in place. Instead, every change swaps in a new immutable snapshot, so
+ * concurrent toggles can neither get lost nor be seen half-applied.
+ */
+@Component
+public class BigPictureSettingsStore {
+  private final AtomicReference<Snapshot> snapshot;
+
+  BigPictureSettingsStore() {
+    this.snapshot = new AtomicReference<>();
+  }
+
+  /**
+   * Replace all settings with the given ones.
+   *
+   * @param settings the settings as sent by the interface
+   */
+  public void replaceAll(List<BigPictureSetting> settings) {
+    snapshot.set(new Snapshot(settings));
+  }
+
+  /**
+   * @return true if the settings have been transmitted by the interface at least once
+   */
+  public boolean isSet() {
+    return snapshot.get() != null;
+  }
+
+  /**
+   * @return all settings in their original order, empty if they haven't been transmitted yet
+   */
+  public List<BigPictureSetting> getAll() {
+    Snapshot current = snapshot.get();
+    return current != null ? current.settings : List.of();
+  }
+
+  /**
+   * Flip the state of the given setting.
+   *
+   * @param settingId the setting's ID
+   * @return the setting with its new state, empty if there is no setting with that ID
+   */
+  public Optional<BigPictureSetting> toggle(String settingId) {
+    while (true) {
+      Snapshot current = snapshot.get();
+      if (current == null || !current.indexById.containsKey(settingId)) {
+        return Optional.empty();
+      }
+      int index = current.indexById.get(settingId);
+      BigPictureSetting setting = current.settings.get(index);
+      BigPictureSetting toggled = new BigPictureSetting(setting.getId(), setting.getName(), setting.getCategory(), setting.getDescription(), !Boolean.TRUE.equals(setting.getState()));
+
+      List<BigPictureSetting> settings = new ArrayList<>(current.settings);
+      settings.set(index, toggled);
+      if (snapshot.compareAndSet(current, new Snapshot(settings))) {
+        return Optional.of(toggled);
+      }
+    }
+  }
+
+  private static class Snapshot {
+    private final List<BigPictureSetting> settings;
+    private final Map<String, Integer> indexById;
+
+    private Snapshot(List<BigPictureSetting> settings) {
+      this.settings = List.copyOf(settings);
+      this.indexById = new HashMap<>();
+      for (int i = 0; i < this.settings.size(); i++) {
+        this.indexById.put(this.settings.get(i).getId(), i);
+      }
+    }
+  }
+}
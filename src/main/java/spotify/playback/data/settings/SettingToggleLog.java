@@ -0,0 +1,88 @@
+package spotify.playback.data.settings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * An append-only, sequence-numbered log of setting toggles, so that every connected client
+ * can read the toggles it hasn't seen yet from its own position, without any locking.
+ * Only the most recent entries are kept (ring buffer), which is plenty, as clients read
+ * the log every couple of seconds and toggles are triggered manually.
+ */
+@Component
+public class SettingToggleLog {
+  private static final int CAPACITY = 256;
+
+  private final AtomicReferenceArray<Entry> entries;
+  private final AtomicLong nextSequence;
+
+  SettingToggleLog() {
+    this.entries = new AtomicReferenceArray<>(CAPACITY);
+    this.nextSequence = new AtomicLong();
+  }
+
+  /**
+   * Append a setting toggle to the log.
+   *
+   * @param settingId the setting to toggle
+   */
+  public void append(String settingId) {
+    long sequence = nextSequence.getAndIncrement();
+    entries.set(slot(sequence), new Entry(sequence, settingId));
+  }
+
+  /**
+   * @return the sequence number the next toggle will get, i.e. the position of a reader that is up-to-date
+   */
+  public long head() {
+    return nextSequence.get();
+  }
+
+  /**
+   * Read the toggles from the given cursor onwards and advance the cursor past them. Each toggle is
+   * returned exactly once per cursor, even when several threads read with the same cursor concurrently.
+   *
+   * @param cursor the reader's position in the log
+   * @return the setting IDs in the order they were toggled, empty if there are no new ones
+   */
+  public List<String> readFrom(AtomicLong cursor) {
+    while (true) {
+      long from = cursor.get();
+      long head = nextSequence.get();
+      List<String> settingIds = new ArrayList<>();
+      long position = Math.max(from, head - CAPACITY); // Entries that have been overwritten already are lost
+      while (position < head) {
+        Entry entry = entries.get(slot(position));
+        if (entry == null || entry.sequence < position) {
+          break; // Claimed by a writer, but not written yet. It'll be read with the next poll
+        }
+        if (entry.sequence == position) {
+          settingIds.add(entry.settingId);
+        }
+        position++;
+      }
+      if (position == from || cursor.compareAndSet(from, position)) {
+        return settingIds;
+      }
+      // Another thread read with the same cursor in the meantime, so try again from its new position
+    }
+  }
+
+  private static int slot(long sequence) {
+    return (int) (sequence % CAPACITY);
+  }
+
+  private static class Entry {
+    private final long sequence;
+    private final String settingId;
+
+    private Entry(long sequence, String settingId) {
+      this.sequence = sequence;
+      this.settingId = settingId;
+    }
+  }
+}
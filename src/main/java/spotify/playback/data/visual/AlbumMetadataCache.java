@@ -0,0 +1,113 @@
+package spotify.playback.data.visual;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Component;
+
+import spotify.playback.data.dto.sub.PlaybackContext;
+import spotify.playback.data.help.LowMemoryMode;
+import spotify.playback.data.help.TrackTable;
+import spotify.playback.metrics.PlaybackMetrics;
+import spotify.playback.metrics.PollTrace;
+
+/**
+ * Caches the metadata of the most recently played albums. Album metadata is the same for every
+ * account, so this is shared between all of them (see {@link spotify.playback.account.AccountRegistry}),
+ * and an album that was played by one account doesn't need to be fetched again for any other.
+ * <p>
+ * Only what's actually displayed is kept, not the album and tracks as returned by Spotify, which are
+ * several times larger and would otherwise stay on the heap for as long as the album is cached.
+ */
+@Component
+public class AlbumMetadataCache {
+  private static final int MAX_CACHED_ALBUMS = 64;
+  private static final int MAX_CACHED_ALBUMS_LOW_MEMORY = 8;
+
+  private final Map<String, AlbumMetadata> albums;
+  private final PlaybackMetrics playbackMetrics;
+
+  AlbumMetadataCache(PlaybackMetrics playbackMetrics, LowMemoryMode lowMemoryMode) {
+    this.playbackMetrics = playbackMetrics;
+    int maxCachedAlbums = lowMemoryMode.cacheSize(MAX_CACHED_ALBUMS, MAX_CACHED_ALBUMS_LOW_MEMORY);
+    this.albums = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, AlbumMetadata> eldest) {
+        return size() > maxCachedAlbums;
+      }
+    };
+  }
+
+  /**
+   * Get the metadata of the given album, loading it if it isn't cached yet.
+   *
+   * @param albumId the album ID
+   * @param loader the function to load the metadata with (executed outside the lock, so concurrent
+   *               first requests for the same album might both load it)
+   * @return the metadata
+   */
+  public AlbumMetadata getAlbum(String albumId, Function<String, AlbumMetadata> loader) {
+    synchronized (albums) {
+      AlbumMetadata cached = albums.get(albumId);
+      if (cached != null) {
+        playbackMetrics.recordCacheAccess("album-metadata", true);
+        return cached;
+      }
+    }
+    playbackMetrics.recordCacheAccess("album-metadata", false);
+    AlbumMetadata loaded = PollTrace.span("album-metadata", () -> loader.apply(albumId));
+    synchronized (albums) {
+      albums.put(albumId, loaded);
+    }
+    return loaded;
+  }
+
+  public static class AlbumMetadata {
+    private final String contextName;
+    private final PlaybackContext.Context.ContextType releaseType;
+    private final TrackTable listTracks;
+    private final String artistThumbnailUrl;
+
+    /**
+     * @param contextName the display name of the album (artist and album name)
+     * @param releaseType the release type (album, single, EP or compilation)
+     * @param listTracks the tracks, in the order of the album
+     * @param artistThumbnailUrl the image of the first artist
+     */
+    public AlbumMetadata(String contextName, PlaybackContext.Context.ContextType releaseType, TrackTable listTracks, String artistThumbnailUrl) {
+      this.contextName = contextName;
+      this.releaseType = releaseType;
+      this.listTracks = listTracks;
+      this.artistThumbnailUrl = artistThumbnailUrl;
+    }
+
+    public String getContextName() {
+      return contextName;
+    }
+
+    public PlaybackContext.Context.ContextType getReleaseType() {
+      return releaseType;
+    }
+
+    public TrackTable getListTracks() {
+      return listTracks;
+    }
+
+    public String getArtistThumbnailUrl() {
+      return artistThumbnailUrl;
+    }
+
+    /**
+     * @param trackId the track ID, may be null
+     * @return the index of the track on the album, -1 if it isn't part of it
+     */
+    public int indexOfTrack(String trackId) {
+      return listTracks.indexOfId(trackId);
+    }
+
+    public int getTotalDiscCount() {
+      return listTracks.isEmpty() ? 1 : listTracks.getMaxDiscNumber();
+    }
+  }
+}
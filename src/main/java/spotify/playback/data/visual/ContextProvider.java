@@ -11,6 +11,8 @@ import java.util.stream.Stream;
 
 import org.springframework.stereotype.Component;
 
+import com.neovisionaries.i18n.CountryCode;
+
 import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.enums.AlbumType;
 import se.michaelthelin.spotify.enums.CurrentlyPlayingType;
@@ -38,27 +40,43 @@ import spotify.playback.data.dto.sub.PlaybackContext;
 import spotify.playback.data.dto.sub.TrackElement;
 import spotify.playback.data.help.BigPictureConstants;
 import spotify.playback.data.help.BigPictureUtils;
+import spotify.playback.data.help.OutboundCallExecutors;
+import spotify.playback.data.help.TrackTable;
 import spotify.util.SpotifyUtils;
 import spotify.util.data.AlbumTrackPair;
 
 @Component
 public class ContextProvider {
+  private static final int SAVED_TRACKS_WINDOW_SIZE = 200;
+  private static final int SAVED_TRACKS_WINDOW_STEP = 50;
+
   private final SpotifyApi spotifyApi;
+  private final AlbumMetadataCache albumMetadataCache;
+  private final SavedTracksIndex savedTracksIndex;
+  private final OutboundCallExecutors outboundCallExecutors;
 
   private ModelObjectType previousType;
   private String previousSpotifyContext;
-  private Album currentContextAlbum;
-  private List<TrackSimplified> currentContextAlbumTracks;
-  private List<TrackElement> listTracks;
+  private AlbumMetadataCache.AlbumMetadata currentContextAlbum;
+  private TrackTable listTracks;
+  private int previousPlaylistTrackIndex;
+  private int previousSavedTrackIndex;
+  private TrackTable savedTracksWindowSource;
+  private int savedTracksWindowFromIndex;
+  private String userId;
+  private CountryCode market;
   private Integer currentlyPlayingAlbumTrackNumber;
   private Integer currentlyPlayingAlbumTrackDiscNumber;
   private Integer trackCount;
   private Long totalTrackDuration;
   private String thumbnailUrl;
 
-  ContextProvider(SpotifyApi spotifyApi) {
+  ContextProvider(SpotifyApi spotifyApi, AlbumMetadataCache albumMetadataCache, SavedTracksIndex savedTracksIndex, OutboundCallExecutors outboundCallExecutors) {
     this.spotifyApi = spotifyApi;
-    this.listTracks = new ArrayList<>();
+    this.albumMetadataCache = albumMetadataCache;
+    this.savedTracksIndex = savedTracksIndex;
+    this.outboundCallExecutors = outboundCallExecutors;
+    this.listTracks = TrackTable.empty();
   }
 
   /**
@@ -93,6 +111,7 @@ public class ContextProvider {
               break;
             case USER:
               contextDto = getUserFavoriteTracksContext(context, force);
+              updateSavedTracksWindow(info);
               break;
           }
         }
@@ -112,10 +131,24 @@ public class ContextProvider {
     }
   }
 
-  public List<TrackElement> getListTracks() {
+  public TrackTable getListTracks() {
     return listTracks;
   }
 
+  /**
+   * @return all indexed tracks of the favorite tracks context, of which {@link #getListTracks()} is only a window
+   */
+  public TrackTable getSavedTracks() {
+    return savedTracksIndex.getTracks();
+  }
+
+  /**
+   * @return true if {@link #getSavedTracks()} contains every saved track
+   */
+  public boolean isSavedTracksComplete() {
+    return savedTracksIndex.isComplete();
+  }
+
   public Integer getCurrentlyPlayingAlbumTrackNumber() {
     return currentlyPlayingAlbumTrackNumber;
   }
@@ -125,7 +158,7 @@ public class ContextProvider {
   }
 
   public Integer getTotalDiscCount() {
-    return currentContextAlbumTracks.stream().mapToInt(TrackSimplified::getDiscNumber).max().orElse(1);
+    return currentContextAlbum.getTotalDiscCount();
   }
 
   public Integer getTrackCount() {
@@ -144,24 +177,20 @@ public class ContextProvider {
     this.trackCount = trackCount;
   }
 
-  private void calculateAndSetTotalTrackDuration(List<TrackElement> listTracks) {
-    this.totalTrackDuration = listTracks.stream().mapToLong(TrackElement::getTimeTotal).sum();
+  private void setTotalTrackDuration(long totalTrackDuration) {
+    this.totalTrackDuration = totalTrackDuration;
   }
 
   public Integer getCurrentlyPlayingPlaylistTrackNumber(CurrentlyPlayingContext context) {
     int trackIndex = -1;
     if (context.getItem() != null && context.getItem().getId() != null) {
-      String id = context.getItem().getId();
-      trackIndex = IntStream.range(0, listTracks.size())
-        .filter(i -> id.equals(listTracks.get(i).getId()))
-        .findFirst()
-        .orElse(-1);
-      if (trackIndex < 0 && context.getItem() != null && context.getItem() instanceof Episode) {
-        Episode episode = (Episode) context.getItem();
-        trackIndex = IntStream.range(0, listTracks.size())
-          .filter(i -> listTracks.get(i).getTitle().contains(episode.getName()))
-          .findFirst()
-          .orElse(-1);
+      // Called several times per poll and the track rarely changes, so start looking where it was found the last time
+      trackIndex = listTracks.indexOfId(context.getItem().getId(), previousPlaylistTrackIndex);
+      if (trackIndex < 0 && context.getItem() instanceof Episode) {
+        trackIndex = listTracks.indexOfTitleContaining(context.getItem().getName());
+      }
+      if (trackIndex >= 0) {
+        previousPlaylistTrackIndex = trackIndex;
       }
     }
     return trackIndex + 1;
@@ -170,16 +199,21 @@ public class ContextProvider {
   private PlaybackContext.Context getArtistContext(Context context, boolean force) {
     if (force || didContextChange(context)) {
       String artistId = context.getHref().replace(BigPictureConstants.ARTIST_PREFIX, "");
-      Artist contextArtist = SpotifyCall.execute(spotifyApi.getArtist(artistId));
+      Artist contextArtist = outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getArtist(artistId)));
 
       Image[] artistImages = contextArtist.getImages();
       String largestImage = SpotifyUtils.findLargestImage(artistImages);
       this.thumbnailUrl = largestImage != null ? largestImage : BigPictureConstants.BLANK;
 
-      this.listTracks = List.of();
+      CountryCode market = getMarket();
+      Track[] topTracks = outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getArtistsTopTracks(artistId, market)));
+      this.listTracks = TrackTable.of(IntStream.range(0, topTracks.length)
+        .mapToObj(i -> TrackElement.fromPlaylistItem(topTracks[i]).withTrackNumber(i + 1))
+        .collect(Collectors.toList()));
 
+      // The follower count is shown instead of a track count for artists, so no total time either
       setTrackCount(contextArtist.getFollowers().getTotal());
-      calculateAndSetTotalTrackDuration(List.of());
+      setTotalTrackDuration(0);
 
       return PlaybackContext.Context.of(contextArtist.getName(), PlaybackContext.Context.ContextType.ARTIST);
     }
@@ -189,7 +223,7 @@ public class ContextProvider {
   private PlaybackContext.Context getPlaylistContext(Context context, boolean force) throws MalformedURLException {
     if (force || didContextChange(context)) {
       String playlistId = SpotifyUtils.getIdFromSpotifyUrl(context.getHref());
-      Playlist contextPlaylist = SpotifyCall.execute(spotifyApi.getPlaylist(playlistId));
+      Playlist contextPlaylist = outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getPlaylist(playlistId)));
 
       Image[] playlistImages = contextPlaylist.getImages();
       String largestImage = SpotifyUtils.findLargestImage(playlistImages);
@@ -199,21 +233,17 @@ public class ContextProvider {
       Paging<PlaylistTrack> contextTracks = contextPlaylist.getTracks();
       List<PlaylistTrack> playlistTracks = new ArrayList<>(Arrays.asList(contextTracks.getItems()));
       if (contextTracks.getNext() != null) {
-        PlaylistTrack[] secondHalf = SpotifyCall.execute(spotifyApi.getPlaylistsItems(playlistId).offset(playlistTracks.size())).getItems();
+        PlaylistTrack[] secondHalf = outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getPlaylistsItems(playlistId).offset(playlistTracks.size()))).getItems();
         playlistTracks.addAll(Arrays.asList(secondHalf));
 
       }
-      this.listTracks = playlistTracks.stream()
-        .map(PlaylistTrack::getTrack)
-        .map(TrackElement::fromPlaylistItem)
-        .collect(Collectors.toList());
-      for (int i = 1; i <= listTracks.size(); i++) {
-        this.listTracks.get(i - 1).setTrackNumber(i);
-      }
+      this.listTracks = TrackTable.of(IntStream.range(0, playlistTracks.size())
+        .mapToObj(i -> TrackElement.fromPlaylistItem(playlistTracks.get(i).getTrack()).withTrackNumber(i + 1))
+        .collect(Collectors.toList()));
 
       Integer realTrackCount = contextPlaylist.getTracks().getTotal();
       setTrackCount(realTrackCount);
-      calculateAndSetTotalTrackDuration(realTrackCount <= this.listTracks.size() ? this.listTracks : List.of());
+      setTotalTrackDuration(realTrackCount <= this.listTracks.size() ? this.listTracks.getTotalTime() : 0);
 
       return PlaybackContext.Context.of(contextPlaylist.getName(), PlaybackContext.Context.ContextType.PLAYLIST);
     }
@@ -230,44 +260,21 @@ public class ContextProvider {
     albumId = SpotifyUtils.getIdFromUri(context.getUri());
 
     if (force || didContextChange(context)) {
-      currentContextAlbum = SpotifyCall.execute(spotifyApi.getAlbum(albumId));
-      currentContextAlbumTracks = Arrays.asList(currentContextAlbum.getTracks().getItems());
-
-      if (currentContextAlbum.getTracks().getNext() != null) {
-        List<TrackSimplified> c = SpotifyCall.executePaging(spotifyApi.getAlbumsTracks(albumId).offset(currentContextAlbumTracks.size()));
-        currentContextAlbumTracks = Stream.concat(currentContextAlbumTracks.stream(), c.stream()).collect(Collectors.toList());
-      }
-
-      this.thumbnailUrl = Arrays.stream(currentContextAlbum.getArtists())
-        .findFirst()
-        .map(ArtistSimplified::getId)
-        .map(id -> SpotifyCall.execute(spotifyApi.getArtist(id)))
-        .map(Artist::getImages)
-        .map(SpotifyUtils::findSmallestImage)
-        .orElse(BigPictureConstants.BLANK);
-
-      this.listTracks = currentContextAlbumTracks.stream()
-        .map(trackSimplified -> TrackElement.fromTrackSimplified(trackSimplified, currentContextAlbum))
-        .collect(Collectors.toList());
+      currentContextAlbum = albumMetadataCache.getAlbum(albumId, this::loadAlbumMetadata);
+      this.thumbnailUrl = currentContextAlbum.getArtistThumbnailUrl();
+      this.listTracks = currentContextAlbum.getListTracks();
 
       setTrackCount(this.listTracks.size());
-      calculateAndSetTotalTrackDuration(this.listTracks);
+      setTotalTrackDuration(this.listTracks.getTotalTime());
     }
-    String contextString = String.format("%s \u2022 %s", SpotifyUtils.getFirstArtistName(currentContextAlbum), currentContextAlbum.getName());
-    if (currentContextAlbumTracks != null && track != null) {
+    String contextString = currentContextAlbum.getContextName();
+    if (track != null) {
       // Track number (unfortunately, can't simply use track numbers because of disc numbers)
-      final String trackId = track.getId();
-      TrackSimplified currentTrack = currentContextAlbumTracks.stream()
-        .filter(t -> t.getId().equals(trackId))
-        .findFirst()
-        .orElse(null);
-
-      if (currentTrack != null) {
-        this.currentlyPlayingAlbumTrackNumber = currentContextAlbumTracks.indexOf(currentTrack) + 1;
-        this.currentlyPlayingAlbumTrackDiscNumber = currentTrack.getDiscNumber();
-        if (this.currentlyPlayingAlbumTrackNumber > 0) {
-          return PlaybackContext.Context.of(contextString, getReleaseTypeContextType());
-        }
+      int trackIndex = currentContextAlbum.indexOfTrack(track.getId());
+      if (trackIndex >= 0) {
+        this.currentlyPlayingAlbumTrackNumber = trackIndex + 1;
+        this.currentlyPlayingAlbumTrackDiscNumber = currentContextAlbum.getListTracks().getDiscNumber(trackIndex);
+        return PlaybackContext.Context.of(contextString, currentContextAlbum.getReleaseType());
       }
     }
 
@@ -275,6 +282,33 @@ public class ContextProvider {
     return PlaybackContext.Context.of(contextString, PlaybackContext.Context.ContextType.QUEUE_IN_ALBUM);
   }
 
+  private AlbumMetadataCache.AlbumMetadata loadAlbumMetadata(String albumId) {
+    Album album = outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getAlbum(albumId)));
+    List<TrackSimplified> albumTracks = Arrays.asList(album.getTracks().getItems());
+
+    if (album.getTracks().getNext() != null) {
+      int offset = albumTracks.size();
+      List<TrackSimplified> c = outboundCallExecutors.callSpotify(() -> SpotifyCall.executePaging(spotifyApi.getAlbumsTracks(albumId).offset(offset)));
+      albumTracks = Stream.concat(albumTracks.stream(), c.stream()).collect(Collectors.toList());
+    }
+
+    String artistThumbnailUrl = Arrays.stream(album.getArtists())
+      .findFirst()
+      .map(ArtistSimplified::getId)
+      .map(id -> outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getArtist(id))))
+      .map(Artist::getImages)
+      .map(SpotifyUtils::findSmallestImage)
+      .orElse(BigPictureConstants.BLANK);
+
+    TrackTable albumListTracks = TrackTable.of(albumTracks.stream()
+      .map(trackSimplified -> TrackElement.fromTrackSimplified(trackSimplified, album))
+      .collect(Collectors.toList()));
+
+    // Only the converted metadata is cached, the album and its tracks can be released right away
+    String contextName = String.format("%s \u2022 %s", SpotifyUtils.getFirstArtistName(album), album.getName());
+    return new AlbumMetadataCache.AlbumMetadata(contextName, getReleaseTypeContextType(album, albumTracks), albumListTracks, artistThumbnailUrl);
+  }
+
   private PlaybackContext.Context getPodcastContext(CurrentlyPlayingContext info, boolean force) {
     if (info.getItem() instanceof Episode) {
       Episode episode = (Episode) info.getItem();
@@ -284,9 +318,9 @@ public class ContextProvider {
         String largestImage = SpotifyUtils.findLargestImage(artistImages);
         this.thumbnailUrl = largestImage != null ? largestImage : BigPictureConstants.BLANK;
 
-        Show show = SpotifyCall.execute(spotifyApi.getShow(showSimplified.getId()));
+        Show show = outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getShow(showSimplified.getId())));
         setTrackCount(show.getEpisodes().getTotal());
-        calculateAndSetTotalTrackDuration(List.of());
+        setTotalTrackDuration(0);
 
         return PlaybackContext.Context.of(show.getName(), PlaybackContext.Context.ContextType.PODCAST);
       }
@@ -296,24 +330,63 @@ public class ContextProvider {
 
   private PlaybackContext.Context getUserFavoriteTracksContext(Context context, boolean force) {
     if (force || didContextChange(context)) {
-      Paging<SavedTrack> usersSavedTracks = SpotifyCall.execute(spotifyApi.getUsersSavedTracks());
+      Paging<SavedTrack> usersSavedTracks = outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getUsersSavedTracks()));
 
-      User user = SpotifyCall.execute(spotifyApi.getCurrentUsersProfile());
+      User user = outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getCurrentUsersProfile()));
+      this.userId = user.getId();
+      savedTracksIndex.refresh(userId);
 
       Image[] artistImages = user.getImages();
       String largestImage = SpotifyUtils.findLargestImage(artistImages);
       this.thumbnailUrl = largestImage != null ? largestImage : BigPictureConstants.BLANK;
 
-      this.listTracks = List.of();
+      this.listTracks = TrackTable.empty();
 
       setTrackCount(usersSavedTracks.getTotal());
-      calculateAndSetTotalTrackDuration(List.of());
+      setTotalTrackDuration(0);
 
       return PlaybackContext.Context.of(user.getDisplayName(), PlaybackContext.Context.ContextType.FAVORITE_TRACKS);
     }
     return null;
   }
 
+  /**
+   * Set the track list to the window of the saved tracks index around the current track. The window
+   * only moves every few tracks, so the same instance (and its cached hash code and JSON) is passed on
+   * for most polls. Both the lookup and the window are constant time while the context is played in order.
+   */
+  private void updateSavedTracksWindow(CurrentlyPlayingContext info) {
+    TrackTable savedTracks = savedTracksIndex.getTracks();
+    int index = info.getItem() != null ? savedTracks.indexOfId(info.getItem().getId(), previousSavedTrackIndex) : -1;
+    if (index < 0) {
+      this.listTracks = TrackTable.empty();
+      if (userId != null) {
+        savedTracksIndex.refreshIfStale(userId);
+      }
+      return;
+    }
+    previousSavedTrackIndex = index;
+
+    int fromIndex = Math.max(0, Math.min((index / SAVED_TRACKS_WINDOW_STEP - 1) * SAVED_TRACKS_WINDOW_STEP, savedTracks.size() - SAVED_TRACKS_WINDOW_SIZE));
+    if (listTracks.isEmpty() || savedTracks != savedTracksWindowSource || fromIndex != savedTracksWindowFromIndex) {
+      this.listTracks = savedTracks.subList(fromIndex, Math.min(savedTracks.size(), fromIndex + SAVED_TRACKS_WINDOW_SIZE));
+      this.savedTracksWindowSource = savedTracks;
+      this.savedTracksWindowFromIndex = fromIndex;
+    }
+    if (savedTracksIndex.isComplete()) {
+      setTrackCount(savedTracks.size());
+      setTotalTrackDuration(savedTracks.getTotalTime());
+    }
+  }
+
+  private CountryCode getMarket() {
+    if (market == null) {
+      CountryCode country = outboundCallExecutors.callSpotify(() -> SpotifyCall.execute(spotifyApi.getCurrentUsersProfile())).getCountry();
+      this.market = country != null ? country : CountryCode.US;
+    }
+    return market;
+  }
+
   private PlaybackContext.Context getFallbackContext(CurrentlyPlayingContext info) {
     if (info.getItem() != null && info.getItem() instanceof Track) {
       Track track = (Track) info.getItem();
@@ -321,23 +394,23 @@ public class ContextProvider {
       String smallestImage = SpotifyUtils.findSmallestImage(trackImages);
       this.thumbnailUrl = smallestImage != null ? smallestImage : BigPictureConstants.BLANK;
 
-      this.listTracks = List.of(TrackElement.fromPlaylistItem(track));
+      this.listTracks = TrackTable.of(List.of(TrackElement.fromPlaylistItem(track)));
       setTrackCount(this.listTracks.size());
-      calculateAndSetTotalTrackDuration(this.listTracks);
+      setTotalTrackDuration(this.listTracks.getTotalTime());
 
       return PlaybackContext.Context.of(SpotifyUtils.getFirstArtistName(track) + " \u2022 " + track.getName(), PlaybackContext.Context.ContextType.SEARCH);
     }
     return PlaybackContext.Context.of("Spotify", PlaybackContext.Context.ContextType.FALLBACK);
   }
 
-  private PlaybackContext.Context.ContextType getReleaseTypeContextType() {
-    if (currentContextAlbum.getAlbumType() == AlbumType.SINGLE) {
-      AlbumTrackPair atp = AlbumTrackPair.of(SpotifyUtils.asAlbumSimplified(currentContextAlbum), currentContextAlbumTracks);
+  private PlaybackContext.Context.ContextType getReleaseTypeContextType(Album album, List<TrackSimplified> albumTracks) {
+    if (album.getAlbumType() == AlbumType.SINGLE) {
+      AlbumTrackPair atp = AlbumTrackPair.of(SpotifyUtils.asAlbumSimplified(album), albumTracks);
       if (SpotifyUtils.isExtendedPlay(atp)) {
         return PlaybackContext.Context.ContextType.EP;
       }
     }
-    return PlaybackContext.Context.ContextType.valueOf(currentContextAlbum.getAlbumType().toString());
+    return PlaybackContext.Context.ContextType.valueOf(album.getAlbumType().toString());
   }
 
   private boolean didContextChange(Context context) {
@@ -0,0 +1,360 @@
+package spotify.playback.data.visual;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.stereotype.Component;
+
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.model_objects.specification.Paging;
+import se.michaelthelin.spotify.model_objects.specification.SavedTrack;
+import spotify.api.SpotifyCall;
+import spotify.playback.data.dto.sub.TrackElement;
+import spotify.playback.data.help.OutboundCallExecutors;
+import spotify.playback.data.help.TrackTable;
+
+/**
+ * An index of the user's saved tracks ("Liked Songs"), so that the favorite tracks context can show a
+ * track list and the position of the current track, even for libraries with thousands of tracks.
+ * <p>
+ * The index is built in the background, fetching a few pages at once in its own small thread pool, so that
+ * it never takes up the threads that the polling needs for its Spotify calls. Failed pages are retried after
+ * a short delay. Every batch of pages is appended to a file in the working directory right
+ * away (one per user), so an interrupted indexing resumes where it stopped and a restart doesn't have to
+ * start over. Once complete, a refresh only fetches the tracks saved since the newest indexed one (saved
+ * tracks are sorted by the time they were saved, newest first). Removed tracks can only be detected by the
+ * total count shrinking, in which case everything is indexed again.
+ * <p>
+ * The track number of every track is its position in the library.
+ */
+@Component
+public class SavedTracksIndex {
+  private static final String SAVED_TRACKS_DIRECTORY = "saved_tracks";
+  private static final int PAGE_SIZE = 50;
+  private static final int PARALLEL_PAGES = 2;
+  private static final int PAGE_ATTEMPTS = 3;
+  private static final long PAGE_RETRY_DELAY_MS = 2 * 1000;
+  private static final long MIN_REFRESH_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+  private static final String SEPARATOR = "\t";
+
+  private final SpotifyApi spotifyApi;
+  private final OutboundCallExecutors outboundCallExecutors;
+  private final ExecutorService indexExecutor;
+  private final ExecutorService pageExecutor;
+  private final AtomicBoolean refreshing;
+
+  private volatile TrackTable tracks;
+  private volatile boolean complete;
+  private volatile long lastRefresh;
+  private String userId;
+  private TrackTable.Builder builder;
+  private long newestSavedAt;
+
+  private final Logger logger = Logger.getLogger(SavedTracksIndex.class.getName());
+
+  SavedTracksIndex(SpotifyApi spotifyApi, OutboundCallExecutors outboundCallExecutors) {
+    this.spotifyApi = spotifyApi;
+    this.outboundCallExecutors = outboundCallExecutors;
+    this.indexExecutor = Executors.newSingleThreadExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "saved-tracks-index");
+      thread.setDaemon(true);
+      return thread;
+    });
+    ThreadPoolExecutor pageExecutor = new ThreadPoolExecutor(PARALLEL_PAGES, PARALLEL_PAGES, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+      Thread thread = new Thread(runnable, "saved-tracks-page");
+      thread.setDaemon(true);
+      return thread;
+    });
+    pageExecutor.allowCoreThreadTimeOut(true);
+    this.pageExecutor = pageExecutor;
+    this.refreshing = new AtomicBoolean();
+    this.tracks = TrackTable.empty();
+    this.builder = new TrackTable.Builder();
+  }
+
+  @PreDestroy
+  void shutdown() {
+    indexExecutor.shutdownNow();
+    pageExecutor.shutdownNow();
+  }
+
+  /**
+   * @return the tracks indexed so far, newest first (possibly incomplete while the index is being built)
+   */
+  public TrackTable getTracks() {
+    return tracks;
+  }
+
+  /**
+   * @return true if every saved track was indexed by the latest refresh
+   */
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Bring the index up to date in the background, unless that's being done already.
+   *
+   * @param userId the ID of the user, to tell apart the indexes of different users
+   */
+  public void refresh(String userId) {
+    if (refreshing.compareAndSet(false, true)) {
+      lastRefresh = System.currentTimeMillis();
+      indexExecutor.execute(() -> {
+        try {
+          index(userId);
+        } catch (RuntimeException e) {
+          // Whatever has been indexed up until now is kept, the next refresh continues from there
+          logger.warning("Failed to index the saved tracks: " + e.getMessage());
+        } finally {
+          refreshing.set(false);
+        }
+      });
+    }
+  }
+
+  /**
+   * Same as {@link #refresh(String)}, but only if the latest refresh has been a while ago. Meant for
+   * when a track isn't found in the index, which is most likely because it has just been saved.
+   *
+   * @param userId the ID of the user
+   */
+  public void refreshIfStale(String userId) {
+    if (System.currentTimeMillis() - lastRefresh > MIN_REFRESH_INTERVAL_MS) {
+      refresh(userId);
+    }
+  }
+
+  private void index(String userId) {
+    long start = System.currentTimeMillis();
+    if (!userId.equals(this.userId)) {
+      this.userId = userId;
+      readFromDisk();
+    }
+
+    Paging<SavedTrack> firstPage = fetchPage(0);
+    int total = firstPage.getTotal();
+    Set<String> indexedIds = new HashSet<>();
+    for (int i = 0; i < tracks.size(); i++) {
+      indexedIds.add(tracks.getId(i));
+    }
+
+    if (!indexedIds.isEmpty()) {
+      List<SavedTrack> newlySaved = findNewlySavedTracks(firstPage, indexedIds);
+      if (!newlySaved.isEmpty()) {
+        prepend(newlySaved, indexedIds);
+      }
+      if (tracks.size() > total) {
+        logger.info("Saved tracks have been removed, indexing all of them again");
+        reset();
+        indexedIds.clear();
+      }
+    }
+    complete = tracks.size() >= total;
+    if (!complete) {
+      appendPages(tracks.size(), total, indexedIds);
+      complete = true;
+      logger.info("Indexed " + tracks.size() + " saved tracks in " + (System.currentTimeMillis() - start) + "ms");
+    }
+  }
+
+  /**
+   * Go through the newest saved tracks until reaching the first one that is indexed already
+   * (or that was saved before the newest indexed one).
+   */
+  private List<SavedTrack> findNewlySavedTracks(Paging<SavedTrack> firstPage, Set<String> indexedIds) {
+    List<SavedTrack> newlySaved = new ArrayList<>();
+    Paging<SavedTrack> page = firstPage;
+    int offset = 0;
+    while (true) {
+      for (SavedTrack savedTrack : page.getItems()) {
+        if (savedTrack.getTrack() == null || savedTrack.getTrack().getId() == null) {
+          continue;
+        }
+        if (indexedIds.contains(savedTrack.getTrack().getId()) || savedAt(savedTrack) < newestSavedAt) {
+          return newlySaved;
+        }
+        newlySaved.add(savedTrack);
+      }
+      if (page.getNext() == null) {
+        return newlySaved;
+      }
+      offset += PAGE_SIZE;
+      page = fetchPage(offset);
+    }
+  }
+
+  private void appendPages(int fromOffset, int total, Set<String> indexedIds) {
+    for (int offset = fromOffset; offset < total; offset += PAGE_SIZE * PARALLEL_PAGES) {
+      List<CompletableFuture<Paging<SavedTrack>>> pages = new ArrayList<>();
+      for (int pageOffset = offset; pageOffset < Math.min(total, offset + PAGE_SIZE * PARALLEL_PAGES); pageOffset += PAGE_SIZE) {
+        int o = pageOffset;
+        pages.add(CompletableFuture.supplyAsync(() -> fetchPage(o), pageExecutor));
+      }
+      List<SavedTrack> savedTracks = new ArrayList<>();
+      try {
+        for (CompletableFuture<Paging<SavedTrack>> page : pages) {
+          savedTracks.addAll(Arrays.asList(page.join().getItems()));
+        }
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+
+      List<String> lines = new ArrayList<>();
+      for (SavedTrack savedTrack : savedTracks) {
+        if (savedTrack.getTrack() != null && savedTrack.getTrack().getId() != null && indexedIds.add(savedTrack.getTrack().getId())) {
+          TrackElement track = TrackElement.fromPlaylistItem(savedTrack.getTrack());
+          if (builder.size() == 0) {
+            newestSavedAt = savedAt(savedTrack);
+          }
+          builder.add(track.withTrackNumber(builder.size() + 1));
+          lines.add(toLine(savedAt(savedTrack), track));
+        }
+      }
+      appendToDisk(lines);
+      tracks = builder.build();
+    }
+  }
+
+  private void prepend(List<SavedTrack> newlySaved, Set<String> indexedIds) {
+    TrackTable.Builder prepended = new TrackTable.Builder();
+    List<String> lines = new ArrayList<>();
+    for (SavedTrack savedTrack : newlySaved) {
+      if (indexedIds.add(savedTrack.getTrack().getId())) {
+        TrackElement track = TrackElement.fromPlaylistItem(savedTrack.getTrack());
+        prepended.add(track.withTrackNumber(prepended.size() + 1));
+        lines.add(toLine(savedAt(savedTrack), track));
+      }
+    }
+    for (TrackElement track : tracks) {
+      prepended.add(track.withTrackNumber(prepended.size() + 1));
+    }
+    newestSavedAt = savedAt(newlySaved.get(0));
+    prependToDisk(lines);
+    builder = prepended;
+    tracks = builder.build();
+  }
+
+  private void reset() {
+    builder = new TrackTable.Builder();
+    tracks = TrackTable.empty();
+    newestSavedAt = 0;
+    try {
+      Files.deleteIfExists(getFile());
+    } catch (IOException e) {
+      logger.warning("Failed to delete the saved tracks index " + getFile() + ": " + e.getMessage());
+    }
+  }
+
+  private Paging<SavedTrack> fetchPage(int offset) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return outboundCallExecutors.timeSpotify(() -> SpotifyCall.execute(spotifyApi.getUsersSavedTracks().limit(PAGE_SIZE).offset(offset)));
+      } catch (RuntimeException e) {
+        if (attempt >= PAGE_ATTEMPTS) {
+          throw e;
+        }
+        logger.info("Failed to fetch the saved tracks at offset " + offset + ", retrying: " + e.getMessage());
+        try {
+          Thread.sleep(PAGE_RETRY_DELAY_MS * attempt);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  private static long savedAt(SavedTrack savedTrack) {
+    return Optional.ofNullable(savedTrack.getAddedAt()).map(Date::getTime).orElse(0L);
+  }
+
+  //////////////////
+  // Persistence: one line per track (saved at, ID, duration, disc number, title, album, release date, artists...)
+
+  private void readFromDisk() {
+    builder = new TrackTable.Builder();
+    tracks = TrackTable.empty();
+    newestSavedAt = 0;
+    Path file = getFile();
+    if (Files.isReadable(file)) {
+      try {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        for (String line : lines) {
+          String[] values = line.split(SEPARATOR, -1);
+          if (builder.size() == 0) {
+            newestSavedAt = Long.parseLong(values[0]);
+          }
+          List<String> artists = List.of(Arrays.copyOfRange(values, 7, values.length));
+          builder.add(new TrackElement(values[1], builder.size() + 1, Integer.parseInt(values[3]), artists, values[4], values[5], values[6], "", Integer.parseInt(values[2])));
+        }
+        tracks = builder.build();
+      } catch (IOException | RuntimeException e) {
+        logger.warning("Failed to read the saved tracks index " + file + ", indexing all tracks again: " + e.getMessage());
+        reset();
+      }
+    }
+  }
+
+  private void appendToDisk(List<String> lines) {
+    try {
+      Files.createDirectories(getFile().getParent());
+      Files.write(getFile(), lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    } catch (IOException e) {
+      logger.warning("Failed to write the saved tracks index " + getFile() + ": " + e.getMessage());
+    }
+  }
+
+  private void prependToDisk(List<String> lines) {
+    Path file = getFile();
+    Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+    try {
+      List<String> allLines = new ArrayList<>(lines);
+      if (Files.isReadable(file)) {
+        allLines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+      }
+      Files.createDirectories(file.getParent());
+      Files.write(tempFile, allLines, StandardCharsets.UTF_8);
+      Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      logger.warning("Failed to write the saved tracks index " + file + ": " + e.getMessage());
+    }
+  }
+
+  private Path getFile() {
+    return Path.of(SAVED_TRACKS_DIRECTORY, userId.replaceAll("[^A-Za-z0-9._-]", "_") + ".tsv");
+  }
+
+  private static String toLine(long savedAt, TrackElement track) {
+    List<String> values = new ArrayList<>(List.of(Long.toString(savedAt), track.getId(), Integer.toString(track.getTimeTotal()), Integer.toString(track.getDiscNumber()),
+      sanitize(track.getTitle()), sanitize(track.getAlbum()), sanitize(track.getReleaseDate())));
+    track.getArtists().stream().map(SavedTracksIndex::sanitize).forEach(values::add);
+    return String.join(SEPARATOR, values);
+  }
+
+  private static String sanitize(String value) {
+    return value != null ? value.replaceAll("[\\t\\r\\n]", " ") : "";
+  }
+}
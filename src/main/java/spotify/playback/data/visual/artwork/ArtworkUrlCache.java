@@ -1,34 +1,59 @@
 package spotify.playback.data.visual.artwork;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import se.michaelthelin.spotify.model_objects.IPlaylistItem;
 import spotify.playback.data.help.BigPictureConstants;
+import spotify.playback.data.help.LowMemoryMode;
+import spotify.playback.data.help.OutboundCallExecutors;
 import spotify.playback.data.visual.artwork.service.ArtworkUrlProvider;
 import spotify.playback.data.visual.artwork.service.DictionaryArtworkUrlProvider;
 import spotify.playback.data.visual.artwork.service.LastFmArtworkUrlProvider;
 import spotify.playback.data.visual.artwork.service.SpotifyArtworkUrlProvider;
+import spotify.playback.metrics.PlaybackMetrics;
 
 @Component
 public class ArtworkUrlCache {
+  private static final int MAX_CACHED_URLS = 4096;
+  private static final int MAX_CACHED_URLS_LOW_MEMORY = 256;
+  private static final int MAX_LOOKUPS_IN_FLIGHT = 64;
 
   private final DictionaryArtworkUrlProvider dictionaryArtworkUrlProvider;
   private final SpotifyArtworkUrlProvider spotifyArtworkUrlProvider;
   private final LastFmArtworkUrlProvider lastFmArtworkUrlProvider;
+  private final OutboundCallExecutors outboundCallExecutors;
+  private final PlaybackMetrics playbackMetrics;
 
-  private final Map<IPlaylistItem, String> artworkUrlCache;
+  // Keyed by URI, so that the items themselves (which include the full album and artists) don't stay on the heap
+  private final Map<String, String> artworkUrlCache;
+  private final Map<String, CompletableFuture<Optional<String>>> lastFmLookupsInFlight;
 
-  public ArtworkUrlCache(DictionaryArtworkUrlProvider dictionaryArtworkUrlProvider, SpotifyArtworkUrlProvider spotifyArtworkUrlProvider, LastFmArtworkUrlProvider lastFmArtworkUrlProvider) {
+  public ArtworkUrlCache(DictionaryArtworkUrlProvider dictionaryArtworkUrlProvider, SpotifyArtworkUrlProvider spotifyArtworkUrlProvider, @Lazy LastFmArtworkUrlProvider lastFmArtworkUrlProvider, OutboundCallExecutors outboundCallExecutors, PlaybackMetrics playbackMetrics, LowMemoryMode lowMemoryMode) {
     this.dictionaryArtworkUrlProvider = dictionaryArtworkUrlProvider;
     this.spotifyArtworkUrlProvider = spotifyArtworkUrlProvider;
     this.lastFmArtworkUrlProvider = lastFmArtworkUrlProvider;
+    this.outboundCallExecutors = outboundCallExecutors;
+    this.playbackMetrics = playbackMetrics;
 
-    this.artworkUrlCache = new ConcurrentHashMap<>();
+    int maxCachedUrls = lowMemoryMode.cacheSize(MAX_CACHED_URLS, MAX_CACHED_URLS_LOW_MEMORY);
+    this.artworkUrlCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+        return size() > maxCachedUrls;
+      }
+    });
+    this.lastFmLookupsInFlight = new ConcurrentHashMap<>();
   }
 
   /**
@@ -40,19 +65,46 @@ public class ArtworkUrlCache {
    * @return the URL, empty string if none was found
    */
   public String findArtworkUrl(IPlaylistItem item) {
-    if (!artworkUrlCache.containsKey(item)) {
-      artworkUrlCache.put(item, getUrlForPlaylistItem(item));
+    String cacheKey = item.getUri() != null ? item.getUri() : item.getName();
+    String cachedUrl = artworkUrlCache.get(cacheKey);
+    playbackMetrics.recordCacheAccess("artwork-url", cachedUrl != null);
+    if (cachedUrl == null) {
+      Optional<String> url = getUrlForPlaylistItem(cacheKey, item);
+      if (url.isEmpty()) {
+        // Lookup is still running, its result is picked up with a later poll
+        return BigPictureConstants.BLANK;
+      }
+      cachedUrl = url.get();
+      artworkUrlCache.put(cacheKey, cachedUrl);
     }
-    return artworkUrlCache.get(item);
+    return cachedUrl;
   }
 
-  private String getUrlForPlaylistItem(IPlaylistItem item) {
-    for (ArtworkUrlProvider artworkUrlProvider : List.of(dictionaryArtworkUrlProvider, spotifyArtworkUrlProvider, lastFmArtworkUrlProvider)) {
+  private Optional<String> getUrlForPlaylistItem(String cacheKey, IPlaylistItem item) {
+    for (ArtworkUrlProvider artworkUrlProvider : List.of(dictionaryArtworkUrlProvider, spotifyArtworkUrlProvider)) {
       Optional<String> imageUrlFromItem = artworkUrlProvider.getImageUrlFromItem(item);
       if (imageUrlFromItem.isPresent()) {
-        return imageUrlFromItem.get();
+        return imageUrlFromItem;
       }
     }
-    return BigPictureConstants.BLANK;
+
+    // Last.fm is the only provider that requires an external call, so it's done in its own thread pool
+    // and the poll never waits for it
+    if (lastFmLookupsInFlight.size() > MAX_LOOKUPS_IN_FLIGHT) {
+      // Results of tracks that were skipped before the lookup finished are never picked up
+      lastFmLookupsInFlight.values().removeIf(CompletableFuture::isDone);
+    }
+    CompletableFuture<Optional<String>> lastFmLookup = lastFmLookupsInFlight.computeIfAbsent(cacheKey, key ->
+      outboundCallExecutors.supplyLastFm(() -> lastFmArtworkUrlProvider.getImageUrlFromItem(item)));
+    if (!lastFmLookup.isDone()) {
+      return Optional.empty();
+    }
+    lastFmLookupsInFlight.remove(cacheKey, lastFmLookup);
+    try {
+      return Optional.of(lastFmLookup.join().orElse(BigPictureConstants.BLANK));
+    } catch (CompletionException | CancellationException e) {
+      e.printStackTrace();
+      return Optional.empty();
+    }
   }
 }
@@ -6,6 +6,7 @@ import javax.annotation.PostConstruct;
 
 import org.jsoup.Jsoup;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 import org.springframework.web.util.UriComponentsBuilder;
 
@@ -17,6 +18,7 @@ import se.michaelthelin.spotify.model_objects.IPlaylistItem;
 import se.michaelthelin.spotify.model_objects.specification.Track;
 import spotify.util.SpotifyUtils;
 
+@Lazy
 @Component
 public class LastFmArtworkUrlProvider implements ArtworkUrlProvider {
   private static final String TARGET_IMAGE_SIZE = "extralarge";
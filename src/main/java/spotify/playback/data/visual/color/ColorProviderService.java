@@ -1,6 +1,14 @@
 package spotify.playback.data.visual.color;
 
-import java.util.Optional;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 
 import javax.annotation.PostConstruct;
@@ -9,18 +17,45 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import de.selbi.colorfetch.data.ColorFetchResult;
-import spotify.playback.data.dto.sub.ImageData;
 import spotify.playback.data.help.BigPictureConstants;
+import spotify.playback.data.help.LowMemoryMode;
+import spotify.playback.data.help.OutboundCallExecutors;
+import spotify.playback.metrics.PlaybackMetrics;
 
 @Service
 public class ColorProviderService {
+  private static final int MAX_CACHED_COLORS = 1024;
+  private static final int MAX_CACHED_COLORS_LOW_MEMORY = 128;
+  private static final int MAX_COLORS_IN_FLIGHT = 64;
+
   @Value("${colorfetch.url:#{null}}")
   private String colorFetchServiceUrl;
 
   private ColorProvider colorProvider;
 
+  private final OutboundCallExecutors outboundCallExecutors;
+  private final PlaybackMetrics playbackMetrics;
+
+  // Finished results, so that the colors prefetched for the next track are still there once it's the current one
+  private final Map<String, ColorFetchResult> colorCache;
+  private final Map<String, CompletableFuture<ColorFetchResult>> colorsInFlight;
+
   private final Logger logger = Logger.getLogger(ColorProviderService.class.getName());
 
+  ColorProviderService(OutboundCallExecutors outboundCallExecutors, PlaybackMetrics playbackMetrics, LowMemoryMode lowMemoryMode) {
+    this.outboundCallExecutors = outboundCallExecutors;
+    this.playbackMetrics = playbackMetrics;
+
+    int maxCachedColors = lowMemoryMode.cacheSize(MAX_CACHED_COLORS, MAX_CACHED_COLORS_LOW_MEMORY);
+    this.colorCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, ColorFetchResult> eldest) {
+        return size() > maxCachedColors;
+      }
+    });
+    this.colorsInFlight = new ConcurrentHashMap<>();
+  }
+
   @PostConstruct
   void printColorLibraryState() {
     if (useExternalWebservice()) {
@@ -32,20 +67,67 @@ public class ColorProviderService {
     }
   }
 
-  public ColorFetchResult getDominantColorFromImageUrl(String artworkUrl, ImageData previousImageData) {
+  /**
+   * Get the dominant colors of the given image without waiting for them. The calculation runs
+   * in the background: until it is done, the fallback colors are returned and the result is
+   * picked up with a later call for the same image.
+   *
+   * @param artworkUrl the URL of the image
+   * @return the colors
+   */
+  public ColorFetchResult getDominantColorFromImageUrl(String artworkUrl) {
+    return getDominantColorFromImageUrl(artworkUrl, 0);
+  }
+
+  /**
+   * Get the dominant colors of the given image, waiting at most the given time for the
+   * calculation if they aren't cached yet. If it takes longer, the fallback colors are
+   * returned and the result is picked up with a later call for the same image.
+   *
+   * @param artworkUrl the URL of the image
+   * @param maxWaitMs the maximum time to wait for the calculation, 0 to not wait at all
+   * @return the colors
+   */
+  public ColorFetchResult getDominantColorFromImageUrl(String artworkUrl, long maxWaitMs) {
     if (BigPictureConstants.BLANK.equals(artworkUrl)) {
       return ColorFetchResult.FALLBACK;
     }
 
-    boolean sameUrlAsInPrevious = Optional.ofNullable(previousImageData)
-      .map(ImageData::getImageUrl)
-      .map(artworkUrl::equals)
-      .orElse(false);
-    if (sameUrlAsInPrevious) {
-      return previousImageData.getImageColors();
+    ColorFetchResult cachedColors = colorCache.get(artworkUrl);
+    playbackMetrics.recordCacheAccess("colors", cachedColors != null);
+    if (cachedColors != null) {
+      colorsInFlight.remove(artworkUrl);
+      return cachedColors;
     }
 
-    return colorProvider.getDominantColorFromImageUrl(artworkUrl);
+    if (colorsInFlight.size() > MAX_COLORS_IN_FLIGHT) {
+      colorsInFlight.values().removeIf(CompletableFuture::isDone);
+    }
+    CompletableFuture<ColorFetchResult> colorsFuture = colorsInFlight.computeIfAbsent(artworkUrl, this::fetchColors);
+    if (!colorsFuture.isDone() && maxWaitMs <= 0) {
+      return ColorFetchResult.FALLBACK;
+    }
+    try {
+      ColorFetchResult colors = colorsFuture.get(maxWaitMs, TimeUnit.MILLISECONDS);
+      colorsInFlight.remove(artworkUrl, colorsFuture);
+      return colors;
+    } catch (TimeoutException e) {
+      return ColorFetchResult.FALLBACK;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return ColorFetchResult.FALLBACK;
+    } catch (ExecutionException | CancellationException e) {
+      // Not cached, so that the next call for the same image tries again
+      colorsInFlight.remove(artworkUrl, colorsFuture);
+      logger.warning("Color fetch for " + artworkUrl + " failed, using fallback colors: " + e.getMessage());
+      return ColorFetchResult.FALLBACK;
+    }
+  }
+
+  private CompletableFuture<ColorFetchResult> fetchColors(String artworkUrl) {
+    CompletableFuture<ColorFetchResult> colorsFuture = outboundCallExecutors.supplyColorFetch(() -> colorProvider.getDominantColorFromImageUrl(artworkUrl));
+    colorsFuture.thenAccept(colors -> colorCache.put(artworkUrl, colors));
+    return colorsFuture;
   }
 
   private boolean useExternalWebservice() {
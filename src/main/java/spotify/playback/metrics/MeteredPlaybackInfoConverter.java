@@ -0,0 +1,176 @@
+package spotify.playback.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import spotify.playback.data.dto.PlaybackInfoResponse;
+
+/**
+ * Wraps one of the Jackson message converters to record the size and serialization time of
+ * the playback info responses. The serialization is also the last span of the poll's trace,
+ * which is finished here. Everything else is passed through to the wrapped converter untouched.
+ */
+class MeteredPlaybackInfoConverter implements GenericHttpMessageConverter<Object> {
+  private final GenericHttpMessageConverter<Object> delegate;
+  private final PlaybackMetrics playbackMetrics;
+  private final SlowPollLog slowPollLog;
+  private final String format;
+
+  MeteredPlaybackInfoConverter(GenericHttpMessageConverter<Object> delegate, PlaybackMetrics playbackMetrics, SlowPollLog slowPollLog, String format) {
+    this.delegate = delegate;
+    this.playbackMetrics = playbackMetrics;
+    this.slowPollLog = slowPollLog;
+    this.format = format;
+  }
+
+  @Override
+  public boolean canRead(Class<?> clazz, MediaType mediaType) {
+    return delegate.canRead(clazz, mediaType);
+  }
+
+  @Override
+  public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+    return delegate.canRead(type, contextClass, mediaType);
+  }
+
+  @Override
+  public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+    return delegate.canWrite(clazz, mediaType);
+  }
+
+  @Override
+  public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+    return delegate.canWrite(type, clazz, mediaType);
+  }
+
+  @Override
+  public List<MediaType> getSupportedMediaTypes() {
+    return delegate.getSupportedMediaTypes();
+  }
+
+  @Override
+  public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+    return delegate.getSupportedMediaTypes(clazz);
+  }
+
+  @Override
+  public Object read(Class<?> clazz, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+    return delegate.read(clazz, inputMessage);
+  }
+
+  @Override
+  public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+    return delegate.read(type, contextClass, inputMessage);
+  }
+
+  @Override
+  public void write(Object o, MediaType contentType, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+    if (o instanceof PlaybackInfoResponse) {
+      writeMetered(countingOutputMessage -> delegate.write(o, contentType, countingOutputMessage), outputMessage);
+    } else {
+      delegate.write(o, contentType, outputMessage);
+    }
+  }
+
+  @Override
+  public void write(Object o, Type type, MediaType contentType, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+    if (o instanceof PlaybackInfoResponse) {
+      writeMetered(countingOutputMessage -> delegate.write(o, type, contentType, countingOutputMessage), outputMessage);
+    } else {
+      delegate.write(o, type, contentType, outputMessage);
+    }
+  }
+
+  private void writeMetered(Writer writer, HttpOutputMessage outputMessage) throws IOException {
+    PollTrace trace = findPollTrace();
+    CountingOutputMessage countingOutputMessage = new CountingOutputMessage(outputMessage);
+    long start = System.nanoTime();
+    try (PollTrace.Scope ignored = trace != null ? trace.openSpan("serialization") : null) {
+      writer.write(countingOutputMessage);
+    } finally {
+      playbackMetrics.recordPayload(format, countingOutputMessage.getByteCount(), System.nanoTime() - start);
+      if (trace != null) {
+        slowPollLog.finish(trace);
+      }
+    }
+  }
+
+  private PollTrace findPollTrace() {
+    RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+    if (requestAttributes != null) {
+      Object trace = requestAttributes.getAttribute(PollTrace.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+      if (trace instanceof PollTrace) {
+        return (PollTrace) trace;
+      }
+    }
+    return null;
+  }
+
+  private interface Writer {
+    void write(HttpOutputMessage outputMessage) throws IOException;
+  }
+
+  private static class CountingOutputMessage implements HttpOutputMessage {
+    private final HttpOutputMessage outputMessage;
+    private CountingOutputStream body;
+
+    private CountingOutputMessage(HttpOutputMessage outputMessage) {
+      this.outputMessage = outputMessage;
+    }
+
+    @Override
+    public OutputStream getBody() throws IOException {
+      if (body == null) {
+        body = new CountingOutputStream(outputMessage.getBody());
+      }
+      return body;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return outputMessage.getHeaders();
+    }
+
+    private long getByteCount() {
+      return body != null ? body.byteCount : 0;
+    }
+  }
+
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long byteCount;
+
+    private CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      byteCount++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      byteCount += len;
+    }
+
+    @Override
+    public void close() {
+      // The response stream is managed by the servlet container
+    }
+  }
+}
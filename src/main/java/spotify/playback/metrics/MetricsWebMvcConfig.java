@@ -0,0 +1,33 @@
+package spotify.playback.metrics;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.GenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Replaces the JSON message converter with a metered one (see {@link MeteredPlaybackInfoConverter}).
+ */
+@Configuration
+public class MetricsWebMvcConfig implements WebMvcConfigurer {
+  private final PlaybackMetrics playbackMetrics;
+  private final SlowPollLog slowPollLog;
+
+  MetricsWebMvcConfig(PlaybackMetrics playbackMetrics, SlowPollLog slowPollLog) {
+    this.playbackMetrics = playbackMetrics;
+    this.slowPollLog = slowPollLog;
+  }
+
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    for (int i = 0; i < converters.size(); i++) {
+      HttpMessageConverter<?> converter = converters.get(i);
+      if (converter instanceof MappingJackson2HttpMessageConverter) {
+        converters.set(i, new MeteredPlaybackInfoConverter((MappingJackson2HttpMessageConverter) converter, playbackMetrics, slowPollLog, "json"));
+      }
+    }
+  }
+}
@@ -0,0 +1,128 @@
+package spotify.playback.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Central place for the metrics of the playback pipeline, so that the names and tags stay consistent.
+ * All of them are exposed at <code>/actuator/prometheus</code>.
+ */
+@Component
+public class PlaybackMetrics {
+  private static final String POLL = "bigpicture.poll";
+  private static final String POLL_STAGE = "bigpicture.poll.stage";
+  private static final String UPSTREAM_CALL = "bigpicture.upstream.call";
+  private static final String UPSTREAM_REJECTED = "bigpicture.upstream.rejected";
+  private static final String CACHE_REQUESTS = "bigpicture.cache.requests";
+  private static final String PAYLOAD_SIZE = "bigpicture.payload.size";
+  private static final String PAYLOAD_SERIALIZATION = "bigpicture.payload.serialization";
+
+  private final MeterRegistry meterRegistry;
+
+  PlaybackMetrics(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  public MeterRegistry getMeterRegistry() {
+    return meterRegistry;
+  }
+
+  /**
+   * Time a single stage of building the playback info. The stage is also added as a span
+   * to the trace of the current poll (see {@link PollTrace}).
+   *
+   * @param stage the stage name
+   * @param supplier the stage
+   * @param <T> the result type
+   * @return the result of the stage
+   */
+  public <T> T timeStage(String stage, Supplier<T> supplier) {
+    return Timer.builder(POLL_STAGE)
+      .description("Time spent in each stage of building the playback info")
+      .tag("stage", stage)
+      .register(meterRegistry)
+      .record(() -> PollTrace.span(stage, supplier));
+  }
+
+  /**
+   * Record a complete poll.
+   *
+   * @param result "changed" if the playback info was sent to the client, "unchanged" if the client is
+   *               up-to-date already, "idle" if nothing is playing, "error" if the poll failed
+   * @param durationNanos the duration of the poll
+   */
+  public void recordPoll(String result, long durationNanos) {
+    Timer.builder(POLL)
+      .description("Complete polls of the playback info")
+      .tag("result", result)
+      .register(meterRegistry)
+      .record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Wrap a blocking call to an external service, so that its duration is recorded when it is executed.
+   *
+   * @param service the service name
+   * @param supplier the call
+   * @param <T> the result type
+   * @return the timed call
+   */
+  public <T> Supplier<T> timedUpstreamCall(String service, Supplier<T> supplier) {
+    Timer timer = Timer.builder(UPSTREAM_CALL)
+      .description("Blocking calls to external services")
+      .tag("service", service)
+      .register(meterRegistry);
+    return () -> timer.record(supplier);
+  }
+
+  public void recordRejectedUpstreamCall(String service) {
+    Counter.builder(UPSTREAM_REJECTED)
+      .description("Calls to external services that were rejected because the service's thread pool was full")
+      .tag("service", service)
+      .register(meterRegistry)
+      .increment();
+  }
+
+  /**
+   * Record a lookup in one of the caches. The hit ratio is <code>result="hit"</code> divided by the total.
+   *
+   * @param cache the cache name
+   * @param hit true if the value was found in the cache
+   */
+  public void recordCacheAccess(String cache, boolean hit) {
+    Counter.builder(CACHE_REQUESTS)
+      .description("Lookups in the caches")
+      .tag("cache", cache)
+      .tag("result", hit ? "hit" : "miss")
+      .register(meterRegistry)
+      .increment();
+  }
+
+  /**
+   * Record the serialization of a playback info response.
+   *
+   * @param format the transfer format (json)
+   * @param bytes the uncompressed size of the response
+   * @param durationNanos the time it took to serialize it
+   */
+  public void recordPayload(String format, long bytes, long durationNanos) {
+    DistributionSummary.builder(PAYLOAD_SIZE)
+      .description("Uncompressed size of the playback info responses")
+      .baseUnit("bytes")
+      .tag("format", format)
+      .register(meterRegistry)
+      .record(bytes);
+    Timer.builder(PAYLOAD_SERIALIZATION)
+      .description("Serialization of the playback info responses")
+      .tag("format", format)
+      .register(meterRegistry)
+      .record(durationNanos, TimeUnit.NANOSECONDS);
+  }
+}
@@ -0,0 +1,216 @@
+package spotify.playback.metrics;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Breaks down a single poll of the playback info into nested spans (Spotify fetches, context resolution,
+ * artwork lookup, color extraction, serialization, ...). The trace of the poll that is currently being
+ * computed is bound to the polling thread, so spans can be opened from anywhere in the pipeline
+ * without passing the trace around. Outside of a poll, opening a span does nothing.
+ */
+public final class PollTrace {
+  /**
+   * The request attribute under which the trace of a <code>/playback-info</code> request is stored
+   */
+  public static final String REQUEST_ATTRIBUTE = PollTrace.class.getName();
+
+  private static final String ROOT_SPAN_NAME = "poll";
+  private static final ThreadLocal<PollTrace> CURRENT = new ThreadLocal<>();
+  private static final Scope NO_OP_SCOPE = () -> {};
+
+  private final long startedAt;
+  private final long startNanos;
+  private final Deque<Frame> openFrames;
+  private final List<Span> spans;
+  private long durationNanos;
+
+  private PollTrace() {
+    this.startedAt = System.currentTimeMillis();
+    this.startNanos = System.nanoTime();
+    this.openFrames = new ArrayDeque<>();
+    this.spans = new ArrayList<>();
+    this.openFrames.push(new Frame(ROOT_SPAN_NAME, ROOT_SPAN_NAME, startNanos));
+  }
+
+  /**
+   * Start a new trace. Its root span starts right away.
+   *
+   * @return the trace
+   */
+  public static PollTrace create() {
+    return new PollTrace();
+  }
+
+  /**
+   * Bind this trace to the current thread, so that spans opened by it are added to this trace.
+   */
+  public void bind() {
+    CURRENT.set(this);
+  }
+
+  /**
+   * Unbind the trace from the current thread. The trace stays open, so that spans happening
+   * on other threads afterwards (such as the serialization) can still be added to it.
+   */
+  public static void detach() {
+    CURRENT.remove();
+  }
+
+  /**
+   * Run the given supplier in a span of the current trace.
+   *
+   * @param name the span name
+   * @param supplier the code to run
+   * @param <T> the result type
+   * @return the result of the supplier
+   */
+  public static <T> T span(String name, Supplier<T> supplier) {
+    try (Scope ignored = open(name)) {
+      return supplier.get();
+    }
+  }
+
+  /**
+   * Open a span in the current trace, to be closed with try-with-resources.
+   *
+   * @param name the span name
+   * @return the scope of the span
+   */
+  public static Scope open(String name) {
+    PollTrace trace = CURRENT.get();
+    return trace != null ? trace.openSpan(name) : NO_OP_SCOPE;
+  }
+
+  /**
+   * Open a span in this trace, regardless of the thread.
+   *
+   * @param name the span name
+   * @return the scope of the span
+   */
+  public synchronized Scope openSpan(String name) {
+    if (isFinished()) {
+      return NO_OP_SCOPE;
+    }
+    Frame parent = openFrames.peek();
+    Frame frame = new Frame(name, parent.path + ";" + name, System.nanoTime());
+    openFrames.push(frame);
+    return () -> closeSpan(frame);
+  }
+
+  private synchronized void closeSpan(Frame frame) {
+    if (openFrames.peek() != frame) {
+      return; // Only happens if the trace has been finished in the meantime
+    }
+    openFrames.pop();
+    long duration = System.nanoTime() - frame.startNanos;
+    spans.add(new Span(frame.name, frame.path, openFrames.size(), frame.startNanos - startNanos, duration, duration - frame.childNanos));
+    openFrames.peek().childNanos += duration;
+  }
+
+  /**
+   * Close the root span (and any spans that are still open).
+   */
+  public synchronized void finish() {
+    while (!openFrames.isEmpty()) {
+      Frame frame = openFrames.pop();
+      long duration = System.nanoTime() - frame.startNanos;
+      spans.add(new Span(frame.name, frame.path, openFrames.size(), frame.startNanos - startNanos, duration, duration - frame.childNanos));
+      if (!openFrames.isEmpty()) {
+        openFrames.peek().childNanos += duration;
+      } else {
+        durationNanos = duration;
+      }
+    }
+  }
+
+  public synchronized boolean isFinished() {
+    return openFrames.isEmpty();
+  }
+
+  public long getStartedAt() {
+    return startedAt;
+  }
+
+  public synchronized long getDurationNanos() {
+    return durationNanos;
+  }
+
+  /**
+   * @return the closed spans, ordered by their start
+   */
+  public synchronized List<Span> getSpans() {
+    List<Span> sorted = new ArrayList<>(spans);
+    sorted.sort((a, b) -> Long.compare(a.getStartOffsetNanos(), b.getStartOffsetNanos()));
+    return sorted;
+  }
+
+  public interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+
+  private static class Frame {
+    private final String name;
+    private final String path;
+    private final long startNanos;
+    private long childNanos;
+
+    private Frame(String name, String path, long startNanos) {
+      this.name = name;
+      this.path = path;
+      this.startNanos = startNanos;
+    }
+  }
+
+  public static class Span {
+    private final String name;
+    private final String path;
+    private final int depth;
+    private final long startOffsetNanos;
+    private final long durationNanos;
+    private final long selfNanos;
+
+    private Span(String name, String path, int depth, long startOffsetNanos, long durationNanos, long selfNanos) {
+      this.name = name;
+      this.path = path;
+      this.depth = depth;
+      this.startOffsetNanos = startOffsetNanos;
+      this.durationNanos = durationNanos;
+      this.selfNanos = selfNanos;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return the names of this span and all its parents, separated by semicolons (folded stack format)
+     */
+    public String getPath() {
+      return path;
+    }
+
+    public int getDepth() {
+      return depth;
+    }
+
+    public long getStartOffsetNanos() {
+      return startOffsetNanos;
+    }
+
+    public long getDurationNanos() {
+      return durationNanos;
+    }
+
+    /**
+     * @return the time spent in this span itself, excluding its child spans
+     */
+    public long getSelfNanos() {
+      return selfNanos;
+    }
+  }
+}
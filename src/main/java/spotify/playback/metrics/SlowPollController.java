@@ -0,0 +1,136 @@
+package spotify.playback.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class SlowPollController {
+  private final SlowPollLog slowPollLog;
+
+  SlowPollController(SlowPollLog slowPollLog) {
+    this.slowPollLog = slowPollLog;
+  }
+
+  /**
+   * Return the most recent slow polls broken down into their spans, along with a flame summary
+   * of where their time went in aggregate.
+   *
+   * @param format "folded" to return only the flame summary in the folded stack format
+   *               (one "path microseconds" line per span path), which can be fed into
+   *               flame graph tools directly
+   */
+  @CrossOrigin
+  @GetMapping("/debug/slow-polls")
+  public ResponseEntity<?> getSlowPolls(@RequestParam(required = false) String format) {
+    if ("folded".equals(format)) {
+      String folded = slowPollLog.createFlameSummary().entrySet().stream()
+        .map(entry -> entry.getKey() + " " + entry.getValue())
+        .collect(Collectors.joining("\n"));
+      return ResponseEntity.ok().contentType(MediaType.TEXT_PLAIN).body(folded);
+    }
+
+    List<SlowPoll> slowPolls = slowPollLog.getSlowPolls().stream()
+      .map(SlowPoll::new)
+      .collect(Collectors.toList());
+    return ResponseEntity.ok(new SlowPollReport(slowPollLog.getThresholdMs(), slowPolls, slowPollLog.createFlameSummary()));
+  }
+
+  public static class SlowPollReport {
+    private final long thresholdMs;
+    private final List<SlowPoll> polls;
+    private final Map<String, Long> flameSummaryMicros;
+
+    private SlowPollReport(long thresholdMs, List<SlowPoll> polls, Map<String, Long> flameSummaryMicros) {
+      this.thresholdMs = thresholdMs;
+      this.polls = polls;
+      this.flameSummaryMicros = flameSummaryMicros;
+    }
+
+    public long getThresholdMs() {
+      return thresholdMs;
+    }
+
+    public List<SlowPoll> getPolls() {
+      return polls;
+    }
+
+    public Map<String, Long> getFlameSummaryMicros() {
+      return flameSummaryMicros;
+    }
+  }
+
+  public static class SlowPoll {
+    private final long startedAt;
+    private final double durationMs;
+    private final List<SpanInfo> spans;
+
+    private SlowPoll(PollTrace trace) {
+      this.startedAt = trace.getStartedAt();
+      this.durationMs = toMillis(trace.getDurationNanos());
+      this.spans = trace.getSpans().stream()
+        .map(SpanInfo::new)
+        .collect(Collectors.toList());
+    }
+
+    public long getStartedAt() {
+      return startedAt;
+    }
+
+    public double getDurationMs() {
+      return durationMs;
+    }
+
+    public List<SpanInfo> getSpans() {
+      return spans;
+    }
+  }
+
+  public static class SpanInfo {
+    private final String name;
+    private final int depth;
+    private final double startMs;
+    private final double durationMs;
+    private final double selfMs;
+
+    private SpanInfo(PollTrace.Span span) {
+      this.name = span.getName();
+      this.depth = span.getDepth();
+      this.startMs = toMillis(span.getStartOffsetNanos());
+      this.durationMs = toMillis(span.getDurationNanos());
+      this.selfMs = toMillis(span.getSelfNanos());
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public int getDepth() {
+      return depth;
+    }
+
+    public double getStartMs() {
+      return startMs;
+    }
+
+    public double getDurationMs() {
+      return durationMs;
+    }
+
+    public double getSelfMs() {
+      return selfMs;
+    }
+  }
+
+  private static double toMillis(long nanos) {
+    return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+}
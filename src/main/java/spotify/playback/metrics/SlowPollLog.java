@@ -0,0 +1,90 @@
+package spotify.playback.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the traces of the most recent polls that took longer than a threshold (ring buffer),
+ * so that the cause of a slow poll can be looked up after the fact at <code>/debug/slow-polls</code>.
+ * The threshold can be set with <code>debug.slow-poll-threshold-ms</code> in application.properties.
+ */
+@Component
+public class SlowPollLog {
+  private static final int CAPACITY = 50;
+
+  private final long thresholdNanos;
+  private final AtomicReferenceArray<PollTrace> traces;
+  private final AtomicLong nextSequence;
+
+  private final Logger logger = Logger.getLogger(SlowPollLog.class.getName());
+
+  SlowPollLog(@Value("${debug.slow-poll-threshold-ms:1000}") long thresholdMs) {
+    this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+    this.traces = new AtomicReferenceArray<>(CAPACITY);
+    this.nextSequence = new AtomicLong();
+  }
+
+  /**
+   * Finish the given trace and keep it if the poll was slow.
+   *
+   * @param trace the trace of the poll
+   */
+  public void finish(PollTrace trace) {
+    trace.finish();
+    long durationNanos = trace.getDurationNanos();
+    if (durationNanos >= thresholdNanos) {
+      long sequence = nextSequence.getAndIncrement();
+      traces.set((int) (sequence % CAPACITY), trace);
+      logger.fine("Slow poll: " + TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms");
+    }
+  }
+
+  public long getThresholdMs() {
+    return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+  }
+
+  /**
+   * @return the logged traces, the most recent one first
+   */
+  public List<PollTrace> getSlowPolls() {
+    long head = nextSequence.get();
+    List<PollTrace> slowPolls = new ArrayList<>();
+    for (long sequence = head - 1; sequence >= Math.max(0, head - CAPACITY); sequence--) {
+      PollTrace trace = traces.get((int) (sequence % CAPACITY));
+      if (trace != null) {
+        slowPolls.add(trace);
+      }
+    }
+    return slowPolls;
+  }
+
+  /**
+   * Sum up the self time of every span path over all logged traces (folded stack format),
+   * which shows where the time of the slow polls went in aggregate.
+   *
+   * @return the self time in microseconds per span path, largest first
+   */
+  public Map<String, Long> createFlameSummary() {
+    Map<String, Long> selfTimes = new TreeMap<>();
+    for (PollTrace trace : getSlowPolls()) {
+      for (PollTrace.Span span : trace.getSpans()) {
+        selfTimes.merge(span.getPath(), TimeUnit.NANOSECONDS.toMicros(span.getSelfNanos()), Long::sum);
+      }
+    }
+    Map<String, Long> sorted = new LinkedHashMap<>();
+    selfTimes.entrySet().stream()
+      .sorted((a, b) -> Long.compare(b.getValue(), a.getValue()))
+      .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+    return sorted;
+  }
+}
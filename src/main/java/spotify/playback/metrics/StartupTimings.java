@@ -0,0 +1,55 @@
+package spotify.playback.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records how long it takes from the start of the JVM until the first display receives its first frame
+ * (i.e. its first complete playback info), split into the milestones in between. The report is logged once,
+ * as soon as the first frame has been served.
+ */
+@Component
+public class StartupTimings {
+  public static final String LOGGED_IN = "logged-in";
+  public static final String WARMED_UP = "warmed-up";
+  public static final String FIRST_FRAME = "first-frame";
+
+  private static final String APPLICATION_READY = "application-ready";
+
+  private final Map<String, Long> milestones;
+
+  private final Logger logger = Logger.getLogger(StartupTimings.class.getName());
+
+  StartupTimings() {
+    this.milestones = new LinkedHashMap<>();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  void applicationReady() {
+    mark(APPLICATION_READY);
+  }
+
+  /**
+   * Record the given milestone with the current JVM uptime. Only the first time counts, so that
+   * additional accounts don't overwrite the milestones of the default account.
+   *
+   * @param milestone the milestone
+   */
+  public synchronized void mark(String milestone) {
+    if (!milestones.containsKey(milestone)) {
+      milestones.put(milestone, ManagementFactory.getRuntimeMXBean().getUptime());
+      if (FIRST_FRAME.equals(milestone)) {
+        logger.info("Startup timings (ms since JVM start): " + milestones.entrySet().stream()
+          .map(entry -> entry.getKey() + "=" + entry.getValue())
+          .collect(Collectors.joining(", ")));
+      }
+    }
+  }
+}
@@ -0,0 +1,41 @@
+package spotify.playback.web;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * The executor for asynchronous request handling, i.e. the polls of the playback info. A poll
+ * mostly waits for the individual Spotify calls, which are bounded by their own pool (see
+ * {@link spotify.playback.data.help.OutboundCallExecutors}), so this one is sized for the
+ * number of displays rather than for the calls: 16 threads and a queue of 64 comfortably
+ * cover 50 displays polling at the same time. Beyond that, polls run on the request thread
+ * instead of failing.
+ */
+@Configuration
+public class PollAsyncConfig implements WebMvcConfigurer {
+  private static final int POLL_THREADS = 16;
+  private static final int POLL_QUEUE_CAPACITY = 64;
+
+  @Bean
+  public ThreadPoolTaskExecutor pollTaskExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix("poll-");
+    executor.setCorePoolSize(POLL_THREADS);
+    executor.setMaxPoolSize(POLL_THREADS);
+    executor.setQueueCapacity(POLL_QUEUE_CAPACITY);
+    executor.setAllowCoreThreadTimeOut(true);
+    executor.setDaemon(true);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    return executor;
+  }
+
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    configurer.setTaskExecutor(pollTaskExecutor());
+  }
+}
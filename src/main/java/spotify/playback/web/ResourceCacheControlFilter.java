@@ -0,0 +1,38 @@
+package spotify.playback.web;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Marks fingerprinted static resources as immutable. Everything else that isn't an API endpoint must be
+ * revalidated by the browser on each load, so that a new version of the app is picked up right away.
+ */
+@Component
+public class ResourceCacheControlFilter extends OncePerRequestFilter {
+  private static final Pattern FINGERPRINTED_PATH = Pattern.compile(".*-[0-9a-f]{32}\\.[^/]+$");
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+    String path = request.getRequestURI();
+    if (FINGERPRINTED_PATH.matcher(path).matches()) {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, StaticResourceConfig.FINGERPRINTED_CACHE_CONTROL.getHeaderValue());
+    } else if (isStaticResource(path)) {
+      response.setHeader(HttpHeaders.CACHE_CONTROL, StaticResourceConfig.UNVERSIONED_CACHE_CONTROL.getHeaderValue());
+    }
+    filterChain.doFilter(request, response);
+  }
+
+  private boolean isStaticResource(String path) {
+    int lastSlash = path.lastIndexOf('/');
+    return path.indexOf('.', lastSlash) > 0;
+  }
+}
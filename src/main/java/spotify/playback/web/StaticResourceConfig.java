@@ -0,0 +1,57 @@
+package spotify.playback.web;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.web.server.Compression;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+/**
+ * Serves the static resources (scripts, stylesheets, fonts, images) under fingerprinted URLs that
+ * contain a hash of their content, e.g. <code>/js/spotify-big-picture-0123456789abcdef0123456789abcdef.js</code>.
+ * As the URL changes whenever the content does, these can be cached by the browser forever, so a display
+ * doesn't need to download them again on every reload. URLs within the stylesheets are rewritten by Spring
+ * automatically, the ones in the HTML pages by {@link VersionedHtmlProvider}.
+ * <p>
+ * Additionally, the gzip variants created during the build are served to any browser that accepts them,
+ * and larger dynamic responses (mainly the playback info) are compressed on the fly.
+ */
+@Configuration
+public class StaticResourceConfig implements WebMvcConfigurer {
+  private static final String[] COMPRESSED_MIME_TYPES = {
+    "application/json", "text/html", "text/css", "text/plain", "text/javascript", "application/javascript"
+  };
+  private static final DataSize COMPRESSION_MIN_RESPONSE_SIZE = DataSize.ofKilobytes(2);
+
+  static final CacheControl FINGERPRINTED_CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+  static final CacheControl UNVERSIONED_CACHE_CONTROL = CacheControl.noCache();
+
+  @Override
+  public void addResourceHandlers(ResourceHandlerRegistry registry) {
+    // Replaces Spring Boot's default static resource handler, which is only registered when there's no other one for /**
+    registry.addResourceHandler("/**")
+      .addResourceLocations("classpath:/static/")
+      .resourceChain(true)
+      .addResolver(new EncodedResourceResolver())
+      .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+  }
+
+  @Bean
+  public WebServerFactoryCustomizer<ConfigurableServletWebServerFactory> responseCompressionCustomizer() {
+    return factory -> {
+      Compression compression = new Compression();
+      compression.setEnabled(true);
+      compression.setMimeTypes(COMPRESSED_MIME_TYPES);
+      compression.setMinResponseSize(COMPRESSION_MIN_RESPONSE_SIZE);
+      factory.setCompression(compression);
+    };
+  }
+}
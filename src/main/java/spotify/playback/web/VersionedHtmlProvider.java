@@ -0,0 +1,83 @@
+package spotify.playback.web;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.resource.ResourceUrlProvider;
+
+/**
+ * Provides the HTML pages with every local script, stylesheet, and icon reference replaced by its
+ * fingerprinted URL (see {@link StaticResourceConfig}). The pages themselves are never cached by the
+ * browser, so an update to any of the referenced files is picked up on the next reload.
+ */
+@Component
+public class VersionedHtmlProvider {
+  private static final String STATIC_RESOURCES_ROOT = "static/";
+  private static final Pattern LOCAL_REFERENCE = Pattern.compile("(\\s(?:src|href)=\")(?!https?:|//|#)([^\"]+\\.[a-z0-9]+)(\")");
+
+  private final ResourceUrlProvider resourceUrlProvider;
+  private final Map<String, String> versionedPages;
+
+  VersionedHtmlProvider(ResourceUrlProvider resourceUrlProvider) {
+    this.resourceUrlProvider = resourceUrlProvider;
+    this.versionedPages = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Get the HTML page at the given path with all local references pointing to the fingerprinted URLs.
+   * The result is cached, as the static resources can't change while the app is running.
+   *
+   * @param pagePath the path of the HTML page, relative to the static resources root (e.g. "settings/settings.html")
+   * @return the HTML content
+   * @throws IOException if the page couldn't be read
+   */
+  public String getPage(String pagePath) throws IOException {
+    String page = versionedPages.get(pagePath);
+    if (page == null) {
+      page = createVersionedPage(pagePath);
+      versionedPages.put(pagePath, page);
+    }
+    return page;
+  }
+
+  private String createVersionedPage(String pagePath) throws IOException {
+    String html;
+    try (InputStream inputStream = new ClassPathResource(STATIC_RESOURCES_ROOT + pagePath).getInputStream()) {
+      html = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    String pageDirectory = pagePath.contains("/") ? pagePath.substring(0, pagePath.lastIndexOf('/') + 1) : "";
+    Matcher matcher = LOCAL_REFERENCE.matcher(html);
+    StringBuilder result = new StringBuilder();
+    while (matcher.find()) {
+      String reference = matcher.group(2);
+      String versionedUrl = resourceUrlProvider.getForLookupPath(toLookupPath(pageDirectory, reference));
+      String replacement = versionedUrl != null
+        ? matcher.group(1) + versionedUrl + matcher.group(3)
+        : matcher.group();
+      matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+    }
+    matcher.appendTail(result);
+    return result.toString();
+  }
+
+  private String toLookupPath(String pageDirectory, String reference) {
+    if (reference.startsWith("/")) {
+      return reference;
+    }
+    String path = pageDirectory + reference;
+    while (path.contains("../")) {
+      int parentIndex = path.indexOf("../");
+      int previousSlash = path.lastIndexOf('/', parentIndex - 2);
+      path = path.substring(0, Math.max(previousSlash + 1, 0)) + path.substring(parentIndex + 3);
+    }
+    return "/" + path;
+  }
+}
@@ -89,6 +89,9 @@ let idle = false;
 ///////////////////////////////
 
 const INFO_URL = "/playback-info";
+const CLIENT_ID = getOrCreateClientId();
+const ACCOUNT_NAME = new URLSearchParams(window.location.search).get("account");
+const ACCOUNT_QUERY_PARAM = ACCOUNT_NAME ? `&a=${encodeURIComponent(ACCOUNT_NAME)}` : "";
 
 window.addEventListener('load', entryPoint);
 
@@ -96,9 +99,28 @@ function entryPoint() {
   startPollingLoop();
 }
 
+function getOrCreateClientId() {
+  // Per tab rather than per browser, so that every open display is tracked separately by the server
+  const sessionStorageKeyClientId = "client_id";
+  try {
+    let clientId = sessionStorage.getItem(sessionStorageKeyClientId);
+    if (!clientId) {
+      clientId = createRandomClientId();
+      sessionStorage.setItem(sessionStorageKeyClientId, clientId);
+    }
+    return clientId;
+  } catch (ex) {
+    return createRandomClientId();
+  }
+}
+
+function createRandomClientId() {
+  return Math.random().toString(36).substring(2, 12);
+}
+
 function singleRequest(forceUpdate) {
   return new Promise(resolve => {
-    let url = `${INFO_URL}?v=${forceUpdate ? -1 : currentData.versionId}`;
+    let url = `${INFO_URL}?v=${forceUpdate ? -1 : currentData.versionId}&c=${CLIENT_ID}${ACCOUNT_QUERY_PARAM}`;
     fetch(url)
       .then(response => response.json())
       .then(json => {
@@ -488,6 +510,8 @@ function setTextData(changes) {
   // Lyrics
   if (isPrefEnabled("show-lyrics") && (getChange(changes, "currentlyPlaying.artists").wasChanged || getChange(changes, "currentlyPlaying.title").wasChanged)) {
     refreshLyrics(changes);
+  } else if (syncedLyricsLines && (timeCurrent.wasChanged || paused.wasChanged)) {
+    syncLyricsLines(timeCurrent.value, paused.value);
   }
 
   // Text balance
@@ -652,6 +676,7 @@ function toggleLyrics() {
 let lyricsContainer = "lyrics".select();
 function refreshLyrics(changes) {
   stopLyricsScroll();
+  stopSyncedLyrics();
   lyricsContainer.innerHTML = "";
   lyricsContainer.scrollTop = 0;
   fetchAndPrintLyrics(changes);
@@ -673,20 +698,31 @@ function fetchAndPrintLyrics(changes) {
   }
 
   function fetchLyrics(artistName, songName) {
-    return fetch(`/lyrics?artist=${artistName}&song=${songName}`)
-      .then(response => response.text());
+    // Time-coded lyrics are preferred, the plain lyrics from Genius are only the fallback
+    let query = `artist=${encodeURIComponent(artistName)}&song=${encodeURIComponent(songName)}`;
+    return fetch(`/lyrics/synced?${query}`)
+      .then(response => response.status === 200 ? response.json() : null)
+      .catch(() => null)
+      .then(syncedLyrics => syncedLyrics ?? fetch(`/lyrics?${query}`).then(response => response.text()));
   }
 
   function printLyrics(lyrics) {
     let lyricsContainer = "lyrics".select();
-    lyricsContainer.innerHTML = lyrics;
+    let isSynced = typeof lyrics === "object" && lyrics !== null;
+    if (isSynced) {
+      printSyncedLyrics(lyrics.lines);
+    } else {
+      lyricsContainer.innerHTML = lyrics;
+    }
 
     let hasLyrics = !!lyrics;
     setClass("content-center".select(), "lyrics", hasLyrics);
     if (hasLyrics) {
       lyricsContainer.scrollTop = 0;
       fadeIn(lyricsContainer);
-      if (isPrefEnabled("lyrics-simulated-scroll")) {
+      if (isSynced) {
+        syncLyricsLines(getChange(changes, "currentlyPlaying.timeCurrent").value, getChange(changes, "playbackContext.paused").value);
+      } else if (isPrefEnabled("lyrics-simulated-scroll")) {
         scrollLyrics(changes);
       }
       setTimeout(() => {
@@ -710,8 +746,11 @@ function fetchAndPrintLyrics(changes) {
 }
 
 const lyricsScrollInitialDelayPercentage = 0.25;
+const lyricsScrollStepMs = 1000;
 let lyricsScrollInterval;
-let lyricsScrollIntervalMs = 10;
+let lyricsScrollDelayTimeout;
+let lyricsScrollPixelsPerStep;
+let lyricsScrollTarget;
 function scrollLyrics(changes, noDelay = false) {
   stopLyricsScroll();
 
@@ -724,31 +763,116 @@ function scrollLyrics(changes, noDelay = false) {
   let currentScrollPosition = lyricsContainer.scrollTop;
 
   let pixelsToScroll = totalHeight - visibleHeight - currentScrollPosition;
+  if (pixelsToScroll <= 0) {
+    return;
+  }
   let preAndPostBuffer = remainingTime * lyricsScrollInitialDelayPercentage;
-  lyricsScrollIntervalMs = (remainingTime * (1 - (lyricsScrollInitialDelayPercentage * 2))) / pixelsToScroll;
+  let scrollDuration = remainingTime * (1 - (lyricsScrollInitialDelayPercentage * 2));
+  lyricsScrollPixelsPerStep = pixelsToScroll * lyricsScrollStepMs / Math.max(scrollDuration, lyricsScrollStepMs);
 
-  setTimeout(() => {
+  lyricsScrollDelayTimeout = setTimeout(() => {
     startLyricsScroll();
   }, noDelay ? 0 : preAndPostBuffer);
 }
 
 function startLyricsScroll() {
   if (!lyricsScrollInterval) {
-    lyricsScrollInterval = setInterval(() =>  {
-      lyricsContainer.scrollBy(0, 1);
-      if (lyricsContainer.scrollHeight - lyricsContainer.scrollTop <= lyricsContainer.clientHeight) {
+    // Move in coarse steps and let the browser's smooth scrolling interpolate in between,
+    // rather than waking up every few milliseconds to scroll by a single pixel
+    lyricsScrollTarget = lyricsContainer.scrollTop;
+    lyricsScrollInterval = setInterval(() => {
+      lyricsScrollTarget += lyricsScrollPixelsPerStep;
+      lyricsContainer.scrollTo({
+        top: lyricsScrollTarget,
+        behavior: "smooth"
+      });
+      if (lyricsScrollTarget >= lyricsContainer.scrollHeight - lyricsContainer.clientHeight) {
         stopLyricsScroll();
       }
-    }, lyricsScrollIntervalMs);
+    }, lyricsScrollStepMs);
   }
 }
 
 function stopLyricsScroll() {
+  clearTimeout(lyricsScrollDelayTimeout);
   clearInterval(lyricsScrollInterval);
   lyricsScrollInterval = null;
 }
 
+let syncedLyricsLines = null;
+let syncedLyricsCurrentIndex = -1;
+let syncedLyricsTimeout;
+function printSyncedLyrics(lines) {
+  lyricsContainer.innerHTML = "";
+  for (let line of lines) {
+    let lineElem = document.createElement("div");
+    lineElem.className = "lyrics-line";
+    lineElem.innerText = line.text;
+    lyricsContainer.append(lineElem);
+  }
+  syncedLyricsLines = lines;
+  syncedLyricsCurrentIndex = -1;
+}
+
+function syncLyricsLines(timeCurrent, paused) {
+  clearTimeout(syncedLyricsTimeout);
+  if (!syncedLyricsLines || timeCurrent == null) {
+    return;
+  }
+
+  let index = findSyncedLyricsLineIndex(timeCurrent);
+  if (index !== syncedLyricsCurrentIndex) {
+    let lineElems = lyricsContainer.children;
+    if (syncedLyricsCurrentIndex >= 0) {
+      lineElems[syncedLyricsCurrentIndex]?.classList.remove("current");
+    }
+    syncedLyricsCurrentIndex = index;
+    if (index >= 0) {
+      let currentLineElem = lineElems[index];
+      currentLineElem.classList.add("current");
+      let lineOffset = currentLineElem.getBoundingClientRect().top - lyricsContainer.getBoundingClientRect().top;
+      lyricsContainer.scrollTo({
+        top: lyricsContainer.scrollTop + lineOffset - (lyricsContainer.clientHeight - currentLineElem.offsetHeight) / 2,
+        behavior: "smooth"
+      });
+    }
+  }
+
+  // Only wake up again when the next line is due, rather than polling the progress
+  let nextLine = syncedLyricsLines[index + 1];
+  if (!paused && nextLine) {
+    syncedLyricsTimeout = setTimeout(() => {
+      syncLyricsLines(currentData.currentlyPlaying.timeCurrent, currentData.playbackContext.paused);
+    }, Math.max(nextLine.timeMs - timeCurrent, 0));
+  }
+}
+
+function findSyncedLyricsLineIndex(timeCurrent) {
+  let low = 0;
+  let high = syncedLyricsLines.length - 1;
+  let index = -1;
+  while (low <= high) {
+    let mid = (low + high) >> 1;
+    if (syncedLyricsLines[mid].timeMs <= timeCurrent) {
+      index = mid;
+      low = mid + 1;
+    } else {
+      high = mid - 1;
+    }
+  }
+  return index;
+}
+
+function stopSyncedLyrics() {
+  clearTimeout(syncedLyricsTimeout);
+  syncedLyricsLines = null;
+  syncedLyricsCurrentIndex = -1;
+}
+
 lyricsContainer.onclick = () => {
+  if (syncedLyricsLines) {
+    return;
+  }
   if (!window.getSelection().toString()) {
     if (lyricsScrollInterval) {
       stopLyricsScroll();
@@ -1785,7 +1909,7 @@ function submitVisualPreferencesToBackend() {
        }
      });
 
-  fetch("/settings/list", {
+  fetch("/settings/list" + ACCOUNT_QUERY_PARAM.replace("&", "?"), {
     method: 'POST',
     headers: {
       'Content-Type': 'application/json',
@@ -2138,7 +2262,14 @@ function fireControl(control, param) {
   if (!waitingForResponse && isPrefEnabled("playback-control")) {
     waitingForResponse = true;
     setClass("main".select(), "waiting-for-control", true);
-    fetch(`/modify-playback/${control}${param ? `?param=${param}` : ""}`, {method: 'POST'})
+    let controlParams = new URLSearchParams();
+    if (param) {
+      controlParams.set("param", param);
+    }
+    if (ACCOUNT_NAME) {
+      controlParams.set("a", ACCOUNT_NAME);
+    }
+    fetch(`/modify-playback/${control}?${controlParams}`, {method: 'POST'})
       .then(response => {
         if (response.status >= 200 && response.status < 300) {
           setTimeout(() => {
@@ -2719,7 +2850,8 @@ const PREFERENCES = [
   {
     id: "show-lyrics",
     name: "Enable Lyrics",
-    description: "Searches for and displays the lyrics of the current song from Genius.com<br>[Hotkey: L]",
+    description: "Searches for and displays the lyrics of the current song from Genius.com. " +
+      "If an LRC file for the song was put into the synced_lyrics folder, the current line gets highlighted as the song progresses<br>[Hotkey: L]",
     category: "Lyrics",
     requiredFor: ["lyrics-simulated-scroll", "lyrics-hide-tracklist", "xl-lyrics", "dim-lyrics", "max-width-lyrics"],
     css: {"lyrics": "!hide"},
@@ -2728,6 +2860,7 @@ const PREFERENCES = [
         refreshLyrics(currentData)
         setClass("lyrics-toggle-button".select(), "enabled", true);
       } else {
+        stopSyncedLyrics();
         setClass("content-center".select(), "lyrics", false);
         setClass("lyrics-toggle-button".select(), "enabled", false);
       }
@@ -2737,11 +2870,13 @@ const PREFERENCES = [
     id: "lyrics-simulated-scroll",
     name: "Automatic Scrolling",
     description: "Automatically scrolls the lyrics container as the current song progresses after a short delay (pseudo-synchronization). " +
-      "Won't always be flawless, unfortunately",
+      "Won't always be flawless, unfortunately. Not used for synced lyrics, as those follow the current line anyway",
     category: "Lyrics",
     callback: (state) => {
       if (state) {
-        scrollLyrics(currentData, true);
+        if (!syncedLyricsLines) {
+          scrollLyrics(currentData, true);
+        }
       } else {
         stopLyricsScroll();
       }
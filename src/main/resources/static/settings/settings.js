@@ -1,4 +1,7 @@
 (function() {
+  const accountName = new URLSearchParams(window.location.search).get("account");
+  const accountQueryParam = accountName ? `?a=${encodeURIComponent(accountName)}` : "";
+
   document.getElementById("copyright-current-year").innerHTML = new Date().getFullYear().toString();
 
   const reloadSetting = {
@@ -9,7 +12,7 @@
 
   let loadedSettings;
 
-  fetch("/settings/list")
+  fetch("/settings/list" + accountQueryParam)
     .then(response => response.json())
     .then(json => loadedSettings = json)
     .then(() => {
@@ -98,7 +101,7 @@
         }
       }
 
-      fetch("/settings/toggle/" + settingId, {
+      fetch("/settings/toggle/" + settingId + accountQueryParam, {
         method: 'POST',
         headers: {
           'Content-Type': 'application/json',